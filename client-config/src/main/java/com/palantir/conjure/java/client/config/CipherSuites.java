@@ -45,6 +45,11 @@ public final class CipherSuites {
             "TLS_RSA_WITH_AES_256_GCM_SHA384",
             "TLS_RSA_WITH_AES_128_GCM_SHA256");
 
+    private static final ImmutableList<String> TLS_1_3_CIPHER_SUITES = ImmutableList.of(
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256");
+
     private static final ImmutableList<String> ALL_CIPHER_SUITES = ImmutableList.<String>builder()
             .addAll(FAST_CIPHER_SUITES)
             .addAll(GCM_CIPHER_SUITES)
@@ -72,6 +77,14 @@ public final class CipherSuites {
         return GCM_CIPHER_SUITES.toArray(new String[0]);
     }
 
+    /**
+     * Cipher suites defined by TLS 1.3. These are only negotiated over TLS 1.3 and cannot be used with earlier protocol
+     * versions (and vice versa).
+     */
+    public static String[] tls13CipherSuites() {
+        return TLS_1_3_CIPHER_SUITES.toArray(new String[0]);
+    }
+
     /** Union of {@link #fastCipherSuites()} and {@link #gcmCipherSuites()}. */
     public static String[] allCipherSuites() {
         return ALL_CIPHER_SUITES.toArray(new String[0]);
@@ -27,6 +27,7 @@ import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.net.ProxySelector;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.X509TrustManager;
@@ -94,7 +95,7 @@ public interface ClientConfiguration {
 
     /**
      * The amount of time a URL marked as failed should be avoided for subsequent calls. If the
-     * {@link #nodeSelectionStrategy} is ROUND_ROBIN, this must be a positive period of time.
+     * {@link #nodeSelectionStrategy} is ROUND_ROBIN or PREFER_LOCAL_ZONE, this must be a positive period of time.
      */
     Duration failedUrlCooldown();
 
@@ -116,16 +117,199 @@ public interface ClientConfiguration {
     /** Both per-request and global metrics are recorded in this registry. */
     TaggedMetricRegistry taggedMetricRegistry();
 
+    /**
+     * Indicates whether nodes whose recent p95 latency is a statistical outlier compared to their peers should be
+     * temporarily de-prioritized when selecting a node. Defaults to false.
+     */
+    @Value.Default
+    default boolean enableLatencyOutlierDetection() {
+        return false;
+    }
+
+    /**
+     * The number of connections per {@link #uris URI} that are established in the background when the client is
+     * created, so that the first requests do not pay for DNS resolution, TCP connect and TLS handshake. Defaults to 0,
+     * i.e., no warm-up.
+     */
+    @Value.Default
+    default int warmUpConnectionsPerUri() {
+        return 0;
+    }
+
+    /** Indicates whether requests should be sent over HTTP/2. Defaults to {@link Http2#DEFAULT}. */
+    @Value.Default
+    default Http2 http2() {
+        return Http2.DEFAULT;
+    }
+
+    /**
+     * Indicates whether concurrent identical {@code GET} and {@code HEAD} requests (same URL and headers, including
+     * credentials) should be coalesced, such that only the first of them is sent while the others wait for and share
+     * its response. Intended for services that fan out the same read to the same backend, e.g., when a cache is cold.
+     * Defaults to false.
+     */
+    @Value.Default
+    default boolean enableRequestCoalescing() {
+        return false;
+    }
+
+    /**
+     * The maximum total size in bytes of the response bodies kept in an in-memory cache of {@code GET} responses that
+     * honours {@code Cache-Control} and revalidates stale responses with {@code ETag} and {@code Last-Modified}.
+     * Responses are cached per URL and credentials. Defaults to 0, i.e., no caching.
+     */
+    @Value.Default
+    default long responseCacheMaxBytes() {
+        return 0;
+    }
+
+    /**
+     * Indicates whether {@link java.io.InputStream} responses of JAX-RS clients are streamed from the connection rather
+     * than read into memory before they are returned. If true, callers must close the returned stream, which holds on
+     * to its connection and concurrency permit until then. Defaults to false.
+     */
+    @Value.Default
+    default boolean enableStreamingResponses() {
+        return false;
+    }
+
+    /**
+     * Indicates whether {@link java.io.InputStream} request bodies of JAX-RS clients are streamed to the connection
+     * with chunked transfer encoding rather than read into memory before the request is sent. Streamed bodies are only
+     * retried if they fit into {@link #streamingRequestReplayBufferBytes}. Defaults to false.
+     */
+    @Value.Default
+    default boolean enableStreamingRequests() {
+        return false;
+    }
+
+    /**
+     * The maximum size in bytes of a streamed request body that is retained such that the request can be retried; small
+     * bodies are retained in memory, larger ones in a temporary file. Requests with larger bodies are not retried.
+     * Defaults to 0, i.e., streamed requests are never retried.
+     */
+    @Value.Default
+    default long streamingRequestReplayBufferBytes() {
+        return 0;
+    }
+
+    /**
+     * Indicates whether the bytes sent and received in {@code application/octet-stream} bodies, i.e., the bodies of
+     * Conjure binary endpoints, are recorded as {@code client.binary.bytes} meters, whose counts track the progress of
+     * transfers and whose rates are their throughput. Defaults to false.
+     */
+    @Value.Default
+    default boolean enableTransferMetrics() {
+        return false;
+    }
+
+    /**
+     * Indicates whether requests that accept {@code application/json} responses should instead prefer
+     * {@code application/cbor}, i.e. send {@code Accept: application/cbor, application/json;q=0.9}. Responses are
+     * decoded according to their {@code Content-Type}, such that servers may answer with either format. Defaults to
+     * false.
+     */
+    @Value.Default
+    default boolean enableCborNegotiation() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the JSON serializers of the request bodies and the deserializers of the responses of all
+     * methods of the service interface are resolved in the background when the client is created, such that the first
+     * call of each method does not pay for type introspection and serializer construction. Defaults to false.
+     */
+    @Value.Default
+    default boolean warmUpSerializers() {
+        return false;
+    }
+
+    /** Resolves the hostnames of {@link #uris} and proxies. Defaults to {@link DnsResolver#SYSTEM}. */
+    @Value.Default
+    default DnsResolver dnsResolver() {
+        return DnsResolver.SYSTEM;
+    }
+
+    /**
+     * Indicates whether the results of {@link #dnsResolver} should be cached by the client and refreshed in the
+     * background, such that slow DNS lookups are kept off the request path. New connections are spread across all
+     * resolved addresses, and addresses that recently failed to connect are tried last. Defaults to false.
+     */
+    @Value.Default
+    default boolean enableDnsCaching() {
+        return false;
+    }
+
+    /**
+     * The TLS protocol versions offered on {@code https} connections. Defaults to {@link TlsProtocols#TLS_1_2_AND_1_3}.
+     */
+    @Value.Default
+    default TlsProtocols tlsProtocols() {
+        return TlsProtocols.TLS_1_2_AND_1_3;
+    }
+
+    /**
+     * The cipher suites offered on {@code https} connections, in order of preference. If empty (the default), the
+     * cipher suites are derived from {@link #enableGcmCipherSuites} and {@link #tlsProtocols}. Cipher suites that are
+     * not supported by the JVM are ignored.
+     */
+    List<String> cipherSuites();
+
+    /**
+     * The availability zone of each of the {@link #uris}, keyed by URI, see
+     * {@link NodeSelectionStrategy#PREFER_LOCAL_ZONE}. URIs without a zone are never considered local.
+     */
+    Map<String, String> uriZones();
+
+    /**
+     * The availability zone of this client. Must be set if the {@link #nodeSelectionStrategy} is
+     * {@link NodeSelectionStrategy#PREFER_LOCAL_ZONE}.
+     */
+    Optional<String> localZone();
+
+    /**
+     * The number of requests awaiting a response from a node in the {@link #localZone local zone} at which
+     * {@link NodeSelectionStrategy#PREFER_LOCAL_ZONE} considers the node overloaded and spills new requests over to
+     * other zones. Defaults to 0, i.e., local nodes are never considered overloaded.
+     */
+    @Value.Default
+    default int zoneSpilloverInFlightRequests() {
+        return 0;
+    }
+
     @Value.Check
     default void check() {
         if (meshProxy().isPresent()) {
             checkArgument(maxNumRetries() == 0, "If meshProxy is configured then maxNumRetries must be 0");
             checkArgument(uris().size() == 1, "If meshProxy is configured then uris must contain exactly 1 URI");
         }
+        if (http2() == Http2.PRIOR_KNOWLEDGE) {
+            checkArgument(uris().stream().allMatch(uri -> uri.regionMatches(true, 0, "http:", 0, 5)),
+                    "If http2 is PRIOR_KNOWLEDGE then all uris must use the http scheme",
+                    UnsafeArg.of("uris", uris()));
+        }
+        checkArgument(warmUpConnectionsPerUri() >= 0, "warmUpConnectionsPerUri must be non-negative",
+                SafeArg.of("warmUpConnectionsPerUri", warmUpConnectionsPerUri()));
+        checkArgument(responseCacheMaxBytes() >= 0, "responseCacheMaxBytes must be non-negative",
+                SafeArg.of("responseCacheMaxBytes", responseCacheMaxBytes()));
+        checkArgument(streamingRequestReplayBufferBytes() >= 0,
+                "streamingRequestReplayBufferBytes must be non-negative",
+                SafeArg.of("streamingRequestReplayBufferBytes", streamingRequestReplayBufferBytes()));
         if (nodeSelectionStrategy().equals(NodeSelectionStrategy.ROUND_ROBIN)) {
             checkArgument(!failedUrlCooldown().isNegative() && !failedUrlCooldown().isZero(),
                     "If nodeSelectionStrategy is ROUND_ROBIN then failedUrlCooldown must be positive");
         }
+        if (nodeSelectionStrategy().equals(NodeSelectionStrategy.PREFER_LOCAL_ZONE)) {
+            checkArgument(!failedUrlCooldown().isNegative() && !failedUrlCooldown().isZero(),
+                    "If nodeSelectionStrategy is PREFER_LOCAL_ZONE then failedUrlCooldown must be positive");
+            checkArgument(localZone().isPresent(),
+                    "If nodeSelectionStrategy is PREFER_LOCAL_ZONE then localZone must be set");
+        }
+        checkArgument(uris().containsAll(uriZones().keySet()), "uriZones must only contain zones of uris",
+                UnsafeArg.of("uriZones", uriZones()),
+                UnsafeArg.of("uris", uris()));
+        checkArgument(zoneSpilloverInFlightRequests() >= 0, "zoneSpilloverInFlightRequests must be non-negative",
+                SafeArg.of("zoneSpilloverInFlightRequests", zoneSpilloverInFlightRequests()));
         // Assert that timeouts are in milliseconds, not any higher precision, because feign only supports millis.
         checkTimeoutPrecision(connectTimeout(), "connectTimeout");
         checkTimeoutPrecision(readTimeout(), "readTimeout");
@@ -182,6 +366,46 @@ public interface ClientConfiguration {
         PROPAGATE_429_and_503_TO_CALLER
     }
 
+    enum Http2 {
+        /**
+         * Default. The protocol is left to OkHttp, which negotiates HTTP/2 via ALPN if both the JVM and the server
+         * support it and uses HTTP/1.1 otherwise, as clients did before this option existed. Unlike {@link #ENABLED},
+         * neither cipher suites nor concurrency limits are adjusted for HTTP/2.
+         */
+        DEFAULT,
+
+        /** Requests are only sent over HTTP/1.1, which requires one connection per concurrent request. */
+        DISABLED,
+
+        /**
+         * HTTP/2 is negotiated via ALPN on TLS connections, falling back to HTTP/1.1 if the server or the JVM does not
+         * support it. Concurrent requests to the same host are multiplexed as streams over a single connection, up to
+         * the stream limit advertised by the server. Since HTTP/2 forbids CBC cipher suites, GCM cipher suites are
+         * offered regardless of {@link ClientConfiguration#enableGcmCipherSuites}.
+         */
+        ENABLED,
+
+        /**
+         * HTTP/2 over cleartext (h2c) without an upgrade handshake, assuming that the server speaks HTTP/2. Intended
+         * for plaintext test setups only; all {@link ClientConfiguration#uris} must use the {@code http} scheme.
+         */
+        PRIOR_KNOWLEDGE
+    }
+
+    enum TlsProtocols {
+        /** Only TLS 1.2 is offered. */
+        TLS_1_2,
+
+        /**
+         * Default. TLS 1.3 is preferred if supported by both the JVM and the server, which saves a round trip on each
+         * full handshake. Falls back to TLS 1.2 otherwise.
+         */
+        TLS_1_2_AND_1_3,
+
+        /** Only TLS 1.3 is offered; handshakes fail if either the JVM or the server does not support it. */
+        TLS_1_3
+    }
+
     enum RetryOnTimeout {
         /** Default. */
         DISABLED,
@@ -20,8 +20,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import com.palantir.conjure.java.api.config.service.ProxyConfiguration;
 import com.palantir.conjure.java.api.config.service.ServiceConfiguration;
-import com.palantir.conjure.java.config.ssl.SslSocketFactories;
+import com.palantir.conjure.java.config.ssl.SslContextCache;
+import com.palantir.conjure.java.config.ssl.TrustContext;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -54,6 +56,12 @@ public final class ClientConfigurations {
     private static final ClientConfiguration.RetryOnTimeout RETRY_ON_TIMEOUT_DEFAULT =
             ClientConfiguration.RetryOnTimeout.DISABLED;
 
+    // Shared so that clients with equal SSL configuration share TLS sessions and pooled connections. Uses the default
+    // session cache size and timeout; callers that need others pass their own cache to of(config, sslContextCache).
+    private static final SslContextCache sslContextCache = SslContextCache.create();
+    private static final SslContextCacheMetricSet sslContextCacheMetricSet =
+            new SslContextCacheMetricSet(sslContextCache);
+
     private ClientConfigurations() {}
 
     /**
@@ -61,9 +69,22 @@ public final class ClientConfigurations {
      * empty/absent configuration with the defaults specified as constants in this class.
      */
     public static ClientConfiguration of(ServiceConfiguration config) {
+        TaggedMetricRegistry registry = DefaultTaggedMetricRegistry.getDefault();
+        // addMetrics is idempotent, so this works even when multiple configurations are created
+        registry.addMetrics("from", SslContextCache.class.getSimpleName(), sslContextCacheMetricSet);
+        return of(config, sslContextCache);
+    }
+
+    /**
+     * As {@link #of(ServiceConfiguration)}, but takes the {@link SSLSocketFactory} and {@link X509TrustManager} from
+     * the given cache, e.g. one created with a different TLS session cache size or timeout than the shared default
+     * cache. Clients only share TLS sessions and pooled connections with clients configured from the same cache.
+     */
+    public static ClientConfiguration of(ServiceConfiguration config, SslContextCache cache) {
+        TrustContext trustContext = cache.getTrustContext(config.security());
         return ClientConfiguration.builder()
-                .sslSocketFactory(SslSocketFactories.createSslSocketFactory(config.security()))
-                .trustManager(SslSocketFactories.createX509TrustManager(config.security()))
+                .sslSocketFactory(trustContext.sslSocketFactory())
+                .trustManager(trustContext.x509TrustManager())
                 .uris(config.uris())
                 .connectTimeout(config.connectTimeout().orElse(DEFAULT_CONNECT_TIMEOUT))
                 .readTimeout(config.readTimeout().orElse(DEFAULT_READ_TIMEOUT))
@@ -141,14 +162,36 @@ public final class ClientConfigurations {
     }
 
     private static ProxySelector fixedProxySelectorFor(Proxy proxy) {
-        return new ProxySelector() {
-            @Override
-            public List<Proxy> select(URI uri) {
-                return ImmutableList.of(proxy);
-            }
-
-            @Override
-            public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {}
-        };
+        return new FixedProxySelector(proxy);
+    }
+
+    /**
+     * Selects the same proxy for all URIs. Selectors of equal proxies are equal, such that clients configured again
+     * from the same proxy configuration can share their connections, see {@code OkHttpClients#reconfigurable}.
+     */
+    private static final class FixedProxySelector extends ProxySelector {
+        private final Proxy proxy;
+
+        FixedProxySelector(Proxy proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        public List<Proxy> select(URI uri) {
+            return ImmutableList.of(proxy);
+        }
+
+        @Override
+        public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {}
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FixedProxySelector && proxy.equals(((FixedProxySelector) other).proxy);
+        }
+
+        @Override
+        public int hashCode() {
+            return proxy.hashCode();
+        }
     }
 }
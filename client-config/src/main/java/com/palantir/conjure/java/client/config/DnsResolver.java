@@ -0,0 +1,37 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.config;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+/** Resolves hostnames to IP addresses, see {@link ClientConfiguration#dnsResolver}. */
+@FunctionalInterface
+public interface DnsResolver {
+
+    /** Resolves hostnames using {@link InetAddress#getAllByName}, i.e., subject to the JVM's DNS cache. */
+    DnsResolver SYSTEM = hostname -> Arrays.asList(InetAddress.getAllByName(hostname));
+
+    /**
+     * Returns the IP addresses of the given host, in order of preference. Never returns an empty list.
+     *
+     * @throws UnknownHostException if the host cannot be resolved
+     */
+    List<InetAddress> lookup(String hostname) throws UnknownHostException;
+}
@@ -33,5 +33,13 @@ public enum NodeSelectionStrategy {
     /**
      * Similar to {@link #PIN_UNTIL_ERROR}, except will not shuffle the URLs throughout the lifetime of the client.
      */
-    PIN_UNTIL_ERROR_WITHOUT_RESHUFFLE
+    PIN_UNTIL_ERROR_WITHOUT_RESHUFFLE,
+
+    /**
+     * Similar to {@link #ROUND_ROBIN}, but only selects nodes in the {@link ClientConfiguration#localZone local zone}
+     * while any of them is available, i.e. not failed, not ejected as a latency outlier and below
+     * {@link ClientConfiguration#zoneSpilloverInFlightRequests}. Requests spill over to the nodes in other zones
+     * otherwise. The zones of the nodes are configured in {@link ClientConfiguration#uriZones}.
+     */
+    PREFER_LOCAL_ZONE
 }
@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.config.ssl.SslContextCache;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricSet;
+import java.util.Map;
+
+final class SslContextCacheMetricSet implements TaggedMetricSet {
+
+    private final ImmutableMap<MetricName, Metric> metrics;
+
+    SslContextCacheMetricSet(SslContextCache cache) {
+        this.metrics = ImmutableMap.of(
+                MetricName.builder().safeName("com.palantir.conjure.java.ssl-context-cache.hits").build(),
+                (Gauge) cache::hitCount,
+                MetricName.builder().safeName("com.palantir.conjure.java.ssl-context-cache.misses").build(),
+                (Gauge) cache::missCount);
+    }
+
+    @Override
+    public Map<MetricName, Metric> getMetrics() {
+        return metrics;
+    }
+}
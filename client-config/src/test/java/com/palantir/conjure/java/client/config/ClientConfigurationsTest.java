@@ -25,6 +25,7 @@ import com.google.common.net.HostAndPort;
 import com.palantir.conjure.java.api.config.service.ProxyConfiguration;
 import com.palantir.conjure.java.api.config.service.ServiceConfiguration;
 import com.palantir.conjure.java.api.config.ssl.SslConfiguration;
+import com.palantir.conjure.java.config.ssl.SslContextCache;
 import com.palantir.logsafe.testing.Assertions;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
 import java.net.Proxy;
@@ -61,6 +62,21 @@ public final class ClientConfigurationsTest {
         assertThat(actual.taggedMetricRegistry()).isSameAs(DefaultTaggedMetricRegistry.getDefault());
     }
 
+    @Test
+    public void testFromServiceConfig_sharesSocketFactoryOfEqualSslConfigurations() {
+        ServiceConfiguration serviceConfig = ServiceConfiguration.builder()
+                .uris(uris)
+                .security(SslConfiguration.of(Paths.get("src/test/resources/trustStore.jks")))
+                .build();
+        SslContextCache cache = SslContextCache.create(1, Duration.ofMinutes(1));
+
+        assertThat(ClientConfigurations.of(serviceConfig).sslSocketFactory())
+                .isSameAs(ClientConfigurations.of(serviceConfig).sslSocketFactory());
+        assertThat(ClientConfigurations.of(serviceConfig, cache).sslSocketFactory())
+                .isSameAs(cache.getSslSocketFactory(serviceConfig.security()))
+                .isNotSameAs(ClientConfigurations.of(serviceConfig).sslSocketFactory());
+    }
+
     @Test
     public void testFromParameters_fillsInDefaults() {
         SSLSocketFactory sslFactory = mock(SSLSocketFactory.class);
@@ -125,6 +141,39 @@ public final class ClientConfigurationsTest {
                 .hasMessage("If nodeSelectionStrategy is ROUND_ROBIN then failedUrlCooldown must be positive");
     }
 
+    @Test
+    @SuppressWarnings("CheckReturnValue")
+    public void preferLocalZone_requiresLocalZone() throws Exception {
+        ServiceConfiguration serviceConfig = ServiceConfiguration.builder()
+                .uris(uris)
+                .security(SslConfiguration.of(Paths.get("src/test/resources/trustStore.jks")))
+                .build();
+
+        assertThatThrownBy(() -> ClientConfiguration.builder().from(
+                ClientConfigurations.of(serviceConfig))
+                .nodeSelectionStrategy(NodeSelectionStrategy.PREFER_LOCAL_ZONE)
+                .failedUrlCooldown(Duration.ofMillis(1))
+                .build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("If nodeSelectionStrategy is PREFER_LOCAL_ZONE then localZone must be set");
+    }
+
+    @Test
+    @SuppressWarnings("CheckReturnValue")
+    public void uriZones_onlyForUris() throws Exception {
+        ServiceConfiguration serviceConfig = ServiceConfiguration.builder()
+                .uris(uris)
+                .security(SslConfiguration.of(Paths.get("src/test/resources/trustStore.jks")))
+                .build();
+
+        assertThatThrownBy(() -> ClientConfiguration.builder().from(
+                ClientConfigurations.of(serviceConfig))
+                .putUriZones("https://unknown", "zone-a")
+                .build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("uriZones must only contain zones of uris");
+    }
+
     @Test
     public void overriding_tagged_metric_registry_is_convenient() {
         ServiceConfiguration serviceConfig = ServiceConfiguration.builder()
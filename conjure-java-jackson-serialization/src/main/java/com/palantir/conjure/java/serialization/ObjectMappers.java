@@ -21,6 +21,8 @@ import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -56,6 +58,20 @@ public final class ObjectMappers {
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     }
 
+    /**
+     * Returns a default ObjectMapper which uses the smile factory with settings adjusted for use in clients.
+     * <p>
+     * Settings:
+     * <ul>
+     *   <li>Ignore unknown properties found during deserialization.
+     *   <li>Repeated property names and short string values are written as back-references.
+     * </ul>
+     */
+    public static ObjectMapper newSmileClientObjectMapper() {
+        return withDefaultModules(new ObjectMapper(smileFactory()))
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
     /**
      * Returns a default ObjectMapper with settings adjusted for use in servers.
      * <p>
@@ -82,6 +98,20 @@ public final class ObjectMappers {
                 .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     }
 
+    /**
+     * Returns a default ObjectMapper which uses the smile factory with settings adjusted for use in servers.
+     * <p>
+     * Settings:
+     * <ul>
+     *   <li>Throw on unknown properties found during deserialization.
+     *   <li>Repeated property names and short string values are written as back-references.
+     * </ul>
+     */
+    public static ObjectMapper newSmileServerObjectMapper() {
+        return withDefaultModules(new ObjectMapper(smileFactory()))
+                .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
     /**
      * Configures provided ObjectMapper with default modules and settings.
      * <p>
@@ -111,4 +141,11 @@ public final class ObjectMappers {
                 .disable(MapperFeature.ALLOW_COERCION_OF_SCALARS)
                 .disable(DeserializationFeature.ACCEPT_FLOAT_AS_INT);
     }
+
+    private static SmileFactory smileFactory() {
+        return new SmileFactory()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+    }
 }
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.google.common.collect.ImmutableMap;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
@@ -36,6 +37,7 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -204,6 +206,19 @@ public final class ObjectMappersTest {
                 .hasMessageContaining("out of range of int");
     }
 
+    @Test
+    public void testSmileSharesRepeatedNamesAndValues() throws IOException {
+        Map<String, String> entry = ImmutableMap.of("status", "ACTIVE", "owner", "conjure");
+        List<Map<String, String>> value = Collections.nCopies(100, entry);
+
+        byte[] smile = ObjectMappers.newSmileClientObjectMapper().writeValueAsBytes(value);
+        TypeReference<List<Map<String, String>>> type = new TypeReference<List<Map<String, String>>>() {};
+        assertThat(ObjectMappers.newSmileServerObjectMapper().<List<Map<String, String>>>readValue(smile, type))
+                .isEqualTo(value);
+        assertThat(smile.length).isLessThan(ObjectMappers.newCborClientObjectMapper().writeValueAsBytes(value).length);
+        assertThat(smile.length).isLessThan(MAPPER.writeValueAsBytes(value).length / 4);
+    }
+
     private static String ser(Object object) throws IOException {
         return MAPPER.writeValueAsString(object);
     }
@@ -0,0 +1,111 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.CborDelegateDecoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.CborDelegateEncoder;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.Response;
+import feign.codec.Decoder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares decoding CBOR response bodies with {@link CborDelegateDecoder} against the previous approach, which peeked
+ * at the first byte through a {@link PushbackInputStream} and let Jackson copy the stream into its own buffers. Large
+ * payloads exceed the size up to which bodies are read into an array, and chunked bodies have no known length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CborDecodingBenchmark {
+
+    private static final Type TYPE = new TypeReference<List<Map<String, String>>>() {}.getType();
+    private static final Map<String, Collection<String>> HEADERS =
+            ImmutableMap.of("Content-Type", ImmutableList.of(CborDelegateEncoder.MIME_TYPE));
+
+    @Param({"256", "1048576"})
+    public int payloadBytes;
+
+    @Param({"false", "true"})
+    public boolean chunked;
+
+    private ObjectMapper cborMapper;
+    private Decoder decoder;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        cborMapper = ObjectMappers.newCborClientObjectMapper();
+        decoder = new CborDelegateDecoder(cborMapper, (response, type) -> {
+            throw new IllegalStateException("Expected a CBOR response");
+        });
+
+        // roughly payloadBytes in total
+        int entryBytes = cborMapper.writeValueAsBytes(entry(100_000)).length;
+        List<Map<String, String>> value = IntStream.range(100_000, 100_000 + Math.max(1, payloadBytes / entryBytes))
+                .mapToObj(CborDecodingBenchmark::entry)
+                .collect(Collectors.toList());
+        payload = cborMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return decoder.decode(response(), TYPE);
+    }
+
+    @Benchmark
+    public Object decodeWithPushbackInputStream() throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(response().body().asInputStream(), 1);
+        int firstByte = stream.read();
+        if (firstByte == -1) {
+            return null;
+        }
+        stream.unread(firstByte);
+        return cborMapper.readValue(stream, cborMapper.constructType(TYPE));
+    }
+
+    private static Map<String, String> entry(int index) {
+        return ImmutableMap.of("id", "id-" + index, "name", "name-" + index);
+    }
+
+    private Response response() {
+        return chunked
+                ? Response.create(200, "OK", HEADERS, new ByteArrayInputStream(payload), null)
+                : Response.create(200, "OK", HEADERS, payload);
+    }
+}
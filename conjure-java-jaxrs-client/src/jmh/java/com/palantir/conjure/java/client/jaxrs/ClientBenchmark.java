@@ -0,0 +1,106 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.api.config.service.UserAgent;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.conjure.java.client.config.ClientConfigurations;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.SpecializedEncoder;
+import com.palantir.conjure.java.okhttp.HostMetricsRegistry;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.RequestTemplate;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of building a client once the shared mappers and type caches are warm, i.e. the cost that
+ * services pay for each additional client and for each client rebuilt on a configuration change, and the cost of
+ * encoding a request body with the cached writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClientBenchmark {
+
+    private static final UserAgent AGENT = UserAgent.of(UserAgent.Agent.of("benchmark", "0.0.1"));
+
+    @Param({"16", "65536"})
+    public int bodyBytes;
+
+    private ClientConfiguration config;
+    private SpecializedEncoder encoder;
+    private Map<String, String> body;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        config = ClientConfigurations.of(
+                ImmutableList.of("https://localhost:8443/api"),
+                (SSLSocketFactory) SSLSocketFactory.getDefault(),
+                (X509TrustManager) trustManagerFactory.getTrustManagers()[0]);
+        encoder = new SpecializedEncoder(
+                ObjectMappers.newClientObjectMapper(),
+                ObjectMappers.newCborClientObjectMapper(),
+                ObjectMappers.newSmileClientObjectMapper(),
+                false);
+        body = ImmutableMap.of("key", Strings.repeat("v", bodyBytes));
+    }
+
+    @Benchmark
+    public Service buildClient() {
+        return JaxRsClient.create(Service.class, AGENT, new HostMetricsRegistry(), config);
+    }
+
+    @Benchmark
+    public RequestTemplate encodeBody() {
+        RequestTemplate template = new RequestTemplate().header("Content-Type", MediaType.APPLICATION_JSON);
+        encoder.encode(body, Map.class, template);
+        return template;
+    }
+
+    @Path("/")
+    public interface Service {
+        @POST
+        @Path("echo")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.APPLICATION_JSON)
+        Map<String, String> echo(Map<String, String> value);
+    }
+}
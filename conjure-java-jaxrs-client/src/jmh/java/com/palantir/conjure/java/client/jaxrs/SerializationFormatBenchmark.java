@@ -0,0 +1,125 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares serializing and deserializing lists of {@link ManyFieldExample}s as JSON, CBOR and Smile with the client
+ * mappers of {@link ObjectMappers}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationFormatBenchmark {
+
+    private static final TypeReference<List<ManyFieldExample>> TYPE = new TypeReference<List<ManyFieldExample>>() {};
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"1", "1000"})
+    public int size;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<ManyFieldExample> value;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper mapper = mapper(format);
+        writer = mapper.writerFor(TYPE);
+        reader = mapper.readerFor(TYPE);
+        value = IntStream.range(0, size).mapToObj(ManyFieldExample::of).collect(Collectors.toList());
+        bytes = writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public List<ManyFieldExample> deserialize() throws IOException {
+        return reader.readValue(bytes);
+    }
+
+    private static ObjectMapper mapper(String format) {
+        switch (format) {
+            case "json":
+                return ObjectMappers.newClientObjectMapper();
+            case "cbor":
+                return ObjectMappers.newCborClientObjectMapper();
+            case "smile":
+                return ObjectMappers.newSmileClientObjectMapper();
+        }
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+
+    /**
+     * Mirrors the {@code ManyFieldExample} type of the conjure verification API, whose generated classes are only
+     * available to the verifier projects.
+     */
+    public static final class ManyFieldExample {
+        public String string;
+        public int integer;
+        public double doubleValue;
+        public Optional<String> optionalItem = Optional.empty();
+        public List<String> items = ImmutableList.of();
+        public Set<String> set = ImmutableSet.of();
+        public Map<String, String> map = ImmutableMap.of();
+        public String alias;
+
+        static ManyFieldExample of(int index) {
+            ManyFieldExample example = new ManyFieldExample();
+            example.string = "string-" + index;
+            example.integer = index;
+            example.doubleValue = index / 3.0;
+            example.optionalItem = Optional.of("optional");
+            example.items = ImmutableList.of("item-1", "item-2", "item-3");
+            example.set = ImmutableSet.of("value-1", "value-2");
+            example.map = ImmutableMap.of("key-1", "value-1", "key-2", "value-2");
+            example.alias = "alias";
+            return example;
+        }
+    }
+}
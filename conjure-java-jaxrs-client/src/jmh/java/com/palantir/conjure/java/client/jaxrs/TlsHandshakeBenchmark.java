@@ -0,0 +1,251 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.conjure.java.api.config.service.UserAgent;
+import com.palantir.conjure.java.api.config.ssl.SslConfiguration;
+import com.palantir.conjure.java.client.config.CipherSuites;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.conjure.java.client.config.ClientConfigurations;
+import com.palantir.conjure.java.config.ssl.SslSocketFactories;
+import com.palantir.conjure.java.okhttp.HostMetricsRegistry;
+import com.palantir.conjure.java.okhttp.OkHttpClients;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares TLS handshakes across {@link ClientConfiguration#tlsProtocols} and cipher suite policies, using the test
+ * keystores of this project (run from the project directory).
+ * <p>
+ * {@link #connect} measures the latency of a request on a fresh connection to a local TLS server, as seen by a client
+ * created with {@link OkHttpClients}. {@link #handshakeInMemory} performs the same handshake between two
+ * {@link SSLEngine}s on a single thread without any I/O, such that its time is the combined CPU cost of the client and
+ * server side of the handshake. Unless {@link #resumeSessions} is set, sessions are invalidated before each handshake,
+ * such that every handshake is a full handshake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TlsHandshakeBenchmark {
+
+    private static final UserAgent AGENT = UserAgent.of(UserAgent.Agent.of("benchmark", "0.0.1"));
+    private static final Path TRUST_STORE = Paths.get("src/test/resources/trustStore.jks");
+    private static final Path KEY_STORE = Paths.get("src/test/resources/keyStore.jks");
+    private static final String KEY_STORE_PASSWORD = "keystore";
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_HANDSHAKE_STEPS = 1000;
+
+    @Param({"TLS_1_2", "TLS_1_2_AND_1_3", "TLS_1_3"})
+    public ClientConfiguration.TlsProtocols tlsProtocols;
+
+    @Param({"false", "true"})
+    public boolean enableGcmCipherSuites;
+
+    @Param({"false", "true"})
+    public boolean resumeSessions;
+
+    private SSLContext clientContext;
+    private SSLContext serverContext;
+    private MockWebServer server;
+    private OkHttpClient client;
+    private Request request;
+
+    @Setup
+    public void setUp() throws IOException {
+        clientContext = SslSocketFactories.createSslContext(SslConfiguration.of(TRUST_STORE));
+        serverContext = SslSocketFactories.createSslContext(
+                SslConfiguration.of(TRUST_STORE, KEY_STORE, KEY_STORE_PASSWORD));
+
+        server = new MockWebServer();
+        server.useHttps(serverContext.getSocketFactory(), false);
+        // HTTP/2 connections are shared regardless of the Connection header below
+        server.setProtocols(ImmutableList.of(Protocol.HTTP_1_1));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                return new MockResponse().setBody("ok");
+            }
+        });
+        server.start();
+
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(ClientConfigurations.of(
+                        ImmutableList.of(server.url("/").toString()),
+                        clientContext.getSocketFactory(),
+                        SslSocketFactories.createX509TrustManager(SslConfiguration.of(TRUST_STORE))))
+                .tlsProtocols(tlsProtocols)
+                .enableGcmCipherSuites(enableGcmCipherSuites)
+                .maxNumRetries(0)
+                .build();
+        client = OkHttpClients.create(config, AGENT, new HostMetricsRegistry(), TlsHandshakeBenchmark.class);
+        // the server closes the connection after each response, such that each request performs a handshake
+        request = new Request.Builder().url(server.url("/")).header("Connection", "close").build();
+    }
+
+    @Setup(Level.Invocation)
+    public void maybeInvalidateSessions() {
+        if (!resumeSessions) {
+            invalidateAll(clientContext.getClientSessionContext());
+            invalidateAll(serverContext.getServerSessionContext());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int connect() throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().bytes().length;
+        }
+    }
+
+    @Benchmark
+    public String handshakeInMemory() throws SSLException {
+        SSLEngine clientEngine = clientContext.createSSLEngine("localhost", server.getPort());
+        clientEngine.setUseClientMode(true);
+        clientEngine.setEnabledProtocols(supported(protocols(), clientEngine.getSupportedProtocols()));
+        clientEngine.setEnabledCipherSuites(supported(cipherSuites(), clientEngine.getSupportedCipherSuites()));
+        SSLEngine serverEngine = serverContext.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+
+        handshake(clientEngine, serverEngine);
+        return clientEngine.getSession().getCipherSuite();
+    }
+
+    /** Mirrors the connection specs that {@link OkHttpClients} derives from the TLS policy. */
+    private String[] protocols() {
+        switch (tlsProtocols) {
+            case TLS_1_2:
+                return new String[] {"TLSv1.2"};
+            case TLS_1_2_AND_1_3:
+                return new String[] {"TLSv1.3", "TLSv1.2"};
+            case TLS_1_3:
+                return new String[] {"TLSv1.3"};
+        }
+        throw new IllegalStateException("Unknown TLS protocols: " + tlsProtocols);
+    }
+
+    private String[] cipherSuites() {
+        Stream<String> tls13 = tlsProtocols == ClientConfiguration.TlsProtocols.TLS_1_2
+                ? Stream.empty()
+                : Arrays.stream(CipherSuites.tls13CipherSuites());
+        Stream<String> tls12 = tlsProtocols == ClientConfiguration.TlsProtocols.TLS_1_3
+                ? Stream.empty()
+                : Arrays.stream(
+                        enableGcmCipherSuites ? CipherSuites.allCipherSuites() : CipherSuites.fastCipherSuites());
+        return Stream.concat(tls13, tls12).toArray(String[]::new);
+    }
+
+    private static String[] supported(String[] enabled, String[] supported) {
+        return Arrays.stream(enabled).filter(Arrays.asList(supported)::contains).toArray(String[]::new);
+    }
+
+    private static void invalidateAll(SSLSessionContext sessions) {
+        for (byte[] id : Collections.list(sessions.getIds())) {
+            SSLSession session = sessions.getSession(id);
+            if (session != null) {
+                session.invalidate();
+            }
+        }
+    }
+
+    /** Runs the handshake to completion by alternately stepping either engine and passing records between them. */
+    private static void handshake(SSLEngine clientEngine, SSLEngine serverEngine) throws SSLException {
+        ByteBuffer clientToServer = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer serverToClient = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer application = ByteBuffer.allocate(BUFFER_BYTES);
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        for (int step = 0; step < MAX_HANDSHAKE_STEPS; step++) {
+            boolean clientDone = step(clientEngine, serverToClient, clientToServer, application);
+            boolean serverDone = step(serverEngine, clientToServer, serverToClient, application);
+            if (clientDone && serverDone) {
+                // TLS 1.3 servers send session tickets after the handshake, which the client needs to resume sessions
+                serverToClient.flip();
+                while (serverToClient.hasRemaining()) {
+                    clientEngine.unwrap(serverToClient, application);
+                    application.clear();
+                }
+                return;
+            }
+        }
+        throw new IllegalStateException("Handshake did not complete");
+    }
+
+    /** Performs the next handshake action of the given engine, and returns true if its handshake has completed. */
+    private static boolean step(SSLEngine engine, ByteBuffer in, ByteBuffer out, ByteBuffer application)
+            throws SSLException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_WRAP:
+                engine.wrap(EMPTY, out);
+                return false;
+            case NEED_UNWRAP:
+                in.flip();
+                SSLEngineResult result = engine.unwrap(in, application);
+                in.compact();
+                application.clear();
+                return result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED;
+            case NEED_TASK:
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                return false;
+            case FINISHED:
+            case NOT_HANDSHAKING:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
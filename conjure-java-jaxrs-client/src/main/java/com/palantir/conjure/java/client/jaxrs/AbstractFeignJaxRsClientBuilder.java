@@ -19,41 +19,57 @@ package com.palantir.conjure.java.client.jaxrs;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.palantir.conjure.java.api.config.service.UserAgent;
 import com.palantir.conjure.java.client.config.ClientConfiguration;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.CborDelegateDecoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.CborDelegateEncoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.EmptyContainerDecoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.CachingContract;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.DetachableBodyClient;
 import com.palantir.conjure.java.client.jaxrs.feignimpl.GuavaOptionalAwareContract;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.GuavaOptionalAwareDecoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.InputStreamDelegateDecoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.InputStreamDelegateEncoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.JacksonTypeCache;
 import com.palantir.conjure.java.client.jaxrs.feignimpl.Java8OptionalAwareContract;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.Java8OptionalAwareDecoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.NeverReturnNullDecoder;
 import com.palantir.conjure.java.client.jaxrs.feignimpl.PathTemplateHeaderEnrichmentContract;
 import com.palantir.conjure.java.client.jaxrs.feignimpl.QosErrorDecoder;
 import com.palantir.conjure.java.client.jaxrs.feignimpl.SlashEncodingContract;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.TextDelegateDecoder;
-import com.palantir.conjure.java.client.jaxrs.feignimpl.TextDelegateEncoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.SpecializedDecoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.SpecializedEncoder;
+import com.palantir.conjure.java.client.jaxrs.feignimpl.StreamingRequestClient;
 import com.palantir.conjure.java.okhttp.HostEventsSink;
 import com.palantir.conjure.java.okhttp.OkHttpClients;
+import com.palantir.conjure.java.okhttp.SerializerWarmer;
 import com.palantir.logsafe.Preconditions;
+import feign.Client;
 import feign.Contract;
 import feign.Feign;
 import feign.Logger;
 import feign.Request;
 import feign.Retryer;
-import feign.codec.Decoder;
 import feign.codec.ErrorDecoder;
-import feign.jackson.JacksonDecoder;
-import feign.jackson.JacksonEncoder;
 import feign.jaxrs.JAXRSContract;
 import feign.okhttp.OkHttpClient;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Not meant to be implemented outside of this library.
  */
 abstract class AbstractFeignJaxRsClientBuilder {
 
+    /**
+     * Shared by all clients, such that the annotations of each service interface are parsed once per JVM rather than
+     * whenever a client is built, e.g. when a refreshable configuration changes.
+     */
+    private static final Contract contract = new CachingContract(
+            new PathTemplateHeaderEnrichmentContract(
+                    new SlashEncodingContract(
+                            new Java8OptionalAwareContract(
+                                    new GuavaOptionalAwareContract(
+                                            new JAXRSContract())))));
+
     private final ClientConfiguration config;
 
     /**
@@ -75,6 +91,8 @@ abstract class AbstractFeignJaxRsClientBuilder {
 
     protected abstract ObjectMapper getCborObjectMapper();
 
+    protected abstract ObjectMapper getSmileObjectMapper();
+
     /**
      * Set the host metrics registry to use when constructing the OkHttp client.
      */
@@ -85,34 +103,92 @@ abstract class AbstractFeignJaxRsClientBuilder {
     }
 
     public final <T> T build(Class<T> serviceClass, UserAgent userAgent) {
+        Preconditions.checkNotNull(hostEventsSink, "hostEventsSink must be set");
+        return build(serviceClass, OkHttpClients.create(config, userAgent, hostEventsSink, serviceClass));
+    }
+
+    /**
+     * Builds a client that sends its requests through the given OkHttp client, which must have been created by
+     * {@link OkHttpClients} for the configuration of this builder, e.g. by {@link OkHttpClients#reconfigurable}.
+     */
+    final <T> T build(Class<T> serviceClass, okhttp3.OkHttpClient okHttpClient) {
         ObjectMapper objectMapper = getObjectMapper();
         ObjectMapper cborObjectMapper = getCborObjectMapper();
-        Preconditions.checkNotNull(hostEventsSink, "hostEventsSink must be set");
-        okhttp3.OkHttpClient okHttpClient = OkHttpClients.create(config, userAgent, hostEventsSink, serviceClass);
+        ObjectMapper smileObjectMapper = getSmileObjectMapper();
+        if (config.warmUpSerializers()) {
+            JacksonTypeCache types = JacksonTypeCache.of(objectMapper);
+            SerializerWarmer.warmUp(types::bodyWriter, types::reader, requestBodyTypes(serviceClass),
+                    responseTypes(serviceClass), config.taggedMetricRegistry(), serviceClass);
+        }
 
         return Feign.builder()
-                .contract(createContract())
-                .encoder(
-                        new InputStreamDelegateEncoder(
-                                new TextDelegateEncoder(
-                                        new CborDelegateEncoder(
-                                                cborObjectMapper,
-                                                new JacksonEncoder(objectMapper)))))
-                .decoder(createDecoder(objectMapper, cborObjectMapper))
+                .contract(contract)
+                .encoder(new SpecializedEncoder(
+                        objectMapper, cborObjectMapper, smileObjectMapper, config.enableStreamingRequests()))
+                .decoder(new SpecializedDecoder(objectMapper, cborObjectMapper, smileObjectMapper))
                 .errorDecoder(new QosErrorDecoder(new ErrorDecoder.Default()))
-                .client(new OkHttpClient(okHttpClient))
+                .client(createClient(okHttpClient, serviceClass))
+                .invocationHandlerFactory(StreamingRequestClient.invocationHandlerFactory())
                 .options(createRequestOptions())
                 .logLevel(Logger.Level.NONE)  // we use OkHttp interceptors for logging. (note that NONE is the default)
                 .retryer(new Retryer.Default(0, 0, 1))  // use OkHttp retry mechanism only
                 .target(serviceClass, primaryUri);
     }
 
-    private Contract createContract() {
-        return new PathTemplateHeaderEnrichmentContract(
-                new SlashEncodingContract(
-                        new Java8OptionalAwareContract(
-                                new GuavaOptionalAwareContract(
-                                        new JAXRSContract()))));
+    private Client createClient(okhttp3.OkHttpClient okHttpClient, Class<?> serviceClass) {
+        Client client = new OkHttpClient(okHttpClient);
+        if (stagesRequestBodies(serviceClass)) {
+            client = new StreamingRequestClient(client, okHttpClient, config.streamingRequestReplayBufferBytes());
+        }
+        return config.enableStreamingResponses() ? new DetachableBodyClient(client) : client;
+    }
+
+    /**
+     * Whether the encoder may hand request bodies of the service to a {@link StreamingRequestClient}, which is only
+     * installed if so: files, streams if streaming is enabled, and serialized bodies do, while services without request
+     * bodies and services that only send buffered streams do not.
+     */
+    private boolean stagesRequestBodies(Class<?> serviceClass) {
+        return requestBodyTypes(serviceClass).stream()
+                .anyMatch(type -> !type.equals(InputStream.class) || config.enableStreamingRequests());
+    }
+
+    /** The types of the parameters without annotations, which the {@link JAXRSContract} sends as request bodies. */
+    private static List<Type> requestBodyTypes(Class<?> serviceClass) {
+        List<Type> types = new ArrayList<>();
+        for (Method method : endpoints(serviceClass)) {
+            Type[] parameterTypes = method.getGenericParameterTypes();
+            Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (parameterAnnotations[i].length == 0) {
+                    types.add(parameterTypes[i]);
+                }
+            }
+        }
+        return types;
+    }
+
+    /** The return types of the endpoints, without the optionals that the {@link SpecializedDecoder} unwraps. */
+    private static List<Type> responseTypes(Class<?> serviceClass) {
+        List<Type> types = new ArrayList<>();
+        for (Method method : endpoints(serviceClass)) {
+            Type type = unwrap(method.getGenericReturnType(), java.util.Optional.class);
+            types.add(unwrap(type, com.google.common.base.Optional.class));
+        }
+        return types;
+    }
+
+    private static List<Method> endpoints(Class<?> serviceClass) {
+        return Arrays.stream(serviceClass.getMethods())
+                .filter(method -> !method.isDefault() && !Modifier.isStatic(method.getModifiers()))
+                .collect(Collectors.toList());
+    }
+
+    private static Type unwrap(Type type, Class<?> wrapper) {
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType().equals(wrapper)) {
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        return type;
     }
 
     private Request.Options createRequestOptions() {
@@ -120,17 +196,4 @@ abstract class AbstractFeignJaxRsClientBuilder {
                 Math.toIntExact(config.connectTimeout().toMillis()),
                 Math.toIntExact(config.readTimeout().toMillis()));
     }
-
-    private static Decoder createDecoder(ObjectMapper objectMapper, ObjectMapper cborObjectMapper) {
-        return new NeverReturnNullDecoder(
-                new Java8OptionalAwareDecoder(
-                        new GuavaOptionalAwareDecoder(
-                                new EmptyContainerDecoder(
-                                        objectMapper,
-                                        new InputStreamDelegateDecoder(
-                                                new TextDelegateDecoder(
-                                                        new CborDelegateDecoder(
-                                                                cborObjectMapper,
-                                                                new JacksonDecoder(objectMapper))))))));
-    }
 }
@@ -0,0 +1,47 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes bodies as JSON like {@link feign.jackson.JacksonEncoder}, but serializes them into a
+ * {@link BufferedRequestBody} rather than into a string, which requires the Feign client to be a
+ * {@link StreamingRequestClient}.
+ */
+public final class BufferedJacksonEncoder implements Encoder {
+
+    private final JacksonTypeCache types;
+
+    public BufferedJacksonEncoder(ObjectMapper mapper) {
+        this.types = JacksonTypeCache.of(mapper);
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        try {
+            StreamingRequestClient.encode(types.bodyWriter(bodyType).write(null, object), template);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+}
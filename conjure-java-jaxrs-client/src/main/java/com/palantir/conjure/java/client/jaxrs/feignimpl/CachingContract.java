@@ -0,0 +1,49 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.google.common.collect.ImmutableList;
+import feign.Contract;
+import feign.MethodMetadata;
+import java.util.List;
+
+/**
+ * Decorates a {@link Contract} such that the metadata of each interface is parsed once and reused by all clients that
+ * are created with this contract. Feign copies the request template of the metadata for every request and otherwise
+ * only reads the metadata, such that it can be shared between clients.
+ * <p>
+ * Metadata is held in a {@link ClassValue}, which does not prevent interfaces from being unloaded. Interfaces that fail
+ * to parse are parsed again the next time.
+ */
+public final class CachingContract implements Contract {
+
+    private final ClassValue<List<MethodMetadata>> metadata;
+
+    public CachingContract(Contract delegate) {
+        this.metadata = new ClassValue<List<MethodMetadata>>() {
+            @Override
+            protected List<MethodMetadata> computeValue(Class<?> targetType) {
+                return ImmutableList.copyOf(delegate.parseAndValidatateMetadata(targetType));
+            }
+        };
+    }
+
+    @Override
+    public List<MethodMetadata> parseAndValidatateMetadata(Class<?> targetType) {
+        return metadata.get(targetType);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import feign.Response;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Decodes JSON like {@link feign.jackson.JacksonDecoder}, but with an {@link ObjectReader} that is cached per type, and
+ * by parsing bytes rather than characters. Empty bodies decode as null.
+ */
+public final class CachingJacksonDecoder implements Decoder {
+
+    private final JacksonTypeCache types;
+
+    public CachingJacksonDecoder(ObjectMapper mapper) {
+        this.types = JacksonTypeCache.of(mapper);
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        return JacksonBodies.read(types.reader(type), response.body());
+    }
+}
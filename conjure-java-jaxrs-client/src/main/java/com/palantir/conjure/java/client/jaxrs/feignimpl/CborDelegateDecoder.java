@@ -24,7 +24,6 @@ import feign.FeignException;
 import feign.Response;
 import feign.codec.Decoder;
 import java.io.IOException;
-import java.io.PushbackInputStream;
 import java.lang.reflect.Type;
 import java.util.Collection;
 
@@ -39,11 +38,11 @@ import java.util.Collection;
  */
 public final class CborDelegateDecoder implements Decoder {
 
-    private final ObjectMapper cborObjectMapper;
+    private final JacksonTypeCache cborTypes;
     private final Decoder delegate;
 
     public CborDelegateDecoder(ObjectMapper cborObjectMapper, Decoder delegate) {
-        this.cborObjectMapper = cborObjectMapper;
+        this.cborTypes = JacksonTypeCache.of(cborObjectMapper);
         this.delegate = delegate;
     }
 
@@ -58,23 +57,9 @@ public final class CborDelegateDecoder implements Decoder {
         if (contentTypes.size() == 1
                 && Iterables.getOnlyElement(contentTypes, "").startsWith(CborDelegateEncoder.MIME_TYPE)) {
 
-            // some sillyness to test whether the input stram is empty
-            // if it's empty, we want to return null rather than having jackson throw
-            int pushbackBufferSize = 1;
-            PushbackInputStream pushbackInputStream = new PushbackInputStream(
-                    response.body().asInputStream(), pushbackBufferSize);
-            int firstByte = pushbackInputStream.read();
-            if (firstByte == -1) {
-                return null; // we don't have any data in the stream
-            }
-            // put the byte back
-            pushbackInputStream.unread(firstByte);
-
-            return cborObjectMapper.readValue(pushbackInputStream, cborObjectMapper.constructType(type));
-
+            return JacksonBodies.read(cborTypes.reader(type), response.body());
         } else {
             return delegate.decode(response, type);
         }
     }
-
 }
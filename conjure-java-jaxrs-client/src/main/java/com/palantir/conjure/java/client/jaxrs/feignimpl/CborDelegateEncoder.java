@@ -16,14 +16,14 @@
 
 package com.palantir.conjure.java.client.jaxrs.feignimpl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
@@ -43,12 +43,22 @@ public final class CborDelegateEncoder implements Encoder {
 
     public static final String MIME_TYPE = "application/cbor";
 
-    private final ObjectMapper cborObjectMapper;
+    private final JacksonTypeCache cborTypes;
     private final Encoder delegate;
+    private final boolean bufferBodies;
 
     public CborDelegateEncoder(ObjectMapper cborObjectMapper, Encoder delegate) {
-        this.cborObjectMapper = cborObjectMapper;
+        this(cborObjectMapper, delegate, false);
+    }
+
+    /**
+     * If {@code bufferBodies} is true, bodies are serialized into a {@link BufferedRequestBody} rather than into a byte
+     * array, which requires the Feign client to be a {@link StreamingRequestClient}.
+     */
+    public CborDelegateEncoder(ObjectMapper cborObjectMapper, Encoder delegate, boolean bufferBodies) {
+        this.cborTypes = JacksonTypeCache.of(cborObjectMapper);
         this.delegate = delegate;
+        this.bufferBodies = bufferBodies;
     }
 
     @Override
@@ -65,9 +75,12 @@ public final class CborDelegateEncoder implements Encoder {
         }
 
         try {
-            JavaType javaType = cborObjectMapper.getTypeFactory().constructType(bodyType);
-            template.body(cborObjectMapper.writerFor(javaType).writeValueAsBytes(object), StandardCharsets.UTF_8);
-        } catch (JsonProcessingException e) {
+            if (bufferBodies) {
+                StreamingRequestClient.encode(cborTypes.bodyWriter(bodyType).write(null, object), template);
+            } else {
+                template.body(cborTypes.writer(bodyType).writeValueAsBytes(object), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
@@ -0,0 +1,69 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import feign.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/** A response body that ignores {@link #close} once its stream has been {@link #detach detached}. */
+final class DetachableBody implements Response.Body {
+    private final Response.Body delegate;
+    private boolean detached = false;
+
+    DetachableBody(Response.Body delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the stream of this body, which is no longer closed when the body is closed. The connection and the
+     * concurrency permit of the response are held until the returned stream is closed.
+     */
+    InputStream detach() throws IOException {
+        InputStream stream = delegate.asInputStream();
+        detached = true;
+        return stream;
+    }
+
+    @Override
+    public Integer length() {
+        return delegate.length();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return delegate.isRepeatable();
+    }
+
+    @Override
+    public InputStream asInputStream() throws IOException {
+        return delegate.asInputStream();
+    }
+
+    @Override
+    public Reader asReader() throws IOException {
+        return delegate.asReader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!detached) {
+            delegate.close();
+        }
+    }
+}
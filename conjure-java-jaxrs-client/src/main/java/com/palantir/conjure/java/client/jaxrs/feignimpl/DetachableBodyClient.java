@@ -0,0 +1,46 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import java.io.IOException;
+
+/**
+ * Wraps the body of each response such that it can be detached from the response by the
+ * {@link InputStreamDelegateDecoder}, which then returns the body as a stream rather than reading it into memory.
+ * Feign closes the body of a response once it is decoded; a detached body is instead closed by the caller when it
+ * closes the returned stream.
+ */
+public final class DetachableBodyClient implements Client {
+    private final Client delegate;
+
+    public DetachableBodyClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Response response = delegate.execute(request, options);
+        if (response.body() == null) {
+            return response;
+        }
+        return Response.create(
+                response.status(), response.reason(), response.headers(), new DetachableBody(response.body()));
+    }
+}
@@ -46,19 +46,34 @@ import org.slf4j.LoggerFactory;
  * Interprets HTTP 204 as an 'empty' type using Jackson initially, then using reflection
  * to manually invoke a static factory annotated with {@link JsonCreator}.
  *
- * Empty instances are cached and re-used to avoid reflection and exceptions on a hot codepath.
+ * Empty instances are cached and re-used to avoid reflection and exceptions on a hot codepath. The cache is shared by
+ * all decoders with the same mapper.
  */
 public final class EmptyContainerDecoder implements Decoder {
 
+    private static final LoadingCache<ObjectMapper, LoadingCache<Type, Object>> blankInstanceCaches =
+            Caffeine.newBuilder()
+                    .weakKeys()
+                    .weakValues()
+                    .build(mapper -> Caffeine.newBuilder()
+                            .maximumSize(1000)
+                            .expireAfterAccess(10, TimeUnit.MINUTES)
+                            .build(new BlankInstanceLoader(mapper)));
+
     private final LoadingCache<Type, Object> blankInstanceCache;
     private final Decoder delegate;
 
     public EmptyContainerDecoder(ObjectMapper mapper, Decoder delegate) {
         this.delegate = delegate;
-        this.blankInstanceCache = Caffeine.newBuilder()
-                .maximumSize(1000)
-                .expireAfterAccess(10, TimeUnit.MINUTES)
-                .build(new BlankInstanceLoader(mapper));
+        this.blankInstanceCache = blankInstances(mapper);
+    }
+
+    /**
+     * Returns the cache of empty instances per type for the given mapper, whose values are null if no empty instance
+     * can be constructed.
+     */
+    static LoadingCache<Type, Object> blankInstances(ObjectMapper mapper) {
+        return blankInstanceCaches.get(mapper);
     }
 
     @Override
@@ -16,6 +16,9 @@
 
 package com.palantir.conjure.java.client.jaxrs.feignimpl;
 
+import com.palantir.conjure.java.okhttp.FileBodies;
+import com.palantir.logsafe.Preconditions;
+import com.palantir.logsafe.SafeArg;
 import feign.FeignException;
 import feign.Response;
 import feign.Util;
@@ -24,9 +27,17 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
 
 /**
- * If the return type is InputStream, return it, otherwise delegate to provided decoder.
+ * If the return type is InputStream, return it, otherwise delegate to provided decoder. If the return type is
+ * {@link Path}, write the body to a new temporary file, which is owned by the caller, and return the file. Feign
+ * exposes response bodies as streams only, so files are written through a small heap buffer, see
+ * {@link FileBodies#writeTo(InputStream, Path)}, rather than transferred from the connection like Retrofit downloads.
+ * <p>
+ * The body is read into memory before it is returned, unless the response was created by a
+ * {@link DetachableBodyClient}: the body is then streamed from the connection, and the caller must close the returned
+ * stream.
  */
 public final class InputStreamDelegateDecoder implements Decoder {
     private final Decoder delegate;
@@ -38,10 +49,26 @@ public final class InputStreamDelegateDecoder implements Decoder {
     @Override
     public Object decode(Response response, Type type) throws IOException, FeignException {
         if (type.equals(InputStream.class)) {
-            byte[] body = response.body() != null ? Util.toByteArray(response.body().asInputStream()) : new byte[0];
-            return new ByteArrayInputStream(body);
+            return decodeInputStream(response);
+        } else if (type.equals(Path.class)) {
+            return decodePath(response);
         } else {
             return delegate.decode(response, type);
         }
     }
+
+    static InputStream decodeInputStream(Response response) throws IOException {
+        Response.Body body = response.body();
+        if (body == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        } else if (body instanceof DetachableBody) {
+            return ((DetachableBody) body).detach();
+        }
+        return new ByteArrayInputStream(Util.toByteArray(body.asInputStream()));
+    }
+
+    static Path decodePath(Response response) throws IOException {
+        Preconditions.checkNotNull(response.body(), "Unexpected null body", SafeArg.of("status", response.status()));
+        return FileBodies.writeToTempFile(response.body().asInputStream());
+    }
 }
@@ -24,27 +24,48 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 /**
  * If the body type is an InputStream, write it into the body, otherwise pass to delegate.
+ * <p>
+ * If {@code streamBodies} is true, the stream is not read into memory but handed to the {@link StreamingRequestClient},
+ * which streams it to the connection. {@link Path} bodies are always handed to the {@link StreamingRequestClient},
+ * which sends the file without reading it into memory.
  */
 public final class InputStreamDelegateEncoder implements Encoder {
     private final Encoder delegate;
+    private final boolean streamBodies;
 
     public InputStreamDelegateEncoder(Encoder delegate) {
+        this(delegate, false);
+    }
+
+    public InputStreamDelegateEncoder(Encoder delegate, boolean streamBodies) {
         this.delegate = delegate;
+        this.streamBodies = streamBodies;
     }
 
     @Override
     public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
-        if (bodyType.equals(InputStream.class)) {
-            try {
-                template.body(Util.toByteArray((InputStream) object), StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+        if (bodyType.equals(Path.class)) {
+            StreamingRequestClient.stage((Path) object, template);
+        } else if (bodyType.equals(InputStream.class)) {
+            encodeInputStream((InputStream) object, template, streamBodies);
         } else {
             delegate.encode(object, bodyType, template);
         }
     }
+
+    static void encodeInputStream(InputStream stream, RequestTemplate template, boolean streamBodies) {
+        if (streamBodies) {
+            StreamingRequestClient.stage(stream, template);
+            return;
+        }
+        try {
+            template.body(Util.toByteArray(stream), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.io.ByteStreams;
+import feign.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/** Reads response bodies with Jackson, e.g. as JSON, CBOR or Smile. */
+final class JacksonBodies {
+
+    private static final int MAX_ARRAY_BYTES = 256 * 1024;
+
+    private JacksonBodies() {}
+
+    /**
+     * Returns null if the body is empty. Bodies of up to {@link #MAX_ARRAY_BYTES} bytes are read into an array,
+     * which Jackson parses in place rather than copying it into its own buffers chunk by chunk.
+     */
+    static Object read(ObjectReader reader, Response.Body body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        InputStream stream = body.asInputStream();
+        Integer length = body.length();
+        if (length != null) {
+            if (length == 0) {
+                return null;
+            } else if (length > MAX_ARRAY_BYTES) {
+                return reader.readValue(stream);
+            }
+            byte[] bytes = new byte[length];
+            ByteStreams.readFully(stream, bytes);
+            return reader.readValue(bytes);
+        }
+
+        // The length is unknown (chunked encoding): read up to the limit to find out whether the body is empty or small
+        byte[] prefix = ByteStreams.toByteArray(ByteStreams.limit(stream, MAX_ARRAY_BYTES + 1));
+        if (prefix.length == 0) {
+            return null;
+        } else if (prefix.length <= MAX_ARRAY_BYTES) {
+            return reader.readValue(prefix);
+        }
+        return reader.readValue(new SequenceInputStream(new ByteArrayInputStream(prefix), stream));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import java.lang.reflect.Type;
+
+/**
+ * Caches the {@link ObjectReader} and {@link ObjectWriter} of an {@link ObjectMapper} for each type, such that the
+ * type is resolved and the reader or writer is allocated once per endpoint rather than once per request. Readers and
+ * writers are immutable and thread-safe. The {@link BufferedRequestBody.Writer} of each type is cached as well, such
+ * that the sizes of its recent bodies are tracked across requests.
+ * <p>
+ * There is one cache per mapper, which is shared by all clients that use the mapper, such that clients which are
+ * built again, e.g. when their configuration is refreshed, reuse the readers and writers of earlier clients. The cache
+ * of a mapper is dropped once no client that uses it is reachable.
+ */
+public final class JacksonTypeCache {
+
+    private static final LoadingCache<ObjectMapper, JacksonTypeCache> caches = Caffeine.newBuilder()
+            .weakKeys()
+            .weakValues()
+            .build(JacksonTypeCache::new);
+
+    private final LoadingCache<Type, ObjectReader> readers;
+    private final LoadingCache<Type, ObjectWriter> writers;
+    private final LoadingCache<Type, BufferedRequestBody.Writer> bodyWriters;
+
+    private JacksonTypeCache(ObjectMapper mapper) {
+        this.readers = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build(type -> mapper.readerFor(mapper.constructType(type)));
+        this.writers = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build(type -> mapper.writerFor(mapper.constructType(type)));
+        this.bodyWriters = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build(type -> BufferedRequestBody.writer(writers.get(type)));
+    }
+
+    public static JacksonTypeCache of(ObjectMapper mapper) {
+        return caches.get(mapper);
+    }
+
+    public ObjectReader reader(Type type) {
+        return readers.get(type);
+    }
+
+    public ObjectWriter writer(Type type) {
+        return writers.get(type);
+    }
+
+    public BufferedRequestBody.Writer bodyWriter(Type type) {
+        return bodyWriters.get(type);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.net.HttpHeaders;
+import com.palantir.logsafe.Preconditions;
+import com.palantir.logsafe.SafeArg;
+import feign.FeignException;
+import feign.Response;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Decodes responses like the chain of {@link NeverReturnNullDecoder}, {@link Java8OptionalAwareDecoder},
+ * {@link GuavaOptionalAwareDecoder}, {@link EmptyContainerDecoder}, {@link InputStreamDelegateDecoder},
+ * {@link TextDelegateDecoder}, {@link CborDelegateDecoder}, {@link SmileDelegateDecoder} and
+ * {@link CachingJacksonDecoder}, but decides which of their steps apply once per return type rather than on every
+ * response.
+ * <p>
+ * Feign decodes the responses of each method with the return type of the method, so every method gets a decoder
+ * that only unwraps the optionals it returns, and that only inspects the Content-Type of the response, once, if the
+ * return type can be read in more than one format. Unlike the {@link EmptyContainerDecoder}, the body of a
+ * {@code 204} response is not decoded before it is replaced by an empty instance.
+ */
+public final class SpecializedDecoder implements Decoder {
+
+    private final JacksonTypeCache types;
+    private final JacksonTypeCache cborTypes;
+    private final JacksonTypeCache smileTypes;
+    private final LoadingCache<Type, Object> blankInstances;
+    private final LoadingCache<Type, BodyDecoder> decoders;
+
+    public SpecializedDecoder(ObjectMapper mapper, ObjectMapper cborMapper, ObjectMapper smileMapper) {
+        this.types = JacksonTypeCache.of(mapper);
+        this.cborTypes = JacksonTypeCache.of(cborMapper);
+        this.smileTypes = JacksonTypeCache.of(smileMapper);
+        this.blankInstances = EmptyContainerDecoder.blankInstances(mapper);
+        this.decoders = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build(this::compile);
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException, FeignException {
+        Object object = decoders.get(type).decode(response);
+        return Preconditions.checkNotNull(object,
+                "Unexpected null body",
+                SafeArg.of("status", response.status()));
+    }
+
+    private BodyDecoder compile(Type type) {
+        if (RawTypes.get(type).equals(Optional.class)) {
+            BodyDecoder inner = compileGuavaOptional(innerType(type));
+            return response -> response.status() == 204
+                    ? Optional.empty()
+                    : Optional.of(checkNotNull(inner.decode(response),
+                            "Unexpected null content for response status %s", response.status()));
+        }
+        return compileGuavaOptional(type);
+    }
+
+    private BodyDecoder compileGuavaOptional(Type type) {
+        if (RawTypes.get(type).equals(com.google.common.base.Optional.class)) {
+            BodyDecoder inner = compileEmptyContainer(innerType(type));
+            return response -> response.status() == 204
+                    ? com.google.common.base.Optional.absent()
+                    : com.google.common.base.Optional.of(checkNotNull(inner.decode(response),
+                            "Unexpected null content for response status %s", response.status()));
+        }
+        return compileEmptyContainer(type);
+    }
+
+    private BodyDecoder compileEmptyContainer(Type type) {
+        BodyDecoder body = compileBody(type);
+        Supplier<Object> blankInstance = Suppliers.memoize(() -> Preconditions.checkNotNull(
+                blankInstances.get(type),
+                "Received HTTP 204 but unable to construct an empty instance for return type",
+                SafeArg.of("type", type)));
+        return response -> {
+            if (response.status() == 204) {
+                return blankInstance.get();
+            }
+            Object decoded = body.decode(response);
+            return decoded == null && response.status() == 200 ? blankInstance.get() : decoded;
+        };
+    }
+
+    private BodyDecoder compileBody(Type type) {
+        if (type.equals(InputStream.class)) {
+            return InputStreamDelegateDecoder::decodeInputStream;
+        } else if (type.equals(Path.class)) {
+            return InputStreamDelegateDecoder::decodePath;
+        }
+
+        Supplier<ObjectReader> json = reader(types, type);
+        Supplier<ObjectReader> cbor = reader(cborTypes, type);
+        Supplier<ObjectReader> smile = reader(smileTypes, type);
+        return response -> {
+            String contentType = onlyContentType(response.headers());
+            if (contentType != null) {
+                if (contentType.startsWith(MediaType.TEXT_PLAIN)) {
+                    return TextDelegateDecoder.decodeText(response, type);
+                } else if (contentType.startsWith(CborDelegateEncoder.MIME_TYPE)) {
+                    return JacksonBodies.read(cbor.get(), response.body());
+                } else if (contentType.startsWith(SmileDelegateEncoder.MIME_TYPE)) {
+                    return JacksonBodies.read(smile.get(), response.body());
+                }
+            }
+            return JacksonBodies.read(json.get(), response.body());
+        };
+    }
+
+    /** Readers are resolved on first use, since most endpoints are only ever read in one format. */
+    private static Supplier<ObjectReader> reader(JacksonTypeCache typeCache, Type type) {
+        return Suppliers.memoize(() -> typeCache.reader(type));
+    }
+
+    /** Returns the Content-Type of the response, or null if the response has no or multiple Content-Types. */
+    private static String onlyContentType(Map<String, Collection<String>> headers) {
+        String contentType = null;
+        for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey())) {
+                for (String value : entry.getValue()) {
+                    if (contentType != null) {
+                        return null;
+                    }
+                    contentType = value;
+                }
+            }
+        }
+        return contentType;
+    }
+
+    private static Type innerType(Type type) {
+        return ((ParameterizedType) type).getActualTypeArguments()[0];
+    }
+
+    private interface BodyDecoder {
+        Object decode(Response response) throws IOException, FeignException;
+    }
+}
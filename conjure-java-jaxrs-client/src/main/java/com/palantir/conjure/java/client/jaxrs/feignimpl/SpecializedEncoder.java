@@ -0,0 +1,152 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Encodes bodies like the chain of {@link InputStreamDelegateEncoder}, {@link TextDelegateEncoder},
+ * {@link CborDelegateEncoder}, {@link SmileDelegateEncoder} and {@link BufferedJacksonEncoder}, but decides which of
+ * their steps apply once per body type rather than on every request. The Content-Type of the request is only
+ * inspected, once, for bodies that are not streams or files. Bodies are always serialized into a
+ * {@link BufferedRequestBody}, which requires the Feign client to be a {@link StreamingRequestClient} for bodies that
+ * are not held in byte arrays.
+ */
+public final class SpecializedEncoder implements Encoder {
+
+    private static final Encoder textEncoder = new Encoder.Default();
+
+    private final JacksonTypeCache types;
+    private final JacksonTypeCache cborTypes;
+    private final JacksonTypeCache smileTypes;
+    private final boolean streamBodies;
+    private final LoadingCache<Type, BodyEncoder> encoders;
+
+    /**
+     * If {@code streamBodies} is true, {@link InputStream} bodies are streamed to the connection rather than read into
+     * memory, see {@link InputStreamDelegateEncoder}.
+     */
+    public SpecializedEncoder(
+            ObjectMapper mapper, ObjectMapper cborMapper, ObjectMapper smileMapper, boolean streamBodies) {
+        this.types = JacksonTypeCache.of(mapper);
+        this.cborTypes = JacksonTypeCache.of(cborMapper);
+        this.smileTypes = JacksonTypeCache.of(smileMapper);
+        this.streamBodies = streamBodies;
+        this.encoders = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build(this::compile);
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        encoders.get(bodyType).encode(object, template);
+    }
+
+    private BodyEncoder compile(Type bodyType) {
+        if (bodyType.equals(Path.class)) {
+            return (object, template) -> StreamingRequestClient.stage((Path) object, template);
+        } else if (bodyType.equals(InputStream.class)) {
+            return (object, template) ->
+                    InputStreamDelegateEncoder.encodeInputStream((InputStream) object, template, streamBodies);
+        }
+
+        Supplier<BufferedRequestBody.Writer> json = writer(types, bodyType);
+        Supplier<BufferedRequestBody.Writer> cbor = writer(cborTypes, bodyType);
+        Supplier<BufferedRequestBody.Writer> smile = writer(smileTypes, bodyType);
+        return (object, template) -> {
+            Format format = format(template.headers());
+            if (format == Format.TEXT) {
+                textEncoder.encode(object, bodyType, template);
+            } else if (format == Format.CBOR) {
+                write(cbor.get(), object, template);
+            } else if (format == Format.SMILE) {
+                write(smile.get(), object, template);
+            } else {
+                write(json.get(), object, template);
+            }
+        };
+    }
+
+    private static void write(BufferedRequestBody.Writer writer, Object object, RequestTemplate template) {
+        try {
+            StreamingRequestClient.encode(writer.write(null, object), template);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    /** Writers are resolved on first use, since most endpoints are only ever written in one format. */
+    private static Supplier<BufferedRequestBody.Writer> writer(JacksonTypeCache typeCache, Type type) {
+        return Suppliers.memoize(() -> typeCache.bodyWriter(type));
+    }
+
+    /**
+     * Scans the Content-Type headers of the request once, and picks the format with the precedence of the decorating
+     * encoders: a sole text/plain, then any application/cbor, then any application/x-jackson-smile, then JSON.
+     */
+    private static Format format(Map<String, Collection<String>> headers) {
+        int count = 0;
+        boolean text = false;
+        boolean cbor = false;
+        boolean smile = false;
+        for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey())) {
+                for (String value : entry.getValue()) {
+                    count++;
+                    text |= MediaType.TEXT_PLAIN.equals(value);
+                    cbor |= CborDelegateEncoder.MIME_TYPE.equals(value);
+                    smile |= SmileDelegateEncoder.MIME_TYPE.equals(value);
+                }
+            }
+        }
+        if (text && count == 1) {
+            return Format.TEXT;
+        } else if (cbor) {
+            return Format.CBOR;
+        } else if (smile) {
+            return Format.SMILE;
+        }
+        return Format.JSON;
+    }
+
+    private enum Format {
+        TEXT,
+        CBOR,
+        SMILE,
+        JSON
+    }
+
+    private interface BodyEncoder {
+        void encode(Object object, RequestTemplate template);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import com.palantir.conjure.java.okhttp.FileBodies;
+import com.palantir.conjure.java.okhttp.StreamingRequestBody;
+import com.palantir.logsafe.exceptions.SafeIllegalStateException;
+import feign.Client;
+import feign.InvocationHandlerFactory;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+/**
+ * Sends requests whose {@link InputStream} or {@link Path} body was staged by the {@link InputStreamDelegateEncoder}
+ * with a {@link StreamingRequestBody} or a {@link FileBodies#requestBody file body}, or whose serialized body was
+ * staged as a {@link BufferedRequestBody} that is not held in a byte array, and passes all other requests to the
+ * delegate client.
+ * <p>
+ * Feign request bodies are byte arrays, so the stream is handed from the encoder to this client in a thread local:
+ * Feign encodes and executes each request on the calling thread. The request carries a marker header that identifies
+ * its stream, and which is removed before the request is sent. Serialized bodies that are held in byte arrays are set
+ * on the Feign request directly instead, and are not staged. Clients must be built with the
+ * {@link #invocationHandlerFactory}, which discards the staged body if Feign fails between encoding and executing the
+ * request, e.g. in a request interceptor.
+ */
+public final class StreamingRequestClient implements Client {
+    private static final String STREAMING_BODY_HEADER = "Conjure-Streaming-Body";
+    private static final ThreadLocal<StagedBody> stagedBody = new ThreadLocal<>();
+    private static final AtomicLong stagedBodyIds = new AtomicLong();
+
+    private final Client delegate;
+    private final OkHttpClient okHttpClient;
+    private final long maxReplayBytes;
+
+    public StreamingRequestClient(Client delegate, OkHttpClient okHttpClient, long maxReplayBytes) {
+        this.delegate = delegate;
+        this.okHttpClient = okHttpClient;
+        this.maxReplayBytes = maxReplayBytes;
+    }
+
+    /**
+     * Returns a factory of Feign's default invocation handlers that discard the body staged during an invocation once
+     * it completes, and restore the body staged by an enclosing invocation on the same thread, if any.
+     */
+    public static InvocationHandlerFactory invocationHandlerFactory() {
+        return (target, dispatch) -> {
+            InvocationHandler handler = new InvocationHandlerFactory.Default().create(target, dispatch);
+            return (proxy, method, args) -> {
+                StagedBody enclosing = stagedBody.get();
+                try {
+                    return handler.invoke(proxy, method, args);
+                } finally {
+                    if (enclosing == null) {
+                        stagedBody.remove();
+                    } else {
+                        stagedBody.set(enclosing);
+                    }
+                }
+            };
+        };
+    }
+
+    @VisibleForTesting
+    static boolean hasStagedBody() {
+        return stagedBody.get() != null;
+    }
+
+    static void stage(InputStream stream, RequestTemplate template) {
+        stage(template, (contentType, maxReplayBytes) -> StreamingRequestBody.of(contentType, stream, maxReplayBytes));
+    }
+
+    static void stage(Path file, RequestTemplate template) {
+        stage(template, (contentType, maxReplayBytes) ->
+                contentType != null ? FileBodies.requestBody(contentType, file) : FileBodies.requestBody(file));
+    }
+
+    /** Sets the given body on the request if it is held in a byte array, and stages it otherwise. */
+    static void encode(BufferedRequestBody body, RequestTemplate template) {
+        Optional<byte[]> bytes = body.byteArray();
+        if (bytes.isPresent()) {
+            template.body(bytes.get(), StandardCharsets.UTF_8);
+        } else {
+            stage(template, (contentType, maxReplayBytes) -> body.withContentType(contentType));
+        }
+    }
+
+    private static void stage(RequestTemplate template, BodyFactory body) {
+        String id = Long.toString(stagedBodyIds.incrementAndGet());
+        stagedBody.set(new StagedBody(id, body));
+        template.header(STREAMING_BODY_HEADER, id);
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Collection<String> ids = request.headers().get(STREAMING_BODY_HEADER);
+        if (ids == null) {
+            return delegate.execute(request, options);
+        }
+
+        StagedBody staged = stagedBody.get();
+        stagedBody.remove();
+        if (staged == null || !ids.contains(staged.id)) {
+            throw new SafeIllegalStateException("The streamed body of the request was not staged on this thread");
+        }
+
+        okhttp3.Request.Builder okHttpRequest = new okhttp3.Request.Builder().url(request.url());
+        MediaType contentType = null;
+        boolean hasAccept = false;
+        for (Map.Entry<String, Collection<String>> header : request.headers().entrySet()) {
+            String name = header.getKey();
+            if (name.equals(STREAMING_BODY_HEADER) || name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                continue;
+            }
+            hasAccept |= name.equalsIgnoreCase(HttpHeaders.ACCEPT);
+            for (String value : header.getValue()) {
+                if (name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)) {
+                    contentType = MediaType.parse(value);
+                }
+                okHttpRequest.addHeader(name, value);
+            }
+        }
+        if (!hasAccept) {
+            okHttpRequest.addHeader(HttpHeaders.ACCEPT, "*/*");
+        }
+
+        RequestBody body = staged.body.create(contentType, maxReplayBytes);
+        try {
+            okhttp3.Response response = okHttpClient.newCall(okHttpRequest.method(request.method(), body).build())
+                    .execute();
+            return toFeignResponse(response);
+        } finally {
+            if (body instanceof Closeable) {
+                ((Closeable) body).close();
+            }
+        }
+    }
+
+    private static Response toFeignResponse(okhttp3.Response response) {
+        Map<String, Collection<String>> headers = new LinkedHashMap<>(response.headers().toMultimap());
+        ResponseBody body = response.body();
+        if (body == null) {
+            return Response.create(response.code(), response.message(), headers, (Response.Body) null);
+        }
+        long length = body.contentLength();
+        Integer feignLength = length >= 0 && length <= Integer.MAX_VALUE ? (int) length : null;
+        return Response.create(response.code(), response.message(), headers, body.byteStream(), feignLength);
+    }
+
+    private interface BodyFactory {
+        RequestBody create(MediaType contentType, long maxReplayBytes);
+    }
+
+    private static final class StagedBody {
+        private final String id;
+        private final BodyFactory body;
+
+        StagedBody(String id, BodyFactory body) {
+            this.id = id;
+            this.body = body;
+        }
+    }
+}
@@ -50,13 +50,17 @@ public final class TextDelegateDecoder implements Decoder {
         }
         // In the case of multiple content types, or an unknown content type, we'll use the delegate instead.
         if (contentTypes.size() == 1 && Iterables.getOnlyElement(contentTypes, "").startsWith(MediaType.TEXT_PLAIN)) {
-            Object decoded = stringDecoder.decode(response, type);
-            if (decoded == null) {
-                return "";
-            }
-            return decoded;
+            return decodeText(response, type);
         }
 
         return delegate.decode(response, type);
     }
+
+    static Object decodeText(Response response, Type type) throws IOException {
+        Object decoded = stringDecoder.decode(response, type);
+        if (decoded == null) {
+            return "";
+        }
+        return decoded;
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.Client;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.codec.Encoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+public final class BufferedJacksonEncoderTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final Encoder encoder = new BufferedJacksonEncoder(ObjectMappers.newClientObjectMapper());
+    private final Client delegate = mock(Client.class);
+    private final Client client = new StreamingRequestClient(delegate, new OkHttpClient(), 0);
+
+    @Test
+    public void testSetsSmallSerializedBodiesAsByteArrays() throws Exception {
+        RequestTemplate template = template();
+        encoder.encode(ImmutableMap.of("key", "value"), Map.class, template);
+        assertThat(template.body(), is("{\"key\":\"value\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testSendsLargeSerializedBodiesWithoutByteArray() throws Exception {
+        server.enqueue(new MockResponse().setBody("response"));
+        Map<String, String> value =
+                ImmutableMap.of("key", Strings.repeat("value", BufferedRequestBody.MAX_ARRAY_BYTES));
+        encoder.encode(value, Map.class, template());
+        RequestTemplate template = template();
+
+        // the first large body of the type is still held in a byte array
+        encoder.encode(value, Map.class, template);
+        assertThat(template.body(), is(nullValue()));
+
+        try (Response response = client.execute(template.request(), new Request.Options())) {
+            assertThat(response.status(), is(200));
+        }
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getBody().readUtf8().length(), is(5 * BufferedRequestBody.MAX_ARRAY_BYTES + 10));
+        assertThat(request.getHeader("Content-Type"), is("application/json"));
+        verifyZeroInteractions(delegate);
+    }
+
+    private RequestTemplate template() {
+        return new RequestTemplate()
+                .method("POST")
+                .append(server.url("/path").toString())
+                .header("Content-Type", "application/json");
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import feign.Contract;
+import feign.MethodMetadata;
+import feign.jaxrs.JAXRSContract;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import org.junit.Test;
+
+public final class CachingContractTest {
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Contract contract = new CachingContract(targetType -> {
+        parses.incrementAndGet();
+        return new JAXRSContract().parseAndValidatateMetadata(targetType);
+    });
+
+    @Test
+    public void testParsesEachInterfaceOnce() {
+        List<MethodMetadata> metadata = contract.parseAndValidatateMetadata(Service.class);
+        assertThat(metadata, hasSize(1));
+
+        assertThat(contract.parseAndValidatateMetadata(Service.class), is(sameInstance(metadata)));
+        assertThat(parses.get(), is(1));
+    }
+
+    @Path("/")
+    public interface Service {
+        @GET
+        @Path("{param}")
+        String get(@PathParam("param") String param);
+    }
+}
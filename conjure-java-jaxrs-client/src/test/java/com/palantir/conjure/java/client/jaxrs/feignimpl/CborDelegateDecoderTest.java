@@ -0,0 +1,88 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.Response;
+import feign.codec.Decoder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public final class CborDelegateDecoderTest {
+
+    private static final Map<String, Collection<String>> HEADERS =
+            ImmutableMap.of(HttpHeaders.CONTENT_TYPE, ImmutableSet.of(CborDelegateEncoder.MIME_TYPE));
+
+    private final ObjectMapper cborMapper = ObjectMappers.newCborClientObjectMapper();
+    private final Decoder delegate = mock(Decoder.class);
+    private final Decoder decoder = new CborDelegateDecoder(cborMapper, delegate);
+
+    @Test
+    public void testDecodesEmptyBodiesAsNull() throws IOException {
+        assertThat(decoder.decode(response(new byte[0], 0), String.class), is(nullValue()));
+        assertThat(decoder.decode(response(new byte[0], null), String.class), is(nullValue()));
+        verifyZeroInteractions(delegate);
+    }
+
+    @Test
+    public void testDecodesBodiesOfKnownLength() throws IOException {
+        byte[] bytes = cborMapper.writeValueAsBytes("value");
+        assertThat(decoder.decode(response(bytes, bytes.length), String.class), is("value"));
+
+        List<String> large = largeList();
+        byte[] largeBytes = cborMapper.writeValueAsBytes(large);
+        assertThat(decoder.decode(response(largeBytes, largeBytes.length), List.class), is(large));
+    }
+
+    @Test
+    public void testDecodesBodiesOfUnknownLength() throws IOException {
+        byte[] bytes = cborMapper.writeValueAsBytes("value");
+        assertThat(decoder.decode(response(bytes, null), String.class), is("value"));
+
+        List<String> large = largeList();
+        assertThat(decoder.decode(response(cborMapper.writeValueAsBytes(large), null), List.class), is(large));
+    }
+
+    // larger than the bodies that are decoded from an array
+    private static List<String> largeList() {
+        ImmutableList.Builder<String> values = ImmutableList.builder();
+        for (int i = 0; i < 2000; i++) {
+            values.add(Strings.repeat(Integer.toString(i), 100));
+        }
+        return values.build();
+    }
+
+    private static Response response(byte[] bytes, Integer length) {
+        return Response.create(200, "OK", HEADERS, new ByteArrayInputStream(bytes), length);
+    }
+}
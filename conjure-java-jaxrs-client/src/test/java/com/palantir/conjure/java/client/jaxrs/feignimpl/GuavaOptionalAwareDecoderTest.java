@@ -23,6 +23,7 @@ import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableMap;
 import com.palantir.conjure.java.api.errors.RemoteException;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.client.jaxrs.JaxRsClient;
 import com.palantir.conjure.java.client.jaxrs.TestBase;
 import com.palantir.conjure.java.okhttp.HostMetricsRegistry;
@@ -61,6 +62,29 @@ public final class GuavaOptionalAwareDecoderTest extends TestBase {
                 is(com.google.common.base.Optional.<ImmutableMap<String, String>>absent()));
     }
 
+    @Test
+    public void testCborNegotiation() {
+        String endpointUri = "http://localhost:" + APP.getLocalPort();
+        GuavaTestServer.TestService cborService = JaxRsClient.create(
+                GuavaTestServer.TestService.class,
+                AGENT,
+                new HostMetricsRegistry(),
+                ClientConfiguration.builder()
+                        .from(createTestConfig(endpointUri))
+                        .enableCborNegotiation(true)
+                        .build());
+        GuavaOptionalComplexType value = new GuavaOptionalComplexType(
+                com.google.common.base.Optional.absent(),
+                com.google.common.base.Optional.of("baz"),
+                Paths.get("foo"));
+
+        assertThat(cborService.getGuavaComplexType(value), is(value));
+        assertThat(cborService.getOptional("something"),
+                is(com.google.common.base.Optional.of(ImmutableMap.of("something", "something"))));
+        assertThat(cborService.getOptional(null),
+                is(com.google.common.base.Optional.<ImmutableMap<String, String>>absent()));
+    }
+
     @Test
     public void testNonOptional() {
         assertThat(service.getNonOptional("something"), is(ImmutableMap.of("something", "something")));
@@ -167,4 +191,30 @@ public final class GuavaOptionalAwareDecoderTest extends TestBase {
                 Paths.get("foo"));
         assertThat(service.postCborRequest(value), is(value));
     }
+
+    @Test
+    public void testSmileResponse() {
+        GuavaOptionalComplexType value = new GuavaOptionalComplexType(
+                com.google.common.base.Optional.of(
+                        new GuavaOptionalComplexType(
+                                com.google.common.base.Optional.absent(),
+                                com.google.common.base.Optional.absent(),
+                                Paths.get("bar"))),
+                com.google.common.base.Optional.of("baz"),
+                Paths.get("foo"));
+        assertThat(service.getSmileResponse(value), is(value));
+    }
+
+    @Test
+    public void testSmileRequest() {
+        GuavaOptionalComplexType value = new GuavaOptionalComplexType(
+                com.google.common.base.Optional.of(
+                        new GuavaOptionalComplexType(
+                                com.google.common.base.Optional.absent(),
+                                com.google.common.base.Optional.absent(),
+                                Paths.get("bar"))),
+                com.google.common.base.Optional.of("baz"),
+                Paths.get("foo"));
+        assertThat(service.postSmileRequest(value), is(value));
+    }
 }
@@ -158,6 +158,16 @@ public class GuavaTestServer extends Application<Configuration> {
         public GuavaOptionalComplexType postCborRequest(GuavaOptionalComplexType complexType) {
             return complexType;
         }
+
+        @Override
+        public GuavaOptionalComplexType getSmileResponse(GuavaOptionalComplexType complexType) {
+            return complexType;
+        }
+
+        @Override
+        public GuavaOptionalComplexType postSmileRequest(GuavaOptionalComplexType complexType) {
+            return complexType;
+        }
     }
 
     @Path("/")
@@ -258,6 +268,18 @@ public class GuavaTestServer extends Application<Configuration> {
         @Produces(MediaType.APPLICATION_JSON)
         GuavaOptionalComplexType postCborRequest(GuavaOptionalComplexType complexType);
 
+        @POST
+        @Path("/smileResponseJsonRequest")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces("application/x-jackson-smile")
+        GuavaOptionalComplexType getSmileResponse(GuavaOptionalComplexType complexType);
+
+        @POST
+        @Path("/smileRequestJsonResponse")
+        @Consumes("application/x-jackson-smile")
+        @Produces(MediaType.APPLICATION_JSON)
+        GuavaOptionalComplexType postSmileRequest(GuavaOptionalComplexType complexType);
+
     }
 
 }
@@ -23,9 +23,12 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.client.jaxrs.JaxRsClient;
 import com.palantir.conjure.java.client.jaxrs.TestBase;
 import com.palantir.conjure.java.okhttp.HostMetricsRegistry;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.testing.Assertions;
 import feign.Response;
 import feign.Util;
 import feign.codec.Decoder;
@@ -34,6 +37,8 @@ import io.dropwizard.testing.junit.DropwizardAppRule;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -72,6 +77,20 @@ public final class InputStreamDelegateDecoderTest extends TestBase {
         assertThat(new String(Util.toByteArray(decoded), StandardCharsets.UTF_8), is(data));
     }
 
+    @Test
+    public void testDecodesAsFile() throws Exception {
+        String data = "data";
+
+        Response response = Response.create(200, "OK", ImmutableMap.of(), data, StandardCharsets.UTF_8);
+
+        Path decoded = (Path) inputStreamDelegateDecoder.decode(response, Path.class);
+        try {
+            assertThat(new String(Files.readAllBytes(decoded), StandardCharsets.UTF_8), is(data));
+        } finally {
+            Files.delete(decoded);
+        }
+    }
+
     @Test
     public void testUsesDelegateWhenReturnTypeNotInputStream() throws Exception {
         String returned = "string";
@@ -92,6 +111,16 @@ public final class InputStreamDelegateDecoderTest extends TestBase {
         assertThat(new String(Util.toByteArray(decoded), StandardCharsets.UTF_8), is(data));
     }
 
+    @Test
+    public void testRejectsNullBodyForFiles() {
+        Response response = Response.create(200, "OK", ImmutableMap.of(), (Response.Body) null);
+
+        Assertions.assertThatLoggableExceptionThrownBy(() -> inputStreamDelegateDecoder.decode(response, Path.class))
+                .isInstanceOf(NullPointerException.class)
+                .hasLogMessage("Unexpected null body")
+                .hasArgs(SafeArg.of("status", 200));
+    }
+
     @Test
     public void testStandardClientsUseInputStreamDelegateDecoder() throws IOException {
         String data = "bytes";
@@ -104,7 +133,80 @@ public final class InputStreamDelegateDecoderTest extends TestBase {
         assertThat(Util.toByteArray(service.writeInputStream(data)), is(bytes(data)));
     }
 
+    @Test
+    public void testStreamsDetachedBodiesWithoutBuffering() throws IOException {
+        long size = 1L << 40;
+        CountingInputStream stream = new CountingInputStream(size);
+        DetachableBody body = new DetachableBody(
+                Response.create(200, "OK", ImmutableMap.of(), stream, null).body());
+        Response response = Response.create(200, "OK", ImmutableMap.of(), body);
+
+        InputStream decoded = (InputStream) inputStreamDelegateDecoder.decode(response, InputStream.class);
+        // Feign closes the body once it is decoded
+        body.close();
+
+        assertThat(stream.bytesRead, is(0L));
+        assertThat(decoded.read(new byte[1024]), is(1024));
+        assertThat(stream.bytesRead, is(1024L));
+        assertThat(stream.closed, is(false));
+
+        decoded.close();
+        assertThat(stream.closed, is(true));
+    }
+
+    @Test
+    public void testClosesBodiesThatAreNotDetached() throws IOException {
+        CountingInputStream stream = new CountingInputStream(10);
+        DetachableBody body = new DetachableBody(
+                Response.create(200, "OK", ImmutableMap.of(), stream, null).body());
+
+        body.close();
+
+        assertThat(stream.closed, is(true));
+    }
+
+    @Test
+    public void testStreamingClientsReturnResponseBody() throws IOException {
+        GuavaTestServer.TestService streamingService = JaxRsClient.create(
+                GuavaTestServer.TestService.class,
+                AGENT,
+                new HostMetricsRegistry(),
+                ClientConfiguration.builder()
+                        .from(createTestConfig("http://localhost:" + APP.getLocalPort()))
+                        .enableStreamingResponses(true)
+                        .build());
+
+        try (InputStream stream = streamingService.writeInputStream("bytes")) {
+            assertThat(Util.toByteArray(stream), is(bytes("bytes")));
+        }
+    }
+
     private static byte[] bytes(String text) {
         return text.getBytes(StandardCharsets.UTF_8);
     }
+
+    /** Generates the given number of bytes on the fly, such that no more than a single buffer is held in memory. */
+    private static final class CountingInputStream extends InputStream {
+        private final long size;
+        private long bytesRead = 0;
+        private boolean closed = false;
+
+        CountingInputStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (bytesRead == size) {
+                return -1;
+            }
+            bytesRead++;
+            return 'x';
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
 }
@@ -17,9 +17,11 @@
 package com.palantir.conjure.java.client.jaxrs.feignimpl;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.verify;
 
+import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.client.jaxrs.JaxRsClient;
 import com.palantir.conjure.java.client.jaxrs.TestBase;
 import com.palantir.conjure.java.okhttp.HostMetricsRegistry;
@@ -30,6 +32,8 @@ import io.dropwizard.testing.junit.DropwizardAppRule;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -86,6 +90,37 @@ public final class InputStreamDelegateEncoderTest extends TestBase {
         assertThat(service.readInputStream(new ByteArrayInputStream(bytes(data))), is(data));
     }
 
+    @Test
+    public void testDoesNotBufferStreamedBodies() throws Exception {
+        Encoder streamingEncoder = new InputStreamDelegateEncoder(delegate, true);
+
+        streamingEncoder.encode(new ByteArrayInputStream(bytes("data")), InputStream.class, requestTemplate);
+        assertThat(requestTemplate.body(), is(nullValue()));
+    }
+
+    @Test
+    public void testDoesNotBufferFileBodies() throws Exception {
+        inputStreamDelegateEncoder.encode(Paths.get("src/test/resources/test-server.yml"), Path.class, requestTemplate);
+        assertThat(requestTemplate.body(), is(nullValue()));
+    }
+
+    @Test
+    public void testStreamingClientsSendInputStream() {
+        GuavaTestServer.TestService streamingService = JaxRsClient.create(
+                GuavaTestServer.TestService.class,
+                AGENT,
+                new HostMetricsRegistry(),
+                ClientConfiguration.builder()
+                        .from(createTestConfig("http://localhost:" + APP.getLocalPort()))
+                        .enableStreamingRequests(true)
+                        .streamingRequestReplayBufferBytes(1024)
+                        .build());
+
+        String data = "bytes";
+        assertThat(streamingService.readInputStream(new ByteArrayInputStream(bytes(data))), is(data));
+        assertThat(streamingService.readInputStream(new ByteArrayInputStream(bytes(data))), is(data));
+    }
+
     private static byte[] bytes(String text) {
         return text.getBytes(StandardCharsets.UTF_8);
     }
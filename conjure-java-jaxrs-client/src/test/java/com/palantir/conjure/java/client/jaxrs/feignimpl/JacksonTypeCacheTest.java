@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public final class JacksonTypeCacheTest {
+
+    private static final Type LIST_OF_STRINGS = new TypeToken<List<String>>() {}.getType();
+
+    private final ObjectMapper mapper = ObjectMappers.newClientObjectMapper();
+    private final JacksonTypeCache types = JacksonTypeCache.of(mapper);
+
+    @Test
+    public void testCachesReadersAndWritersPerType() throws IOException {
+        ObjectReader reader = types.reader(LIST_OF_STRINGS);
+        assertThat(types.reader(new TypeToken<List<String>>() {}.getType()), is(sameInstance(reader)));
+        assertThat(types.writer(LIST_OF_STRINGS), is(sameInstance(types.writer(LIST_OF_STRINGS))));
+
+        List<String> values = reader.readValue("[\"a\",\"b\"]");
+        assertThat(values, is(Arrays.asList("a", "b")));
+        assertThat(types.writer(LIST_OF_STRINGS).writeValueAsString(ImmutableList.of("a")), is("[\"a\"]"));
+    }
+
+    @Test
+    public void testSharesCachesPerMapper() {
+        assertThat(JacksonTypeCache.of(mapper), is(sameInstance(types)));
+        ObjectReader reader = types.reader(LIST_OF_STRINGS);
+        assertThat(JacksonTypeCache.of(mapper).reader(LIST_OF_STRINGS), is(sameInstance(reader)));
+        assertThat(JacksonTypeCache.of(ObjectMappers.newClientObjectMapper()), is(not(sameInstance(types))));
+    }
+}
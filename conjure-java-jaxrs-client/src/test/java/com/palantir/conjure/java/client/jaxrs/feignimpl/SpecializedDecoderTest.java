@@ -0,0 +1,121 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HttpHeaders;
+import com.google.common.reflect.TypeToken;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.Response;
+import feign.codec.Decoder;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.ws.rs.core.MediaType;
+import org.junit.Test;
+
+public final class SpecializedDecoderTest {
+
+    private static final Type STRING_LIST = new TypeToken<List<String>>() {}.getType();
+    private static final Type OPTIONAL_STRING = new TypeToken<Optional<String>>() {}.getType();
+    private static final Type GUAVA_OPTIONAL_SET =
+            new TypeToken<com.google.common.base.Optional<Set<String>>>() {}.getType();
+    private static final Type NESTED_OPTIONAL =
+            new TypeToken<Optional<com.google.common.base.Optional<List<String>>>>() {}.getType();
+
+    private final ObjectMapper mapper = ObjectMappers.newClientObjectMapper();
+    private final ObjectMapper cborMapper = ObjectMappers.newCborClientObjectMapper();
+    private final ObjectMapper smileMapper = ObjectMappers.newSmileClientObjectMapper();
+    private final Decoder decoder = new SpecializedDecoder(mapper, cborMapper, smileMapper);
+    private final Decoder chain = new NeverReturnNullDecoder(
+            new Java8OptionalAwareDecoder(
+                    new GuavaOptionalAwareDecoder(
+                            new EmptyContainerDecoder(
+                                    mapper,
+                                    new InputStreamDelegateDecoder(
+                                            new TextDelegateDecoder(
+                                                    new CborDelegateDecoder(
+                                                            cborMapper,
+                                                            new SmileDelegateDecoder(
+                                                                    smileMapper,
+                                                                    new CachingJacksonDecoder(mapper)))))))));
+
+    @Test
+    public void testDecodesJson() throws IOException {
+        byte[] body = mapper.writeValueAsBytes(ImmutableList.of("a", "b"));
+        assertDecodes(200, MediaType.APPLICATION_JSON, body, STRING_LIST, ImmutableList.of("a", "b"));
+        assertDecodes(200, null, body, STRING_LIST, ImmutableList.of("a", "b"));
+        assertDecodes(200, MediaType.APPLICATION_JSON, mapper.writeValueAsBytes("a"), OPTIONAL_STRING,
+                Optional.of("a"));
+    }
+
+    @Test
+    public void testDecodesBinaryFormats() throws IOException {
+        assertDecodes(200, CborDelegateEncoder.MIME_TYPE, cborMapper.writeValueAsBytes(ImmutableList.of("a")),
+                STRING_LIST, ImmutableList.of("a"));
+        assertDecodes(200, SmileDelegateEncoder.MIME_TYPE, smileMapper.writeValueAsBytes(ImmutableList.of("a")),
+                STRING_LIST, ImmutableList.of("a"));
+        assertDecodes(200, CborDelegateEncoder.MIME_TYPE, cborMapper.writeValueAsBytes(ImmutableList.of("a")),
+                NESTED_OPTIONAL, Optional.of(com.google.common.base.Optional.of(ImmutableList.of("a"))));
+    }
+
+    @Test
+    public void testDecodesText() throws IOException {
+        assertDecodes(200, MediaType.TEXT_PLAIN, bytes("text"), String.class, "text");
+        assertDecodes(200, MediaType.TEXT_PLAIN, new byte[0], String.class, "");
+    }
+
+    @Test
+    public void testDecodesEmptyResponsesAsEmptyInstances() throws IOException {
+        assertDecodes(204, null, new byte[0], STRING_LIST, Collections.emptyList());
+        assertDecodes(200, MediaType.APPLICATION_JSON, new byte[0], STRING_LIST, Collections.emptyList());
+        assertDecodes(204, null, new byte[0], OPTIONAL_STRING, Optional.empty());
+        assertDecodes(204, null, new byte[0], GUAVA_OPTIONAL_SET, com.google.common.base.Optional.absent());
+        assertDecodes(204, null, new byte[0], NESTED_OPTIONAL, Optional.empty());
+        assertDecodes(200, null, bytes("null"), GUAVA_OPTIONAL_SET,
+                com.google.common.base.Optional.of(Collections.emptySet()));
+    }
+
+    private void assertDecodes(int status, String contentType, byte[] body, Type type, Object expected)
+            throws IOException {
+        assertThat(decoder.decode(response(status, contentType, body), type), is(expected));
+        assertThat(chain.decode(response(status, contentType, body), type), is(expected));
+    }
+
+    private static Response response(int status, String contentType, byte[] body) {
+        Map<String, Collection<String>> headers = contentType == null
+                ? ImmutableMap.of()
+                : ImmutableMap.of(HttpHeaders.CONTENT_TYPE, ImmutableSet.of(contentType));
+        return Response.create(status, "reason", headers, body);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import feign.Client;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.codec.Encoder;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+public final class SpecializedEncoderTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final ObjectMapper cborMapper = ObjectMappers.newCborClientObjectMapper();
+    private final Encoder encoder = new SpecializedEncoder(
+            ObjectMappers.newClientObjectMapper(), cborMapper, ObjectMappers.newSmileClientObjectMapper(), false);
+    private final OkHttpClient okHttpClient = new OkHttpClient();
+    private final Client client = new StreamingRequestClient(
+            new feign.okhttp.OkHttpClient(okHttpClient), okHttpClient, 0);
+
+    @Test
+    public void testEncodesJson() throws Exception {
+        RecordedRequest request = send(MediaType.APPLICATION_JSON, ImmutableMap.of("key", "value"));
+        assertThat(request.getBody().readUtf8(), is("{\"key\":\"value\"}"));
+    }
+
+    @Test
+    public void testEncodesCbor() throws Exception {
+        RecordedRequest request = send(CborDelegateEncoder.MIME_TYPE, ImmutableMap.of("key", "value"));
+        assertThat(cborMapper.readValue(request.getBody().readByteArray(), Map.class),
+                is(ImmutableMap.of("key", "value")));
+    }
+
+    @Test
+    public void testStagesBodiesOfTypesWhoseRecentBodiesWereLarge() throws Exception {
+        Map<String, String> value =
+                ImmutableMap.of("key", Strings.repeat("value", BufferedRequestBody.MAX_ARRAY_BYTES));
+        RequestTemplate first = new RequestTemplate().header("Content-Type", MediaType.APPLICATION_JSON);
+        encoder.encode(value, Map.class, first);
+        assertThat(first.body(), is(notNullValue()));
+
+        RecordedRequest request = send(MediaType.APPLICATION_JSON, value);
+        assertThat(request.getBodySize(), is(5L * BufferedRequestBody.MAX_ARRAY_BYTES + 10));
+    }
+
+    @Test
+    public void testEncodesTextAndStreamsIntoByteArrays() {
+        RequestTemplate text = new RequestTemplate().header("Content-Type", MediaType.TEXT_PLAIN);
+        encoder.encode("text", String.class, text);
+        assertThat(text.body(), is(bytes("text")));
+
+        RequestTemplate stream = new RequestTemplate();
+        encoder.encode(new ByteArrayInputStream(bytes("data")), InputStream.class, stream);
+        assertThat(stream.body(), is(bytes("data")));
+    }
+
+    private RecordedRequest send(String contentType, Object body) throws Exception {
+        server.enqueue(new MockResponse());
+        RequestTemplate template = new RequestTemplate()
+                .method("POST")
+                .append(server.url("/path").toString())
+                .header("Content-Type", contentType);
+
+        encoder.encode(body, Map.class, template);
+        try (Response response = client.execute(template.request(), new Request.Options())) {
+            assertThat(response.status(), is(200));
+        }
+        return server.takeRequest();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.jaxrs.feignimpl;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import feign.InvocationHandlerFactory;
+import feign.RequestTemplate;
+import feign.Target;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public final class StreamingRequestClientTest {
+
+    private static final Method RUN = getRunMethod();
+
+    @Test
+    public void testDiscardsStagedBodyIfInvocationFails() throws Exception {
+        InvocationHandler handler = handler(args -> {
+            stage();
+            throw new IllegalStateException("request interceptor failed");
+        });
+
+        assertThat(onNewThread(() -> {
+            try {
+                handler.invoke(null, RUN, new Object[0]);
+                fail();
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+            return StreamingRequestClient.hasStagedBody();
+        }), is(false));
+    }
+
+    @Test
+    public void testRestoresStagedBodyOfEnclosingInvocation() throws Exception {
+        InvocationHandler inner = handler(args -> {
+            stage();
+            return null;
+        });
+        InvocationHandler outer = handler(args -> {
+            stage();
+            inner.invoke(null, RUN, new Object[0]);
+            return StreamingRequestClient.hasStagedBody();
+        });
+
+        assertThat(onNewThread(() -> outer.invoke(null, RUN, new Object[0])), is(true));
+        assertThat(onNewThread(() -> {
+            outer.invoke(null, RUN, new Object[0]);
+            return StreamingRequestClient.hasStagedBody();
+        }), is(false));
+    }
+
+    /** Runs the given task on a new thread, since other tests may leave bodies staged on the test thread. */
+    private static <T> T onNewThread(ThrowingCallable<T> task) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(() -> {
+                try {
+                    return task.call();
+                } catch (Throwable t) {
+                    throw new ExecutionException(t);
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void stage() {
+        StreamingRequestClient.stage(new ByteArrayInputStream(new byte[0]), new RequestTemplate());
+    }
+
+    private static InvocationHandler handler(InvocationHandlerFactory.MethodHandler methodHandler) {
+        return StreamingRequestClient.invocationHandlerFactory().create(
+                new Target.HardCodedTarget<>(Runnable.class, "http://localhost"),
+                ImmutableMap.of(RUN, methodHandler));
+    }
+
+    private interface ThrowingCallable<T> {
+        T call() throws Throwable;
+    }
+
+    private static Method getRunMethod() {
+        try {
+            return Runnable.class.getMethod("run");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.server.jersey;
+
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Serves CBOR instead of JSON to clients that prefer it: if the most preferred type of the request's {@code Accept}
+ * header is {@code application/cbor} and a successful response would be written as {@code application/json}, the
+ * response is written as {@code application/cbor} if its entity can be serialized as such.
+ * <p>
+ * Error responses remain JSON such that clients can always parse them.
+ */
+final class CborNegotiationFilter implements ContainerResponseFilter {
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    private final JacksonCBORProvider cborProvider;
+
+    CborNegotiationFilter(JacksonCBORProvider cborProvider) {
+        this.cborProvider = cborProvider;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (!response.hasEntity()
+                || response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL
+                || !isJson(response.getMediaType())
+                || !prefersCbor(request.getAcceptableMediaTypes())) {
+            return;
+        }
+
+        response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        Object entity = unwrap(response.getEntity());
+        if (entity != null && cborProvider.isWriteable(
+                entity.getClass(), entity.getClass(), response.getEntityAnnotations(), CBOR)) {
+            response.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, CBOR);
+        }
+    }
+
+    private static boolean isJson(MediaType mediaType) {
+        return mediaType != null
+                && mediaType.getType().equalsIgnoreCase(MediaType.APPLICATION_JSON_TYPE.getType())
+                && mediaType.getSubtype().equalsIgnoreCase(MediaType.APPLICATION_JSON_TYPE.getSubtype());
+    }
+
+    private static boolean prefersCbor(List<MediaType> acceptableMediaTypes) {
+        // sorted by preference, a wildcard is never the preference for CBOR
+        return !acceptableMediaTypes.isEmpty()
+                && !acceptableMediaTypes.get(0).isWildcardType()
+                && !acceptableMediaTypes.get(0).isWildcardSubtype()
+                && acceptableMediaTypes.get(0).isCompatible(CBOR);
+    }
+
+    /**
+     * Returns the value of optional entities, which are written by the optional message body writers using the writer
+     * of their value, or null if the entity is absent and is thus written as {@code 204 No Content} anyway, or if it is
+     * a primitive optional, which is always written as plain text.
+     */
+    private static Object unwrap(Object entity) {
+        if (entity instanceof Optional) {
+            return ((Optional<?>) entity).orElse(null);
+        } else if (entity instanceof com.google.common.base.Optional) {
+            return ((com.google.common.base.Optional<?>) entity).orNull();
+        } else if (entity instanceof OptionalInt || entity instanceof OptionalLong
+                || entity instanceof OptionalDouble) {
+            return null;
+        }
+        return entity;
+    }
+}
@@ -17,6 +17,7 @@
 package com.palantir.conjure.java.server.jersey;
 
 import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
 import com.palantir.conjure.java.serialization.ObjectMappers;
 import com.palantir.tracing.jersey.TraceEnrichingFilter;
 import javax.ws.rs.core.Feature;
@@ -43,7 +44,12 @@ public enum ConjureJerseyFeature implements Feature {
         context.register(new ThrowableExceptionMapper());
 
         // Cbor handling
-        context.register(new JacksonCBORProvider(ObjectMappers.newCborServerObjectMapper()));
+        JacksonCBORProvider cborProvider = new JacksonCBORProvider(ObjectMappers.newCborServerObjectMapper());
+        context.register(cborProvider);
+        context.register(new CborNegotiationFilter(cborProvider));
+
+        // Smile handling
+        context.register(new JacksonSmileProvider(ObjectMappers.newSmileServerObjectMapper()));
 
         // Optional handling
         context.register(GuavaOptionalMessageBodyWriter.class);
@@ -0,0 +1,130 @@
+/*
+ * (c) Copyright 2017 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.server.jersey;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import io.dropwizard.Application;
+import io.dropwizard.Configuration;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import java.io.IOException;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public final class CborNegotiationTest {
+
+    private static final String CBOR_OR_JSON = "application/cbor, application/json;q=0.9";
+
+    @ClassRule
+    public static final DropwizardAppRule<Configuration> APP = new DropwizardAppRule<>(CborTestServer.class,
+            "src/test/resources/test-server.yml");
+
+    private WebTarget target;
+
+    @Before
+    public void before() {
+        String endpointUri = "http://localhost:" + APP.getLocalPort();
+        Client client = new JerseyClientBuilder().build();
+        target = client.target(endpointUri);
+    }
+
+    @Test
+    public void testServesCborWhenPreferred() throws IOException {
+        Response response = target.path("map").request().header(HttpHeaders.ACCEPT, CBOR_OR_JSON).get();
+        assertThat(response.getStatus(), is(Status.OK.getStatusCode()));
+        assertThat(response.getMediaType().toString(), is("application/cbor"));
+        assertThat(response.getHeaderString(HttpHeaders.VARY), is(HttpHeaders.ACCEPT));
+        byte[] body = response.readEntity(byte[].class);
+        assertThat(ObjectMappers.newCborClientObjectMapper().readValue(body, Map.class), is(ImmutableMap.of("a", 1)));
+    }
+
+    @Test
+    public void testServesJsonByDefault() {
+        Response response = target.path("map").request().header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON).get();
+        assertThat(response.getMediaType().toString(), is(MediaType.APPLICATION_JSON));
+        assertThat(response.readEntity(String.class), is("{\"a\":1}"));
+    }
+
+    @Test
+    public void testServesJsonForEntitiesThatCannotBeWrittenAsCbor() {
+        Response response = target.path("string").request().header(HttpHeaders.ACCEPT, CBOR_OR_JSON).get();
+        assertThat(response.getMediaType().toString(), is(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testServesJsonErrors() {
+        Response response = target.path("error").request().header(HttpHeaders.ACCEPT, CBOR_OR_JSON).get();
+        assertThat(response.getStatus(), is(Status.BAD_REQUEST.getStatusCode()));
+        assertThat(response.getMediaType().toString(), is(MediaType.APPLICATION_JSON));
+    }
+
+    public static class CborTestServer extends Application<Configuration> {
+        @Override
+        public final void run(Configuration config, final Environment env) throws Exception {
+            env.jersey().register(ConjureJerseyFeature.INSTANCE);
+            env.jersey().register(new CborTestResource());
+        }
+    }
+
+    public static final class CborTestResource implements CborTestService {
+        @Override
+        public Map<String, Integer> getMap() {
+            return ImmutableMap.of("a", 1);
+        }
+
+        @Override
+        public String getString() {
+            return "string";
+        }
+
+        @Override
+        public Map<String, Integer> getError() {
+            throw new IllegalArgumentException("error");
+        }
+    }
+
+    @Path("/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public interface CborTestService {
+        @GET
+        @Path("/map")
+        Map<String, Integer> getMap();
+
+        @GET
+        @Path("/string")
+        String getString();
+
+        @GET
+        @Path("/error")
+        Map<String, Integer> getError();
+    }
+}
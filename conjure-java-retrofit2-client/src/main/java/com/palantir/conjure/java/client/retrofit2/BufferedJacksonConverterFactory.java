@@ -0,0 +1,58 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.client.retrofit2;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * Converts JSON like {@link JacksonConverterFactory}, but serializes request bodies into a {@link BufferedRequestBody}
+ * rather than into an intermediate byte array.
+ */
+final class BufferedJacksonConverterFactory extends Converter.Factory {
+
+    private static final MediaType JSON_MIME_TYPE = MediaType.parse("application/json; charset=UTF-8");
+
+    private final ObjectMapper objectMapper;
+    private final Converter.Factory delegate;
+
+    BufferedJacksonConverterFactory(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.delegate = JacksonConverterFactory.create(objectMapper);
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        return delegate.responseBodyConverter(type, annotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+            Annotation[] methodAnnotations, Retrofit retrofit) {
+        JavaType javaType = objectMapper.getTypeFactory().constructType(type);
+        BufferedRequestBody.Writer writer = BufferedRequestBody.writer(objectMapper.writerFor(javaType));
+        return value -> writer.write(JSON_MIME_TYPE, value);
+    }
+}
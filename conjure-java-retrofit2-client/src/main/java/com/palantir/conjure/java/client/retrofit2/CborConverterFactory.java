@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
@@ -28,6 +29,7 @@ import java.util.Objects;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import retrofit2.Converter;
 import retrofit2.Converter.Factory;
 import retrofit2.Retrofit;
@@ -36,6 +38,7 @@ import retrofit2.http.Headers;
 public final class CborConverterFactory extends Converter.Factory {
 
     private static final MediaType CBOR_MIME_TYPE = MediaType.parse("application/cbor");
+    private static final long MAX_ARRAY_BYTES = 256 * 1024;
 
     private final Factory delegate;
     private final ObjectMapper cborObjectMapper;
@@ -59,7 +62,8 @@ public final class CborConverterFactory extends Converter.Factory {
     public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
             Annotation[] methodAnnotations, Retrofit retrofit) {
         if (contentTypeIsCbor(methodAnnotations)) {
-            return new CborRequestBodyConverter<>(cborObjectMapper.writer());
+            return new CborRequestBodyConverter<>(
+                    cborObjectMapper.writerFor(cborObjectMapper.getTypeFactory().constructType(type)));
         } else {
             return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
         }
@@ -94,16 +98,15 @@ public final class CborConverterFactory extends Converter.Factory {
 
     static final class CborRequestBodyConverter<T> implements Converter<T, RequestBody> {
 
-        private final ObjectWriter cborObjectWriter;
+        private final BufferedRequestBody.Writer cborObjectWriter;
 
         CborRequestBodyConverter(ObjectWriter cborObjectWriter) {
-            this.cborObjectWriter = cborObjectWriter;
+            this.cborObjectWriter = BufferedRequestBody.writer(cborObjectWriter);
         }
 
         @Override
         public RequestBody convert(T value) throws IOException {
-            byte[] bytes = cborObjectWriter.writeValueAsBytes(value);
-            return RequestBody.create(CBOR_MIME_TYPE, bytes);
+            return cborObjectWriter.write(CBOR_MIME_TYPE, value);
         }
     }
 
@@ -124,7 +127,12 @@ public final class CborConverterFactory extends Converter.Factory {
             }
 
             try {
-                return cborObjectReader.readValue(value.byteStream());
+                BufferedSource source = value.source();
+                if (!source.request(MAX_ARRAY_BYTES + 1)) {
+                    // the whole body is buffered: Jackson parses the array in place instead of copying it chunk-wise
+                    return cborObjectReader.readValue(source.readByteArray());
+                }
+                return cborObjectReader.readValue(source.inputStream());
             } finally {
                 value.close();
             }
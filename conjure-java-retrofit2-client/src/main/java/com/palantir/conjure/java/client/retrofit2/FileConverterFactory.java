@@ -0,0 +1,54 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.retrofit2;
+
+import com.palantir.conjure.java.okhttp.FileBodies;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * A retrofit2 {@link Converter} that sends {@link Path} request bodies as {@code application/octet-stream} straight
+ * from the file, and writes {@link Path} response bodies to a new temporary file that is owned by the caller. See
+ * {@link FileBodies}.
+ */
+public final class FileConverterFactory extends Converter.Factory {
+    public static final FileConverterFactory INSTANCE = new FileConverterFactory();
+
+    private FileConverterFactory() {}
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type != Path.class) {
+            return null;
+        }
+        return FileBodies::writeToTempFile;
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+            Annotation[] methodAnnotations, Retrofit retrofit) {
+        if (type != Path.class) {
+            return null;
+        }
+        return (Converter<Path, RequestBody>) FileBodies::requestBody;
+    }
+}
@@ -22,6 +22,9 @@ import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.ext.refresh.Refreshable;
 import com.palantir.conjure.java.ext.refresh.RefreshableProxyInvocationHandler;
 import com.palantir.conjure.java.okhttp.HostEventsSink;
+import com.palantir.conjure.java.okhttp.OkHttpClients;
+import java.util.function.Function;
+import okhttp3.OkHttpClient;
 
 /**
  * Static factory methods for producing creating Retrofit2 HTTP proxies.
@@ -47,15 +50,20 @@ public final class Retrofit2Client {
     /**
      * Similar to {@link #create(Class, UserAgent, HostEventsSink, ClientConfiguration)}, but creates a mutable
      * client that updates its configuration transparently whenever the given {@link Refreshable refreshable}
-     * {@link ClientConfiguration} changes.
+     * {@link ClientConfiguration} changes. Concurrency limits, node failure state and, where the configuration allows,
+     * interceptors and caches carry over from one configuration to the next, see
+     * {@link OkHttpClients#reconfigurable}.
      */
     public static <T> T create(
             Class<T> serviceClass,
             UserAgent userAgent,
             HostEventsSink hostEventsSink,
             Refreshable<ClientConfiguration> config) {
+        Function<ClientConfiguration, OkHttpClient> okHttpClients =
+                OkHttpClients.reconfigurable(userAgent, hostEventsSink, serviceClass);
         return Reflection.newProxy(serviceClass, RefreshableProxyInvocationHandler.create(
                 config,
-                serviceConfiguration -> create(serviceClass, userAgent, hostEventsSink, serviceConfiguration)));
+                serviceConfiguration -> new Retrofit2ClientBuilder(serviceConfiguration)
+                        .build(serviceClass, okHttpClients.apply(serviceConfiguration))));
     }
 }
@@ -21,13 +21,24 @@ import com.palantir.conjure.java.api.config.service.UserAgent;
 import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.okhttp.HostEventsSink;
 import com.palantir.conjure.java.okhttp.OkHttpClients;
+import com.palantir.conjure.java.okhttp.SerializerWarmer;
 import com.palantir.conjure.java.serialization.ObjectMappers;
 import com.palantir.logsafe.Preconditions;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import retrofit2.Retrofit;
-import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.Body;
 
 public final class Retrofit2ClientBuilder {
     private static final ObjectMapper CBOR_OBJECT_MAPPER = ObjectMappers.newCborClientObjectMapper();
+    private static final ObjectMapper SMILE_OBJECT_MAPPER = ObjectMappers.newSmileClientObjectMapper();
     private static final ObjectMapper OBJECT_MAPPER = ObjectMappers.newClientObjectMapper();
 
     private final ClientConfiguration config;
@@ -50,17 +61,32 @@ public final class Retrofit2ClientBuilder {
 
     public <T> T build(Class<T> serviceClass, UserAgent userAgent) {
         Preconditions.checkNotNull(hostEventsSink, "hostEventsSink must be set");
-        okhttp3.OkHttpClient client = OkHttpClients.create(config, userAgent, hostEventsSink, serviceClass);
+        return build(serviceClass, OkHttpClients.create(config, userAgent, hostEventsSink, serviceClass));
+    }
+
+    /**
+     * Builds a client that sends its requests through the given OkHttp client, which must have been created by
+     * {@link OkHttpClients} for the configuration of this builder, e.g. by {@link OkHttpClients#reconfigurable}.
+     */
+    <T> T build(Class<T> serviceClass, okhttp3.OkHttpClient client) {
+        if (config.warmUpSerializers()) {
+            SerializerWarmer.warmUp(OBJECT_MAPPER, requestBodyTypes(serviceClass), responseTypes(serviceClass),
+                    config.taggedMetricRegistry(), serviceClass);
+        }
 
         Retrofit retrofit = new Retrofit.Builder()
                 .client(client)
                 .baseUrl(addTrailingSlash(config.uris().get(0)))
+                .addConverterFactory(FileConverterFactory.INSTANCE)
+                // the format of responses is negotiated, so null checks and coercion apply to all of them
                 .addConverterFactory(
-                        new CborConverterFactory(
-                                new NeverReturnNullConverterFactory(
-                                        new CoerceNullValuesConverterFactory(
-                                                JacksonConverterFactory.create(OBJECT_MAPPER))),
-                                CBOR_OBJECT_MAPPER))
+                        new NeverReturnNullConverterFactory(
+                                new CoerceNullValuesConverterFactory(
+                                        new CborConverterFactory(
+                                                new SmileConverterFactory(
+                                                        new BufferedJacksonConverterFactory(OBJECT_MAPPER),
+                                                        SMILE_OBJECT_MAPPER),
+                                                CBOR_OBJECT_MAPPER))))
                 .addConverterFactory(OptionalObjectToStringConverterFactory.INSTANCE)
                 .addCallAdapterFactory(
                         new QosExceptionThrowingCallAdapterFactory(
@@ -70,6 +96,44 @@ public final class Retrofit2ClientBuilder {
         return retrofit.create(serviceClass);
     }
 
+    /** The types of the {@link Body} parameters. */
+    private static List<Type> requestBodyTypes(Class<?> serviceClass) {
+        List<Type> types = new ArrayList<>();
+        for (Method method : endpoints(serviceClass)) {
+            Type[] parameterTypes = method.getGenericParameterTypes();
+            Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                for (Annotation annotation : parameterAnnotations[i]) {
+                    if (annotation instanceof Body) {
+                        types.add(parameterTypes[i]);
+                    }
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * The response types of the endpoints, i.e. the type arguments of the {@link retrofit2.Call} or future that they
+     * return.
+     */
+    private static List<Type> responseTypes(Class<?> serviceClass) {
+        List<Type> types = new ArrayList<>();
+        for (Method method : endpoints(serviceClass)) {
+            Type returnType = method.getGenericReturnType();
+            if (returnType instanceof ParameterizedType) {
+                types.add(((ParameterizedType) returnType).getActualTypeArguments()[0]);
+            }
+        }
+        return types;
+    }
+
+    private static List<Method> endpoints(Class<?> serviceClass) {
+        return Arrays.stream(serviceClass.getMethods())
+                .filter(method -> !method.isDefault() && !Modifier.isStatic(method.getModifiers()))
+                .collect(Collectors.toList());
+    }
+
     private static String addTrailingSlash(String url) {
         return url.charAt(url.length() - 1) == '/' ? url : url + "/";
     }
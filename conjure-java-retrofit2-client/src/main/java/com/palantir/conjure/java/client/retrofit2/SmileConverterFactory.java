@@ -0,0 +1,142 @@
+/*
+ * (c) Copyright 2017 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.client.retrofit2;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.net.HttpHeaders;
+import com.palantir.conjure.java.okhttp.BufferedRequestBody;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Converter;
+import retrofit2.Converter.Factory;
+import retrofit2.Retrofit;
+import retrofit2.http.Headers;
+
+public final class SmileConverterFactory extends Converter.Factory {
+
+    private static final MediaType SMILE_MIME_TYPE = MediaType.parse("application/x-jackson-smile");
+    private static final long MAX_ARRAY_BYTES = 256 * 1024;
+
+    private final Factory delegate;
+    private final ObjectMapper smileObjectMapper;
+
+    SmileConverterFactory(Converter.Factory delegate, ObjectMapper smileObjectMapper) {
+        this.delegate = delegate;
+        this.smileObjectMapper = smileObjectMapper;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        // given we don't know how to convert the response until we check the Content-Type, we construct a delegate
+        // converter for when the response is not application/x-jackson-smile.
+        Converter<ResponseBody, ?> delegateConverter = delegate.responseBodyConverter(type, annotations, retrofit);
+        JavaType javaType = smileObjectMapper.getTypeFactory().constructType(type);
+        ObjectReader objectReader = smileObjectMapper.readerFor(javaType);
+        return new SmileResponseBodyConverter<>(objectReader, delegateConverter);
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+            Annotation[] methodAnnotations, Retrofit retrofit) {
+        if (contentTypeIsSmile(methodAnnotations)) {
+            return new SmileRequestBodyConverter<>(
+                    smileObjectMapper.writerFor(smileObjectMapper.getTypeFactory().constructType(type)));
+        } else {
+            return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+        }
+    }
+
+    private static boolean contentTypeIsSmile(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Headers) {
+                Headers headers = (Headers) annotation;
+                for (String header : headers.value()) {
+                    int index = header.indexOf(":");
+                    if (index == -1) {
+                        continue;
+                    }
+
+                    String headerType = header.substring(0, index);
+                    if (!headerType.equals(HttpHeaders.CONTENT_TYPE)) {
+                        continue;
+                    }
+
+                    String headerValue = header.substring(index + 1).trim();
+                    MediaType mediaType = MediaType.parse(headerValue);
+                    if (Objects.equals(mediaType, SMILE_MIME_TYPE)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    static final class SmileRequestBodyConverter<T> implements Converter<T, RequestBody> {
+
+        private final BufferedRequestBody.Writer smileObjectWriter;
+
+        SmileRequestBodyConverter(ObjectWriter smileObjectWriter) {
+            this.smileObjectWriter = BufferedRequestBody.writer(smileObjectWriter);
+        }
+
+        @Override
+        public RequestBody convert(T value) throws IOException {
+            return smileObjectWriter.write(SMILE_MIME_TYPE, value);
+        }
+    }
+
+    static final class SmileResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+
+        private final ObjectReader smileObjectReader;
+        private final Converter<ResponseBody, T> delegate;
+
+        SmileResponseBodyConverter(ObjectReader smileObjectReader, Converter<ResponseBody, T> delegate) {
+            this.smileObjectReader = smileObjectReader;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T convert(ResponseBody value) throws IOException {
+            if (value.contentType() == null || !value.contentType().equals(SMILE_MIME_TYPE)) {
+                return delegate.convert(value);
+            }
+
+            try {
+                BufferedSource source = value.source();
+                if (!source.request(MAX_ARRAY_BYTES + 1)) {
+                    // the whole body is buffered: Jackson parses the array in place instead of copying it chunk-wise
+                    return smileObjectReader.readValue(source.readByteArray());
+                }
+                return smileObjectReader.readValue(source.inputStream());
+            } finally {
+                value.close();
+            }
+        }
+    }
+
+}
@@ -33,6 +33,9 @@ import com.palantir.conjure.java.serialization.ObjectMappers;
 import com.palantir.logsafe.exceptions.SafeNullPointerException;
 import com.palantir.logsafe.testing.Assertions;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Optional;
@@ -231,6 +234,23 @@ public final class Retrofit2ClientApiTest extends TestBase {
         }
     }
 
+    @Test
+    public void testCoercesEmptyCborReturnValues() throws IOException {
+        server.enqueue(new MockResponse().addHeader("Content-Type", "application/cbor"));
+        assertThat(service.getComplexCborType().execute().body()).isEqualTo(java8EmptyOptional());
+    }
+
+    @Test
+    public void should_reject_body_containing_cbor_null() throws IOException {
+        try (Buffer buffer = new Buffer()) {
+            buffer.write(ObjectMappers.newCborServerObjectMapper().writeValueAsBytes(null));
+            server.enqueue(new MockResponse().setBody(buffer).addHeader("Content-Type", "application/cbor"));
+            Assertions.assertThatLoggableExceptionThrownBy(() -> service.getRelative().execute().body())
+                    .hasMessage("Unexpected null body")
+                    .isInstanceOf(SafeNullPointerException.class);
+        }
+    }
+
     @Test
     public void testCborRequests() throws IOException, InterruptedException {
         LocalDate date = LocalDate.of(2001, 2, 3);
@@ -242,6 +262,52 @@ public final class Retrofit2ClientApiTest extends TestBase {
                 .isEqualTo(ObjectMappers.newCborClientObjectMapper().writeValueAsBytes(date));
     }
 
+    @Test
+    public void testSmileReturnValues() throws IOException {
+        LocalDate date = LocalDate.of(2001, 2, 3);
+        byte[] bytes = ObjectMappers.newSmileServerObjectMapper().writeValueAsBytes(Optional.of(date));
+        try (Buffer buffer = new Buffer()) {
+            buffer.write(bytes);
+            server.enqueue(new MockResponse().setBody(buffer).addHeader("Content-Type", "application/x-jackson-smile"));
+            assertThat(service.getComplexSmileType().execute().body()).isEqualTo(java8Optional(date));
+        }
+    }
+
+    @Test
+    public void testSmileRequests() throws IOException, InterruptedException {
+        LocalDate date = LocalDate.of(2001, 2, 3);
+
+        server.enqueue(new MockResponse());
+        service.makeSmileRequest(date).execute();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getHeader(HttpHeaders.CONTENT_TYPE)).isEqualTo("application/x-jackson-smile");
+        assertThat(request.getBody().readByteArray())
+                .isEqualTo(ObjectMappers.newSmileClientObjectMapper().writeValueAsBytes(date));
+    }
+
+    @Test
+    public void testFileUploadsAndDownloads() throws IOException, InterruptedException {
+        byte[] bytes = "file contents".getBytes(StandardCharsets.UTF_8);
+        Path upload = Files.createTempFile("upload", ".tmp");
+        Files.write(upload, bytes);
+        try (Buffer buffer = new Buffer()) {
+            buffer.write(bytes);
+            server.enqueue(new MockResponse());
+            server.enqueue(new MockResponse().setBody(buffer).addHeader("Content-Type", "application/octet-stream"));
+
+            service.uploadFile(upload).execute();
+            Path download = service.downloadFile().execute().body();
+
+            RecordedRequest request = server.takeRequest();
+            assertThat(request.getHeader("Content-Type")).isEqualTo("application/octet-stream");
+            assertThat(request.getBody().readByteArray()).isEqualTo(bytes);
+            assertThat(Files.readAllBytes(download)).isEqualTo(bytes);
+            Files.delete(download);
+        } finally {
+            Files.delete(upload);
+        }
+    }
+
     @Test
     public void makeFutureRequest_completable() {
         makeFutureRequest(() -> service.makeCompletableFutureRequest());
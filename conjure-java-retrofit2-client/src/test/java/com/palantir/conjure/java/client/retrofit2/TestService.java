@@ -68,6 +68,20 @@ public interface TestService {
     @Headers("Content-Type: application/cbor")
     Call<Void> makeCborRequest(@Body LocalDate localDate);
 
+    @GET("getComplexSmileType")
+    @Headers("Accepts: application/x-jackson-smile")
+    Call<java.util.Optional<LocalDate>> getComplexSmileType();
+
+    @POST("makeSmileRequest")
+    @Headers("Content-Type: application/x-jackson-smile")
+    Call<Void> makeSmileRequest(@Body LocalDate localDate);
+
+    @POST("uploadFile")
+    Call<Void> uploadFile(@Body java.nio.file.Path file);
+
+    @GET("downloadFile")
+    Call<java.nio.file.Path> downloadFile();
+
     @POST("makeCompletableFutureRequest")
     CompletableFuture<String> makeCompletableFutureRequest();
 
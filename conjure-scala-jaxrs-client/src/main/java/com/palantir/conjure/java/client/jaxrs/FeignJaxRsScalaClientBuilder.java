@@ -24,6 +24,7 @@ public final class FeignJaxRsScalaClientBuilder extends AbstractFeignJaxRsClient
 
     private static final ObjectMapper JSON_OBJECT_MAPPER = ScalaObjectMappers.newClientObjectMapper();
     private static final ObjectMapper CBOR_OBJECT_MAPPER = ScalaObjectMappers.newCborClientObjectMapper();
+    private static final ObjectMapper SMILE_OBJECT_MAPPER = ScalaObjectMappers.newSmileClientObjectMapper();
 
     FeignJaxRsScalaClientBuilder(ClientConfiguration config) {
         super(config);
@@ -38,4 +39,9 @@ public final class FeignJaxRsScalaClientBuilder extends AbstractFeignJaxRsClient
     protected ObjectMapper getCborObjectMapper() {
         return CBOR_OBJECT_MAPPER;
     }
+
+    @Override
+    protected ObjectMapper getSmileObjectMapper() {
+        return SMILE_OBJECT_MAPPER;
+    }
 }
@@ -22,6 +22,9 @@ import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.ext.refresh.Refreshable;
 import com.palantir.conjure.java.ext.refresh.RefreshableProxyInvocationHandler;
 import com.palantir.conjure.java.okhttp.HostEventsSink;
+import com.palantir.conjure.java.okhttp.OkHttpClients;
+import java.util.function.Function;
+import okhttp3.OkHttpClient;
 
 /**
  * Variant of {@link JaxRsClient} with additional scala serialization support.
@@ -49,8 +52,11 @@ public final class JaxRsScalaClient {
             UserAgent userAgent,
             HostEventsSink hostEventsSink,
             Refreshable<ClientConfiguration> config) {
+        Function<ClientConfiguration, OkHttpClient> okHttpClients =
+                OkHttpClients.reconfigurable(userAgent, hostEventsSink, serviceClass);
         return Reflection.newProxy(serviceClass, RefreshableProxyInvocationHandler.create(
                 config,
-                serviceConfiguration -> create(serviceClass, userAgent, hostEventsSink, serviceConfiguration)));
+                serviceConfiguration -> new FeignJaxRsScalaClientBuilder(serviceConfiguration)
+                        .build(serviceClass, okHttpClients.apply(serviceConfiguration))));
     }
 }
@@ -35,6 +35,10 @@ public final class ScalaObjectMappers {
         return withScalaSupport(ObjectMappers.newCborClientObjectMapper());
     }
 
+    public static ObjectMapper newSmileClientObjectMapper() {
+        return withScalaSupport(ObjectMappers.newSmileClientObjectMapper());
+    }
+
     public static ObjectMapper newServerObjectMapper() {
         return withScalaSupport(ObjectMappers.newServerObjectMapper());
     }
@@ -43,6 +47,10 @@ public final class ScalaObjectMappers {
         return withScalaSupport(ObjectMappers.newCborServerObjectMapper());
     }
 
+    public static ObjectMapper newSmileServerObjectMapper() {
+        return withScalaSupport(ObjectMappers.newSmileServerObjectMapper());
+    }
+
     private static ObjectMapper withScalaSupport(ObjectMapper objectMapper) {
         objectMapper
                 .registerModule(new DefaultScalaModule())
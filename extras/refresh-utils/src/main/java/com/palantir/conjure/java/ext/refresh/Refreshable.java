@@ -16,21 +16,32 @@
 
 package com.palantir.conjure.java.ext.refresh;
 
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * A layman's Observable: Stores a reference to a value until it is {@link #getAndClear retrieved} once.
+ * <p>
+ * Additionally, the latest value can be {@link #subscribe subscribed} to by any number of subscribers, which are called
+ * on the thread that {@link #set sets} a new value, or read together with its {@link #version} with a single volatile
+ * read, such that readers on a hot path can detect changes without writing to shared state.
  */
 @ThreadSafe
 public final class Refreshable<T> {
 
     private final AtomicReference<T> value;
+    private final List<Consumer<? super T>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile Versioned<T> current;
 
     private Refreshable(@Nullable T initialValue) {
         value = new AtomicReference<>(initialValue);
+        current = new Versioned<>(initialValue == null ? 0 : 1, initialValue);
     }
 
     public static <T> Refreshable<T> empty() {
@@ -41,9 +52,18 @@ public final class Refreshable<T> {
         return new Refreshable<>(value);
     }
 
-    /** Sets the stored value to the given value and returns the previously stored value if it exists. */
-    public Optional<T> set(T newValue) {
-        return Optional.ofNullable(value.getAndSet(newValue));
+    /**
+     * Sets the stored value to the given value and returns the previously stored value if it exists. Subscribers are
+     * called with the new value before this method returns, in the order in which they subscribed; if a subscriber
+     * throws, the remaining subscribers are still called and the first exception is rethrown.
+     */
+    public synchronized Optional<T> set(T newValue) {
+        current = new Versioned<>(current.version + 1, newValue);
+        Optional<T> previous = Optional.ofNullable(value.getAndSet(newValue));
+        if (newValue != null) {
+            notifySubscribers(newValue);
+        }
+        return previous;
     }
 
     /**
@@ -54,4 +74,70 @@ public final class Refreshable<T> {
     public Optional<T> getAndClear() {
         return Optional.ofNullable(value.getAndSet(null));
     }
+
+    /** Returns the latest value, if any, without clearing it. */
+    public Optional<T> current() {
+        return Optional.ofNullable(current.value);
+    }
+
+    /**
+     * Returns a number that increases whenever a value is {@link #set}, and that is 0 if this refreshable was created
+     * {@link #empty} and has never been set.
+     */
+    public long version() {
+        return current.version;
+    }
+
+    /**
+     * Calls the given subscriber with the latest value, if any, and then with every subsequently {@link #set} value,
+     * until the returned {@link Subscription} is {@link Subscription#unsubscribe unsubscribed}. Exceptions thrown for
+     * the latest value are propagated to the caller, in which case the subscriber is not subscribed.
+     */
+    public synchronized Subscription subscribe(Consumer<? super T> subscriber) {
+        T latest = current.value;
+        if (latest != null) {
+            subscriber.accept(latest);
+        }
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    @VisibleForTesting
+    int numSubscribers() {
+        return subscribers.size();
+    }
+
+    private void notifySubscribers(T newValue) {
+        RuntimeException failure = null;
+        for (Consumer<? super T> subscriber : subscribers) {
+            try {
+                subscriber.accept(newValue);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** A handle to stop receiving the values of a {@link Refreshable}. */
+    public interface Subscription {
+        void unsubscribe();
+    }
+
+    private static final class Versioned<T> {
+        private final long version;
+        @Nullable
+        private final T value;
+
+        Versioned(long version, @Nullable T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
 }
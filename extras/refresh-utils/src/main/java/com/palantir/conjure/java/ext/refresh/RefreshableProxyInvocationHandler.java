@@ -18,32 +18,45 @@ package com.palantir.conjure.java.ext.refresh;
 
 import com.google.common.base.Preconditions;
 import com.google.common.reflect.AbstractInvocationHandler;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.annotation.Nonnull;
 
 /**
  * A delegating {@link InvocationHandler} that requests a new delegate whenever a given {@link Refreshable} changes.
  * Useful for constructing dynamic proxies based on live-reloadable configuration.
+ * <p>
+ * The handler {@link Refreshable#subscribe subscribes} to the refreshable: a new delegate is created once per new
+ * value, on the thread that {@link Refreshable#set sets} the value, and invocations only read the current delegate. If
+ * the delegate cannot be created, the exception is thrown to the thread that sets the value and the previous delegate
+ * remains in use. The handler does not keep itself reachable through the refreshable.
  */
 public final class RefreshableProxyInvocationHandler<R, T> extends AbstractInvocationHandler {
 
-    private final Refreshable<R> refreshable;
+    /** Subscribers of collected handlers, which are unsubscribed whenever a handler is created. */
+    private static final ReferenceQueue<Object> collectedHandlers = new ReferenceQueue<>();
+
     private final Function<R, T> delegateSupplier;
 
-    private T delegate;
+    private volatile T delegate;
 
     private RefreshableProxyInvocationHandler(Refreshable<R> refreshable, Function<R, T> delegateSupplier) {
-        this.refreshable = refreshable;
         this.delegateSupplier = delegateSupplier;
 
-        Optional<R> initialRefreshable = refreshable.getAndClear();
-        Preconditions.checkArgument(initialRefreshable.isPresent(),
+        unsubscribeCollectedHandlers();
+        WeakSubscriber<R> subscriber = new WeakSubscriber<>(this);
+        subscriber.subscription = refreshable.subscribe(subscriber);
+        if (delegate == null) {
+            subscriber.subscription.unsubscribe();
+        }
+        Preconditions.checkArgument(delegate != null,
                 "Cannot construct %s with empty initial refreshable", getClass().getSimpleName());
-        delegate = delegateSupplier.apply(initialRefreshable.get());
     }
 
     public static <R, T> RefreshableProxyInvocationHandler<R, T> create(
@@ -54,7 +67,6 @@ public final class RefreshableProxyInvocationHandler<R, T> extends AbstractInvoc
     @Override
     protected Object handleInvocation(@Nonnull Object proxy, @Nonnull Method method, @Nonnull Object[] args)
             throws Throwable {
-        updateDelegate();
         try {
             return method.invoke(delegate, args);
         } catch (InvocationTargetException e) {
@@ -62,7 +74,44 @@ public final class RefreshableProxyInvocationHandler<R, T> extends AbstractInvoc
         }
     }
 
-    private void updateDelegate() {
-        refreshable.getAndClear().ifPresent(r -> delegate = delegateSupplier.apply(r));
+    private void updateDelegate(R value) {
+        delegate = delegateSupplier.apply(value);
+    }
+
+    private static void unsubscribeCollectedHandlers() {
+        Reference<?> collected;
+        while ((collected = collectedHandlers.poll()) != null) {
+            ((WeakSubscriber<?>) collected).unsubscribe();
+        }
+    }
+
+    /**
+     * Unsubscribes once the handler has been garbage collected, such that refreshables do not leak handlers: either
+     * when the next value is set, or when the next handler is created, whichever happens first.
+     */
+    private static final class WeakSubscriber<R> extends WeakReference<RefreshableProxyInvocationHandler<R, ?>>
+            implements Consumer<R> {
+        private volatile Refreshable.Subscription subscription;
+
+        WeakSubscriber(RefreshableProxyInvocationHandler<R, ?> handler) {
+            super(handler, collectedHandlers);
+        }
+
+        @Override
+        public void accept(R value) {
+            RefreshableProxyInvocationHandler<R, ?> current = get();
+            if (current != null) {
+                current.updateDelegate(value);
+            } else {
+                unsubscribe();
+            }
+        }
+
+        void unsubscribe() {
+            Refreshable.Subscription current = subscription;
+            if (current != null) {
+                current.unsubscribe();
+            }
+        }
     }
 }
@@ -84,9 +84,9 @@ public final class RefreshableProxyInvocationHandlerTest {
         verify(delegate1, times(2)).call();
         Mockito.verifyNoMoreInteractions(delegate1, delegate2, supplier);
 
-        // Third call: refresh the object and make the supplier return a new delegate2.
-        refreshable.set(object2);
+        // Third call: make the supplier return a new delegate2 and refresh the object.
         when(supplier.apply(object2)).thenReturn(delegate2);
+        refreshable.set(object2);
         proxy.call();
         verify(delegate2).call();
         verify(supplier).apply(object2);
@@ -113,4 +113,20 @@ public final class RefreshableProxyInvocationHandlerTest {
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessage("Whoops");
     }
+
+    @Test
+    public void testUnsubscribesCollectedHandlersWithoutNewValues() {
+        Refreshable<Callable> refreshable = Refreshable.of(delegate1);
+
+        int maxSubscribers = 0;
+        for (int i = 0; i < 20_000; i++) {
+            RefreshableProxyInvocationHandler.create(refreshable, callable -> callable);
+            if (i % 1_000 == 0) {
+                System.gc();
+            }
+            maxSubscribers = Math.max(maxSubscribers, refreshable.numSubscribers());
+        }
+
+        assertThat(maxSubscribers).isLessThan(5_000);
+    }
 }
@@ -22,6 +22,8 @@ import com.google.common.collect.ImmutableList;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.jmock.lib.concurrent.DeterministicScheduler;
 import org.junit.Test;
@@ -86,4 +88,53 @@ public final class RefreshableTest {
 
         disposable.dispose();
     }
+
+    @Test
+    public void testSetterIncrementsVersion() {
+        Refreshable<Object> refreshable = Refreshable.empty();
+        assertThat(refreshable.version()).isEqualTo(0);
+        assertThat(refreshable.current()).isEmpty();
+
+        refreshable.set(O1);
+        assertThat(refreshable.version()).isEqualTo(1);
+        assertThat(refreshable.current()).contains(O1);
+
+        refreshable.set(O2);
+        assertThat(refreshable.getAndClear()).contains(O2);
+        assertThat(refreshable.version()).isEqualTo(2);
+        assertThat(refreshable.current()).contains(O2);
+    }
+
+    @Test
+    public void testSubscribersReceiveLatestAndSubsequentValues() {
+        Refreshable<Object> refreshable = Refreshable.of(O1);
+        List<Object> first = new ArrayList<>();
+        List<Object> second = new ArrayList<>();
+
+        Refreshable.Subscription subscription = refreshable.subscribe(first::add);
+        refreshable.subscribe(second::add);
+        assertThat(first).containsExactly(O1);
+        assertThat(second).containsExactly(O1);
+
+        refreshable.set(O2);
+        assertThat(first).containsExactly(O1, O2);
+        assertThat(second).containsExactly(O1, O2);
+
+        subscription.unsubscribe();
+        refreshable.set(O1);
+        assertThat(first).containsExactly(O1, O2);
+        assertThat(second).containsExactly(O1, O2, O1);
+    }
+
+    @Test
+    public void testEmptyRefreshableDoesNotCallSubscriberUntilSet() {
+        Refreshable<Object> refreshable = Refreshable.empty();
+        List<Object> values = new ArrayList<>();
+
+        refreshable.subscribe(values::add);
+        assertThat(values).isEmpty();
+
+        refreshable.set(O1);
+        assertThat(values).containsExactly(O1);
+    }
 }
@@ -20,7 +20,8 @@ import java.lang.instrument.Instrumentation;
 
 /**
  * No-op.
- * @deprecated this class no longer has any effect.
+ * @deprecated this class no longer has any effect. HTTP/2 is enabled per client via
+ *     {@code ClientConfiguration#http2}.
  */
 @Deprecated
 public final class Http2Agent {
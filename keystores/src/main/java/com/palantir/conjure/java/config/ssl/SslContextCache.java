@@ -0,0 +1,192 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.config.ssl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.palantir.conjure.java.api.config.ssl.SslConfiguration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * A memoizing factory for {@link SSLContext}s. Equal {@link SslConfiguration}s share a single {@link SSLContext}, and
+ * thus a single {@link SSLSocketFactory} and TLS session cache, as long as the configured trust store and key store
+ * files are unchanged. Sharing the session cache allows clients to resume sessions established by other clients
+ * instead of performing full handshakes; sharing the socket factory additionally allows OkHttp clients to share pooled
+ * connections.
+ * <p>
+ * Entries are keyed by the configuration and the modification times of the configured stores (including the files in
+ * store directories, see {@link SslConfiguration.StoreType#PUPPET}), so a rotated store yields a fresh context.
+ */
+public final class SslContextCache {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 10_000;
+    public static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofHours(24);
+
+    private static final int MAX_ENTRIES = 1_000;
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofHours(1);
+    // Puppet stores are laid out as <root>/certs/*.pem and <root>/private_keys/*.pem
+    private static final int MAX_STORE_DEPTH = 2;
+
+    private final LoadingCache<Key, Entry> cache;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+
+    private SslContextCache(int sessionCacheSize, Duration sessionTimeout) {
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = Math.toIntExact(sessionTimeout.getSeconds());
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterAccess(EXPIRE_AFTER_ACCESS.toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(CacheLoader.from(this::load));
+    }
+
+    /** Creates a cache with {@link #DEFAULT_SESSION_CACHE_SIZE} and {@link #DEFAULT_SESSION_TIMEOUT}. */
+    public static SslContextCache create() {
+        return create(DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT);
+    }
+
+    /**
+     * Creates a cache whose {@link SSLContext}s retain up to {@code sessionCacheSize} client TLS sessions (0 means no
+     * limit) for up to {@code sessionTimeout} each.
+     */
+    public static SslContextCache create(int sessionCacheSize, Duration sessionTimeout) {
+        Preconditions.checkArgument(sessionCacheSize >= 0, "sessionCacheSize must be non-negative");
+        Preconditions.checkArgument(!sessionTimeout.isNegative(), "sessionTimeout must be non-negative");
+        return new SslContextCache(sessionCacheSize, sessionTimeout);
+    }
+
+    /** Returns the shared {@link SSLContext} for the given configuration, see {@link SslSocketFactories}. */
+    public SSLContext getSslContext(SslConfiguration config) {
+        return get(config).sslContext;
+    }
+
+    /**
+     * Returns the shared {@link SSLSocketFactory} for the given configuration. Unlike
+     * {@link SSLContext#getSocketFactory}, this returns the same instance for as long as the context is cached.
+     */
+    public SSLSocketFactory getSslSocketFactory(SslConfiguration config) {
+        return get(config).sslSocketFactory;
+    }
+
+    /** Returns the shared {@link SSLSocketFactory} and {@link X509TrustManager} for the given configuration. */
+    public TrustContext getTrustContext(SslConfiguration config) {
+        Entry entry = get(config);
+        return TrustContext.of(entry.sslSocketFactory, entry.trustManager);
+    }
+
+    /** The number of lookups that returned a previously created {@link SSLContext}. */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /** The number of lookups that created a new {@link SSLContext}. */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    private Entry get(SslConfiguration config) {
+        Key key = new Key(
+                config,
+                lastModified(config.trustStorePath()),
+                config.keyStorePath().map(SslContextCache::lastModified).orElse(-1L));
+        try {
+            return cache.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    private Entry load(Key key) {
+        TrustManager[] trustManagers = SslSocketFactories.createTrustManagers(key.config);
+        SSLContext sslContext = SslSocketFactories.createSslContext(
+                trustManagers, SslSocketFactories.createKeyManagers(key.config));
+        sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+        sslContext.getClientSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+        return new Entry(sslContext, SslSocketFactories.getX509TrustManager(trustManagers, key.config));
+    }
+
+    /** Returns the latest modification time of the given file or of any file in the given directory, or -1. */
+    private static long lastModified(Path path) {
+        try (Stream<Path> files = Files.walk(path, MAX_STORE_DEPTH)) {
+            return files.mapToLong(file -> file.toFile().lastModified()).max().orElse(-1L);
+        } catch (IOException | UncheckedIOException e) {
+            // the store is unreadable; loading the context will fail with a meaningful error
+            return -1L;
+        }
+    }
+
+    private static final class Key {
+        private final SslConfiguration config;
+        private final long trustStoreLastModified;
+        private final long keyStoreLastModified;
+
+        Key(SslConfiguration config, long trustStoreLastModified, long keyStoreLastModified) {
+            this.config = config;
+            this.trustStoreLastModified = trustStoreLastModified;
+            this.keyStoreLastModified = keyStoreLastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            Key key = (Key) other;
+            return trustStoreLastModified == key.trustStoreLastModified
+                    && keyStoreLastModified == key.keyStoreLastModified
+                    && config.equals(key.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(config, trustStoreLastModified, keyStoreLastModified);
+        }
+    }
+
+    private static final class Entry {
+        private final SSLContext sslContext;
+        // SSLContext#getSocketFactory returns a new instance per call, which would defeat connection pooling
+        private final SSLSocketFactory sslSocketFactory;
+        private final X509TrustManager trustManager;
+
+        Entry(SSLContext sslContext, X509TrustManager trustManager) {
+            this.sslContext = sslContext;
+            this.sslSocketFactory = sslContext.getSocketFactory();
+            this.trustManager = trustManager;
+        }
+    }
+}
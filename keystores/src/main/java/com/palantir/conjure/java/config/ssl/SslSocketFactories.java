@@ -68,18 +68,19 @@ public final class SslSocketFactories {
      * @return an {@link SSLContext} according to the input configuration
      */
     public static SSLContext createSslContext(SslConfiguration config) {
-        TrustManager[] trustManagers = createTrustManagers(config);
+        return createSslContext(createTrustManagers(config), createKeyManagers(config));
+    }
 
-        KeyManager[] keyManagers = null;
-        if (config.keyStorePath().isPresent()) {
-            keyManagers = createKeyManagerFactory(
-                    config.keyStorePath().get(),
-                    config.keyStorePassword().get(),
-                    config.keyStoreType(),
-                    config.keyStoreKeyAlias()).getKeyManagers();
+    /** Returns the key managers for the configured key store, or null if no key store is configured. */
+    static KeyManager[] createKeyManagers(SslConfiguration config) {
+        if (!config.keyStorePath().isPresent()) {
+            return null;
         }
-
-        return createSslContext(trustManagers, keyManagers);
+        return createKeyManagerFactory(
+                config.keyStorePath().get(),
+                config.keyStorePassword().get(),
+                config.keyStoreType(),
+                config.keyStoreKeyAlias()).getKeyManagers();
     }
 
     /**
@@ -93,7 +94,7 @@ public final class SslSocketFactories {
         return createSslContext(trustManagers, new KeyManager[]{});
     }
 
-    private static SSLContext createSslContext(TrustManager[] trustManagers, KeyManager[] keyManagers) {
+    static SSLContext createSslContext(TrustManager[] trustManagers, KeyManager[] keyManagers) {
         try {
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(keyManagers, trustManagers, null);
@@ -152,7 +153,11 @@ public final class SslSocketFactories {
      * javax.net.ssl.X509TrustManager}.
      */
     public static X509TrustManager createX509TrustManager(SslConfiguration config) {
-        TrustManager trustManager = createTrustManagers(config)[0];
+        return getX509TrustManager(createTrustManagers(config), config);
+    }
+
+    static X509TrustManager getX509TrustManager(TrustManager[] trustManagers, SslConfiguration config) {
+        TrustManager trustManager = trustManagers[0];
         if (trustManager instanceof X509TrustManager) {
             return (X509TrustManager) trustManager;
         } else {
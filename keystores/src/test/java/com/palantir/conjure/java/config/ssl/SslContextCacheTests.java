@@ -0,0 +1,85 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.config.ssl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.palantir.conjure.java.api.config.ssl.SslConfiguration;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import javax.net.ssl.SSLContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class SslContextCacheTests {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final SslContextCache cache = SslContextCache.create(123, Duration.ofMinutes(5));
+
+    @Test
+    public void testEqualConfigurationsShareContext() {
+        SslConfiguration first = SslConfiguration.of(TestConstants.CA_TRUST_STORE_PATH);
+        SslConfiguration second = SslConfiguration.of(TestConstants.CA_TRUST_STORE_PATH);
+
+        assertThat(cache.getSslContext(first), sameInstance(cache.getSslContext(second)));
+        assertThat(cache.getTrustContext(first).sslSocketFactory(),
+                sameInstance(cache.getTrustContext(second).sslSocketFactory()));
+        assertThat(cache.missCount(), is(1L));
+        assertThat(cache.hitCount(), is(3L));
+    }
+
+    @Test
+    public void testDifferentConfigurationsDoNotShareContext() {
+        SslConfiguration trustOnly = SslConfiguration.of(TestConstants.CA_TRUST_STORE_PATH);
+        SslConfiguration withKeyStore = SslConfiguration.of(
+                TestConstants.CA_TRUST_STORE_PATH,
+                TestConstants.SERVER_KEY_STORE_JKS_PATH,
+                TestConstants.SERVER_KEY_STORE_JKS_PASSWORD);
+
+        assertThat(cache.getSslContext(trustOnly), not(sameInstance(cache.getSslContext(withKeyStore))));
+        assertThat(cache.missCount(), is(2L));
+    }
+
+    @Test
+    public void testModifiedTrustStoreYieldsNewContext() throws IOException {
+        File trustStore = tempFolder.newFile("trustStore.jks");
+        Files.copy(TestConstants.CA_TRUST_STORE_PATH, trustStore.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        SslConfiguration config = SslConfiguration.of(trustStore.toPath());
+
+        SSLContext before = cache.getSslContext(config);
+        assertThat(trustStore.setLastModified(trustStore.lastModified() + 10_000), is(true));
+
+        assertThat(cache.getSslContext(config), not(sameInstance(before)));
+    }
+
+    @Test
+    public void testConfiguresSessionCache() {
+        SSLContext context = cache.getSslContext(SslConfiguration.of(TestConstants.CA_TRUST_STORE_PATH));
+
+        assertThat(context.getClientSessionContext().getSessionCacheSize(), is(123));
+        assertThat(context.getClientSessionContext().getSessionTimeout(), is(300));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.okhttp;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.Optional;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * A request body that Jackson serialized once, such that it can be written to the connection, and written again when
+ * the request is retried, without serializing it again. Bodies are created by a {@link Writer}, one per body type.
+ * <p>
+ * Bodies of types whose recent bodies were small are serialized into a byte array of the exact size, with Jackson's
+ * recycled scratch buffers, such that the array can also be used directly by clients whose request bodies are byte
+ * arrays. Bodies of types whose recent bodies exceeded {@link #MAX_ARRAY_BYTES} are serialized into an okio
+ * {@link Buffer} instead, which appends segments rather than growing and then copying a full-size array. Writing
+ * such a body shares its segments with the connection rather than copying them, so the segments are not returned to
+ * okio's segment pool and are left to the garbage collector like an array would be; the pool retains at most 64 KiB
+ * anyway.
+ */
+public final class BufferedRequestBody extends RequestBody {
+
+    /** Bodies of types whose recent bodies were larger than this are serialized into an okio {@link Buffer}. */
+    public static final int MAX_ARRAY_BYTES = 64 * 1024;
+
+    private final MediaType contentType;
+    private final Optional<byte[]> bytes;
+    private final Buffer buffer;
+
+    private BufferedRequestBody(MediaType contentType, Optional<byte[]> bytes, Buffer buffer) {
+        this.contentType = contentType;
+        this.bytes = bytes;
+        this.buffer = buffer;
+    }
+
+    /** Returns a writer that serializes the values of a single type with the given Jackson writer. */
+    public static Writer writer(ObjectWriter writer) {
+        return new Writer(writer);
+    }
+
+    /** Returns a body with the same content and the given (nullable) content type. */
+    public BufferedRequestBody withContentType(MediaType newContentType) {
+        return new BufferedRequestBody(newContentType, bytes, buffer);
+    }
+
+    /** Returns the content of the body if it is held in a byte array, which must not be modified. */
+    public Optional<byte[]> byteArray() {
+        return bytes;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return bytes.isPresent() ? bytes.get().length : buffer.size();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (bytes.isPresent()) {
+            sink.write(bytes.get());
+        } else {
+            // the copy shares the buffer's segments
+            Buffer copy = buffer.clone();
+            sink.write(copy, copy.size());
+        }
+    }
+
+    /**
+     * Serializes the values of a single type, and picks the representation of each body from the size of the recent
+     * bodies of the type. The expected size follows a larger body immediately, and decays by an eighth per smaller
+     * body, such that a single large body does not move all later bodies of the type into buffers. Writers are
+     * thread-safe.
+     */
+    public static final class Writer {
+        private final ObjectWriter writer;
+        // concurrent bodies may overwrite each other's estimate, which only affects the representation of later bodies
+        private volatile long expectedBytes;
+
+        private Writer(ObjectWriter writer) {
+            this.writer = writer;
+        }
+
+        /** Serializes the given value into a new body of the given (nullable) content type. */
+        public BufferedRequestBody write(MediaType contentType, Object value) throws IOException {
+            long expected = expectedBytes;
+            BufferedRequestBody body;
+            if (expected <= MAX_ARRAY_BYTES) {
+                body = new BufferedRequestBody(contentType, Optional.of(writer.writeValueAsBytes(value)), null);
+            } else {
+                Buffer buffer = new Buffer();
+                writer.writeValue(buffer.outputStream(), value);
+                body = new BufferedRequestBody(contentType, Optional.empty(), buffer);
+            }
+            expectedBytes = Math.max(body.contentLength(), expected - expected / 8);
+            return body;
+        }
+    }
+}
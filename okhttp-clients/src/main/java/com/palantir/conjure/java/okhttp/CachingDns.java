@@ -0,0 +1,164 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.palantir.conjure.java.client.config.DnsResolver;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * A {@link Dns} that caches the addresses returned by a {@link DnsResolver}. Cached addresses are refreshed in the
+ * background once they are older than {@link #REFRESH_AFTER}; until the refresh completes (or if it fails), the stale
+ * addresses are served, so that only the very first lookup of a host blocks on DNS.
+ * <p>
+ * If a host resolves to multiple addresses, each lookup returns them in a rotated order so that new connections are
+ * spread across all addresses rather than pinned to the first one. Addresses to which a connection recently failed,
+ * as reported by {@link #connectionEventListener}, are moved to the end of the list until {@link #FAILURE_DEMOTION}
+ * has passed or a connection succeeds.
+ */
+final class CachingDns implements Dns {
+
+    static final String LOOKUP_METRIC_NAME = "client.dns.lookup";
+
+    private static final Duration REFRESH_AFTER = Duration.ofSeconds(30);
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(10);
+    private static final Duration FAILURE_DEMOTION = Duration.ofSeconds(30);
+
+    private final DnsResolver delegate;
+    private final Timer lookupTimer;
+    private final Ticker ticker;
+    private final LoadingCache<String, List<InetAddress>> addresses;
+    private final Cache<InetAddress, Boolean> failedAddresses;
+    private final AtomicInteger nextOffset = new AtomicInteger();
+
+    @VisibleForTesting
+    CachingDns(DnsResolver delegate, Timer lookupTimer, Executor executor, Ticker ticker) {
+        this.delegate = delegate;
+        this.lookupTimer = lookupTimer;
+        this.ticker = ticker;
+        this.addresses = Caffeine.newBuilder()
+                .refreshAfterWrite(REFRESH_AFTER.toNanos(), TimeUnit.NANOSECONDS)
+                .expireAfterAccess(EXPIRE_AFTER_ACCESS.toNanos(), TimeUnit.NANOSECONDS)
+                .executor(executor)
+                .ticker(ticker)
+                .build(this::resolve);
+        this.failedAddresses = Caffeine.newBuilder()
+                .expireAfterWrite(FAILURE_DEMOTION.toNanos(), TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Creates a caching {@link Dns} whose lookups are recorded in the {@code client.dns.lookup} timer of the given
+     * registry. The timer is not tagged by service, since the {@link Dns} and its cached addresses are shared by all
+     * clients that use the same resolver and registry.
+     */
+    static CachingDns create(DnsResolver delegate, TaggedMetricRegistry registry, Executor executor) {
+        Timer lookupTimer = registry.timer(MetricName.builder()
+                .safeName(LOOKUP_METRIC_NAME)
+                .build());
+        return new CachingDns(delegate, lookupTimer, executor, Ticker.systemTicker());
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        List<InetAddress> resolved;
+        try {
+            resolved = addresses.get(hostname);
+        } catch (CompletionException e) {
+            Throwables.propagateIfPossible(e.getCause(), UnknownHostException.class);
+            throw e;
+        }
+
+        int size = resolved.size();
+        if (size == 1) {
+            return resolved;
+        }
+
+        int offset = Math.floorMod(nextOffset.getAndIncrement(), size);
+        List<InetAddress> healthy = new ArrayList<>(size);
+        List<InetAddress> demoted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            InetAddress address = resolved.get((offset + i) % size);
+            if (failedAddresses.getIfPresent(address) == null) {
+                healthy.add(address);
+            } else {
+                demoted.add(address);
+            }
+        }
+        healthy.addAll(demoted);
+        return healthy;
+    }
+
+    /** Returns an {@link EventListener} that demotes addresses to which connections fail. */
+    EventListener connectionEventListener() {
+        return new EventListener() {
+            @Override
+            public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+                // unresolved for SOCKS proxies, which resolve hostnames themselves
+                if (address.getAddress() != null) {
+                    failedAddresses.invalidate(address.getAddress());
+                }
+            }
+
+            @Override
+            public void connectFailed(
+                    Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException ioe) {
+                if (address.getAddress() != null) {
+                    failedAddresses.put(address.getAddress(), Boolean.TRUE);
+                }
+            }
+        };
+    }
+
+    private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+        long start = ticker.read();
+        try {
+            List<InetAddress> resolved = delegate.lookup(hostname);
+            if (resolved.isEmpty()) {
+                throw new UnknownHostException("DNS resolver returned no addresses for " + hostname);
+            }
+            return ImmutableList.copyOf(resolved);
+        } finally {
+            lookupTimer.update(ticker.read() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.google.common.net.HttpHeaders;
+import java.io.IOException;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Offers servers to respond with CBOR instead of JSON: requests that only accept {@code application/json} responses
+ * accept {@code application/cbor} with higher preference instead. Requests accepting other or multiple content types
+ * are sent unchanged.
+ */
+enum CborNegotiationInterceptor implements Interceptor {
+    INSTANCE;
+
+    static final String JSON_ACCEPT = "application/json";
+    static final String CBOR_OR_JSON_ACCEPT = "application/cbor, application/json;q=0.9";
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String accept = request.header(HttpHeaders.ACCEPT);
+        if (accept == null || !accept.trim().equalsIgnoreCase(JSON_ACCEPT)
+                || request.headers(HttpHeaders.ACCEPT).size() != 1) {
+            return chain.proceed(request);
+        }
+        return chain.proceed(request.newBuilder().header(HttpHeaders.ACCEPT, CBOR_OR_JSON_ACCEPT).build());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.palantir.conjure.java.api.errors.RemoteException;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * A {@link Call} that is coalesced with identical in-flight calls by a {@link RequestCoalescer}. Wraps the top-level
+ * {@link RemotingOkHttpCall}, such that retries of the in-flight call are never coalesced with the in-flight call
+ * itself.
+ * <p>
+ * Waiting calls honour their own {@link #timeout} and {@link #cancel}. If the in-flight call is cancelled or runs out
+ * of time, waiting calls issue their own requests rather than failing with the exception of the in-flight call.
+ */
+final class CoalescingCall extends ForwardingCall {
+
+    private final Request originalRequest;
+    private final RequestCoalescer coalescer;
+    private final ScheduledExecutorService schedulingExecutor;
+
+    private volatile RequestCoalescer.Flight waiting;
+
+    /**
+     * Creates a call for the given delegate. Calls are coalesced based on the original request of the caller rather
+     * than on the request of the delegate, whose URL may have been rewritten to the node selected for this call.
+     */
+    CoalescingCall(
+            Call delegate,
+            Request originalRequest,
+            RequestCoalescer coalescer,
+            ScheduledExecutorService schedulingExecutor) {
+        super(delegate);
+        this.originalRequest = originalRequest;
+        this.coalescer = coalescer;
+        this.schedulingExecutor = schedulingExecutor;
+    }
+
+    @Override
+    public Response execute() throws IOException {
+        if (!RequestCoalescer.isCoalescable(originalRequest)) {
+            return super.execute();
+        }
+
+        RequestCoalescer.Flight flight = coalescer.join(originalRequest);
+        if (!flight.isLeader()) {
+            trackWaiting(flight);
+            Optional<Response> response = flight.await(timeout().timeoutNanos());
+            return response.isPresent() ? response.get() : super.execute();
+        }
+
+        Response response;
+        try {
+            response = super.execute();
+        } catch (RemoteException e) {
+            flight.fail(new IoRemoteException(e));
+            throw e;
+        } catch (IOException e) {
+            failOrAbandon(flight, e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            flight.fail(new IOException("Failed to execute coalesced call", e));
+            throw e;
+        }
+        return flight.complete(response);
+    }
+
+    @Override
+    public void enqueue(Callback callback) {
+        if (!RequestCoalescer.isCoalescable(originalRequest)) {
+            super.enqueue(callback);
+            return;
+        }
+
+        RequestCoalescer.Flight flight = coalescer.join(originalRequest);
+        if (!flight.isLeader()) {
+            trackWaiting(flight);
+            ListenableFuture<Optional<RequestCoalescer.BufferedResponse>> result = flight.result();
+            long timeoutNanos = timeout().timeoutNanos();
+            if (timeoutNanos > 0) {
+                result = Futures.withTimeout(result, timeoutNanos, TimeUnit.NANOSECONDS, schedulingExecutor);
+            }
+            Futures.addCallback(result, new FutureCallback<Optional<RequestCoalescer.BufferedResponse>>() {
+                @Override
+                public void onSuccess(Optional<RequestCoalescer.BufferedResponse> response) {
+                    if (!response.isPresent()) {
+                        CoalescingCall.super.enqueue(callback);
+                        return;
+                    }
+                    try {
+                        callback.onResponse(CoalescingCall.this, response.get().toResponse());
+                    } catch (IOException e) {
+                        callback.onFailure(CoalescingCall.this, e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    callback.onFailure(CoalescingCall.this, RequestCoalescer.toIoException(throwable));
+                }
+            }, MoreExecutors.directExecutor());
+            return;
+        }
+
+        super.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exception) {
+                failOrAbandon(flight, exception);
+                callback.onFailure(call, exception);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                Response leaderResponse;
+                try {
+                    leaderResponse = flight.complete(response);
+                } catch (IOException e) {
+                    callback.onFailure(call, e);
+                    return;
+                }
+                callback.onResponse(call, leaderResponse);
+            }
+        });
+    }
+
+    @Override
+    public void cancel() {
+        RequestCoalescer.Flight flight = waiting;
+        if (flight != null) {
+            flight.cancel();
+        }
+        super.cancel();
+    }
+
+    /** Records the flight this call waits for, such that {@link #cancel} stops waiting. */
+    private void trackWaiting(RequestCoalescer.Flight flight) {
+        waiting = flight;
+        if (isCanceled()) {
+            flight.cancel();
+        }
+    }
+
+    /**
+     * Propagates the failure of the in-flight call to waiting calls, unless the call was cancelled or ran out of time
+     * (other than waiting for the server), which says nothing about the outcome of the waiting calls.
+     */
+    private void failOrAbandon(RequestCoalescer.Flight flight, IOException exception) {
+        if (isCanceled() || Throwables.getCausalChain(exception).stream().anyMatch(CoalescingCall::isCallTimeout)) {
+            flight.abandon();
+        } else {
+            flight.fail(exception);
+        }
+    }
+
+    /** Socket timeouts are failures of the server, whereas other interruptions are specific to the call. */
+    private static boolean isCallTimeout(Throwable throwable) {
+        return throwable instanceof InterruptedIOException && !(throwable instanceof SocketTimeoutException);
+    }
+
+    @Override
+    Call doClone() {
+        return new CoalescingCall(getDelegate().clone(), originalRequest, coalescer, schedulingExecutor);
+    }
+}
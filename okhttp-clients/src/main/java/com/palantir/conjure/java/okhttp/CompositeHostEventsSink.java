@@ -0,0 +1,48 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/** A {@link HostEventsSink} that forwards all events to each of the given sinks, in order. */
+final class CompositeHostEventsSink implements HostEventsSink {
+
+    private final List<HostEventsSink> sinks;
+
+    private CompositeHostEventsSink(List<HostEventsSink> sinks) {
+        this.sinks = sinks;
+    }
+
+    static HostEventsSink of(HostEventsSink... sinks) {
+        return new CompositeHostEventsSink(ImmutableList.copyOf(sinks));
+    }
+
+    @Override
+    public void record(String serviceName, String hostname, int port, int statusCode, long micros) {
+        for (HostEventsSink sink : sinks) {
+            sink.record(serviceName, hostname, port, statusCode, micros);
+        }
+    }
+
+    @Override
+    public void recordIoException(String serviceName, String hostname, int port) {
+        for (HostEventsSink sink : sinks) {
+            sink.recordIoException(serviceName, hostname, port);
+        }
+    }
+}
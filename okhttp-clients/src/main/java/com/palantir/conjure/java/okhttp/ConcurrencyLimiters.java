@@ -33,14 +33,18 @@ import com.palantir.tracing.okhttp3.OkhttpTraceInterceptor;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.annotation.concurrent.GuardedBy;
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 import org.immutables.value.Value;
 import org.slf4j.Logger;
@@ -64,6 +68,7 @@ final class ConcurrencyLimiters {
     private final Class<?> serviceClass;
     private final ScheduledExecutorService scheduledExecutorService;
     private final boolean useLimiter;
+    private final int maxLimit;
 
     @VisibleForTesting
     ConcurrencyLimiters(
@@ -72,6 +77,16 @@ final class ConcurrencyLimiters {
             Duration timeout,
             Class<?> serviceClass,
             boolean useLimiter) {
+        this(scheduledExecutorService, taggedMetricRegistry, timeout, serviceClass, useLimiter, Integer.MAX_VALUE);
+    }
+
+    private ConcurrencyLimiters(
+            ScheduledExecutorService scheduledExecutorService,
+            TaggedMetricRegistry taggedMetricRegistry,
+            Duration timeout,
+            Class<?> serviceClass,
+            boolean useLimiter,
+            int maxLimit) {
         this.slowAcquire = taggedMetricRegistry.timer(SLOW_ACQUIRE);
         this.leakSuspected = taggedMetricRegistry.meter(LEAK_SUSPECTED);
         this.slowAcquireTagged = taggedMetricRegistry.timer(generateMetricNameWithServiceName(SLOW_ACQUIRE_TAGGED,
@@ -80,6 +95,7 @@ final class ConcurrencyLimiters {
         this.serviceClass = serviceClass;
         this.scheduledExecutorService = scheduledExecutorService;
         this.useLimiter = useLimiter;
+        this.maxLimit = maxLimit;
     }
 
     ConcurrencyLimiters(
@@ -90,6 +106,20 @@ final class ConcurrencyLimiters {
         this(scheduledExecutorService, taggedMetricRegistry, DEFAULT_TIMEOUT, serviceClass, useLimiter);
     }
 
+    /**
+     * Similar to {@link #ConcurrencyLimiters(ScheduledExecutorService, TaggedMetricRegistry, Class, boolean)}, but
+     * never grants more than {@code maxLimit} concurrent permits per limiter. This is used for multiplexed HTTP/2
+     * connections, where the permits translate directly into concurrent streams on a shared connection.
+     */
+    ConcurrencyLimiters(
+            ScheduledExecutorService scheduledExecutorService,
+            TaggedMetricRegistry taggedMetricRegistry,
+            Class<?> serviceClass,
+            boolean useLimiter,
+            int maxLimit) {
+        this(scheduledExecutorService, taggedMetricRegistry, DEFAULT_TIMEOUT, serviceClass, useLimiter, maxLimit);
+    }
+
     /**
      * Returns async limiter that users can subscribe to be notified when limit permit has been granted. Caller must
      * notify the listener to release the permit.
@@ -103,6 +133,16 @@ final class ConcurrencyLimiters {
         return limiters.computeIfAbsent(limiterKey, this::newLimiter);
     }
 
+    /**
+     * Discards the limiters of all hosts other than the hosts of the given base URLs, e.g. because they were removed
+     * from the service. Calls that hold or await permits of discarded limiters are unaffected, and calls to hosts that
+     * are added back start from a fresh limit.
+     */
+    void retainHosts(Collection<HttpUrl> baseUrls) {
+        Set<String> hosts = baseUrls.stream().map(HttpUrl::host).collect(Collectors.toSet());
+        limiters.keySet().removeIf(key -> !hosts.contains(key.hostname()));
+    }
+
     @VisibleForTesting
     Limit newLimit() {
         return new ConjureWindowedLimit(AIMDLimit.newBuilder()
@@ -130,7 +170,7 @@ final class ConcurrencyLimiters {
                 /**
                  * Note that the Dispatcher in {@link OkHttpClients} has a max concurrent requests too.
                  */
-                .maxLimit(Integer.MAX_VALUE)
+                .maxLimit(maxLimit)
                 .build());
     }
 
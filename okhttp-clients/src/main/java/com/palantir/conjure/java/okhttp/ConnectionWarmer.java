@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Stopwatch;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.UnsafeArg;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Eagerly establishes connections (including DNS resolution, TCP connect and TLS handshake) to the configured base
+ * URLs so that the first requests of a freshly created client do not pay the connection setup cost on the request
+ * path. Each connection is established by an asynchronous {@code HEAD} request against a base URL whose response is
+ * discarded; the connection is then returned to the {@link okhttp3.ConnectionPool} shared by all clients.
+ * <p>
+ * Warm-up happens on the shared {@link okhttp3.Dispatcher} and never blocks the caller.
+ */
+final class ConnectionWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+    static final String WARM_UP_METRIC_NAME = "client.connection.warm-up";
+    static final String WARM_UP_FAILURES_METRIC_NAME = "client.connection.warm-up.failures";
+
+    private final OkHttpClient client;
+    private final Timer warmUpTimer;
+    private final Meter warmUpFailures;
+    private final String serviceName;
+
+    private ConnectionWarmer(OkHttpClient client, Timer warmUpTimer, Meter warmUpFailures, String serviceName) {
+        this.client = client;
+        this.warmUpTimer = warmUpTimer;
+        this.warmUpFailures = warmUpFailures;
+        this.serviceName = serviceName;
+    }
+
+    /**
+     * Creates a warmer that opens connections using the connection pool, dispatcher and TLS configuration of the given
+     * client. Interceptors are stripped (except for mesh proxy routing) and events are not listened to, so that
+     * warm-up requests are neither retried, rate-limited nor reported as host, phase or connection metrics.
+     */
+    static ConnectionWarmer create(OkHttpClient client, TaggedMetricRegistry registry, Class<?> serviceClass) {
+        OkHttpClient.Builder warmUpClient = client.newBuilder();
+        warmUpClient.interceptors().removeIf(interceptor -> !(interceptor instanceof MeshProxyInterceptor));
+        warmUpClient.networkInterceptors().clear();
+        warmUpClient.eventListener(EventListener.NONE);
+
+        String serviceName = serviceClass.getSimpleName();
+        return new ConnectionWarmer(
+                warmUpClient.build(),
+                registry.timer(metricName(WARM_UP_METRIC_NAME, serviceName)),
+                registry.meter(metricName(WARM_UP_FAILURES_METRIC_NAME, serviceName)),
+                serviceName);
+    }
+
+    /** Asynchronously opens {@code connectionsPerUrl} connections to each of the given base URLs. */
+    void warmUp(List<HttpUrl> baseUrls, int connectionsPerUrl) {
+        int numConnections = baseUrls.size() * connectionsPerUrl;
+        if (numConnections <= 0) {
+            return;
+        }
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        AtomicInteger remaining = new AtomicInteger(numConnections);
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exception) {
+                warmUpFailures.mark();
+                log.info("Failed to warm up connection",
+                        SafeArg.of("serviceName", serviceName),
+                        UnsafeArg.of("url", call.request().url()),
+                        exception);
+                complete();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                complete();
+            }
+
+            private void complete() {
+                if (remaining.decrementAndGet() == 0) {
+                    warmUpTimer.update(stopwatch.elapsed(TimeUnit.MICROSECONDS), TimeUnit.MICROSECONDS);
+                }
+            }
+        };
+
+        for (HttpUrl baseUrl : baseUrls) {
+            for (int i = 0; i < connectionsPerUrl; i++) {
+                client.newCall(new Request.Builder().url(baseUrl).head().build()).enqueue(callback);
+            }
+        }
+    }
+
+    private static MetricName metricName(String name, String serviceName) {
+        return MetricName.builder()
+                .safeName(name)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .build();
+    }
+}
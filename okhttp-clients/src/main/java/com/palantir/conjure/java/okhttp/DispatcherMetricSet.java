@@ -44,10 +44,22 @@ class DispatcherMetricSet implements TaggedMetricSet {
         map.put(
                 MetricName.builder().safeName("com.palantir.conjure.java.connection-pool.connections.idle").build(),
                 (Gauge) connectionPool::idleConnectionCount);
+        // With HTTP/2, this measures the average number of concurrent streams multiplexed over each busy connection;
+        // with HTTP/1.1 it is at most 1.
+        map.put(
+                MetricName.builder()
+                        .safeName("com.palantir.conjure.java.connection-pool.connections.active.calls-per-connection")
+                        .build(),
+                (Gauge) () -> callsPerActiveConnection(dispatcher, connectionPool));
 
         this.metrics = map.build();
     }
 
+    private static double callsPerActiveConnection(Dispatcher dispatcher, ConnectionPool connectionPool) {
+        int activeConnections = connectionPool.connectionCount() - connectionPool.idleConnectionCount();
+        return activeConnections <= 0 ? 0 : (double) dispatcher.runningCallsCount() / activeConnections;
+    }
+
     @Override
     public Map<MetricName, Metric> getMetrics() {
         return metrics;
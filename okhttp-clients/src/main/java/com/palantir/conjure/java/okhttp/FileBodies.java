@@ -0,0 +1,156 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.exceptions.SafeIoException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * Request and response bodies backed by files, which move bytes between a {@link FileChannel} and the Okio buffers of
+ * the connection without copying the file onto the heap.
+ * <p>
+ * If {@link com.palantir.conjure.java.client.config.ClientConfiguration#enableTransferMetrics} is set, uploaded and
+ * downloaded bytes of {@code application/octet-stream} bodies are recorded as {@code client.binary.bytes} meters, see
+ * {@link TransferMetricsInterceptor}.
+ */
+public final class FileBodies {
+
+    static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    // Limits the bytes transferred per system call, such that progress is reported regularly
+    private static final long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+
+    private FileBodies() {}
+
+    /** Returns an {@code application/octet-stream} request body that sends the contents of the given file. */
+    public static RequestBody requestBody(Path file) {
+        return requestBody(OCTET_STREAM, file);
+    }
+
+    /** Returns a request body that sends the contents of the given file. The file is read each time it is sent. */
+    public static RequestBody requestBody(MediaType contentType, Path file) {
+        return new FileRequestBody(contentType, file);
+    }
+
+    /**
+     * Writes the given response body to the given file, replacing any existing contents, closes the body and returns
+     * the number of bytes written.
+     */
+    public static long writeTo(ResponseBody body, Path file) throws IOException {
+        try (ResponseBody closeable = body) {
+            return transferFrom(body.source(), file);
+        }
+    }
+
+    /**
+     * Writes the given stream to the given file, replacing any existing contents, closes the stream and returns the
+     * number of bytes written. Unlike {@link #writeTo(ResponseBody, Path)}, this is not zero-copy: the stream is read
+     * into a small heap buffer chunk by chunk, though never held on the heap as a whole.
+     */
+    public static long writeTo(InputStream stream, Path file) throws IOException {
+        try (ReadableByteChannel channel = Channels.newChannel(stream)) {
+            return transferFrom(channel, file);
+        }
+    }
+
+    /** Writes the given response body to a new temporary file, closes the body and returns the file. */
+    public static Path writeToTempFile(ResponseBody body) throws IOException {
+        Path file = Files.createTempFile("conjure-download", ".tmp");
+        try {
+            writeTo(body, file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /** Writes the given stream to a new temporary file, closes the stream and returns the file. */
+    public static Path writeToTempFile(InputStream stream) throws IOException {
+        Path file = Files.createTempFile("conjure-download", ".tmp");
+        try {
+            writeTo(stream, file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static long transferFrom(ReadableByteChannel source, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            // FileChannel#transferFrom returns 0 once the source is exhausted
+            while ((transferred = channel.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                position += transferred;
+            }
+            return position;
+        }
+    }
+
+    private static final class FileRequestBody extends RequestBody {
+        private final MediaType contentType;
+        private final Path file;
+
+        private FileRequestBody(MediaType contentType, Path file) {
+            this.contentType = contentType;
+            this.file = file;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return Files.size(file);
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = channel.transferTo(
+                            position, Math.min(size - position, TRANSFER_CHUNK_BYTES), sink);
+                    if (transferred <= 0) {
+                        throw new SafeIoException("File was truncated while it was sent",
+                                SafeArg.of("expectedBytes", size),
+                                SafeArg.of("sentBytes", position));
+                    }
+                    position += transferred;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Records the duration of the phases of each call, per service and host:
+ * <ul>
+ *     <li>{@code queued}: waiting for the shared {@link okhttp3.Dispatcher} to execute the call</li>
+ *     <li>{@code connection-acquire}: obtaining a pooled or new connection, including the following three phases</li>
+ *     <li>{@code dns}: resolving the host</li>
+ *     <li>{@code connect}: establishing a new connection, including the TLS handshake</li>
+ *     <li>{@code tls-handshake}: the TLS handshake of a new connection</li>
+ *     <li>{@code write}: writing the request headers and body</li>
+ *     <li>{@code time-to-first-byte}: waiting for the response headers once the request is written</li>
+ *     <li>{@code body-read}: reading the response body</li>
+ * </ul>
+ * Whether a call used a new or a pooled connection is recorded as a meter.
+ * <p>
+ * OkHttp notifies the listener when a call is enqueued, but not when it is dispatched. The latter is signalled by
+ * {@link #DISPATCH_INTERCEPTOR}, which must be the first application interceptor, through the {@link ListenerTag} of
+ * the request.
+ */
+final class InstrumentedEventListener extends EventListener {
+
+    static final String PHASE_METRIC_PREFIX = "client.request.";
+    static final String CONNECTION_METRIC_NAME = "client.request.connection";
+    static final String HOSTNAME_TAG = "hostname";
+
+    /** Marks the end of the {@code queued} phase of the call. */
+    static final Interceptor DISPATCH_INTERCEPTOR = chain -> {
+        ListenerTag tag = chain.request().tag(ListenerTag.class);
+        if (tag != null && tag.listener != null) {
+            tag.listener.dispatched();
+        }
+        return chain.proceed(chain.request());
+    };
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final HostTimers timers;
+    private final EventListener connectListener;
+    private final LongSupplier nanoTime;
+
+    private long callStart = NOT_STARTED;
+    private long acquireStart = NOT_STARTED;
+    private long dnsStart = NOT_STARTED;
+    private long connectStart = NOT_STARTED;
+    private long secureConnectStart = NOT_STARTED;
+    private long requestStart = NOT_STARTED;
+    private long requestEnd = NOT_STARTED;
+    private long responseBodyStart = NOT_STARTED;
+    private boolean connected;
+
+    private InstrumentedEventListener(HostTimers timers, EventListener connectListener, LongSupplier nanoTime) {
+        this.timers = timers;
+        this.connectListener = connectListener;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns a factory of listeners that record their metrics in the given registry, and forward
+     * {@link #connectEnd} and {@link #connectFailed} events to the given listener.
+     */
+    static EventListener.Factory factory(
+            TaggedMetricRegistry registry, Class<?> serviceClass, EventListener connectListener) {
+        return factory(registry, serviceClass.getSimpleName(), connectListener, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    static EventListener.Factory factory(
+            TaggedMetricRegistry registry, String serviceName, EventListener connectListener, LongSupplier nanoTime) {
+        ConcurrentMap<String, HostTimers> timersByHost = new ConcurrentHashMap<>();
+        return call -> new InstrumentedEventListener(
+                timersByHost.computeIfAbsent(
+                        call.request().url().host(), host -> new HostTimers(registry, serviceName, host)),
+                connectListener,
+                nanoTime);
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = nanoTime.getAsLong();
+        ListenerTag tag = call.request().tag(ListenerTag.class);
+        if (tag != null) {
+            tag.listener = this;
+        }
+    }
+
+    private void dispatched() {
+        long now = nanoTime.getAsLong();
+        record(timers.queued, callStart, now);
+        acquireStart = now;
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = nanoTime.getAsLong();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        record(timers.dns, dnsStart, nanoTime.getAsLong());
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = nanoTime.getAsLong();
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = nanoTime.getAsLong();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        record(timers.tlsHandshake, secureConnectStart, nanoTime.getAsLong());
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        record(timers.connect, connectStart, nanoTime.getAsLong());
+        connectListener.connectEnd(call, inetSocketAddress, proxy, protocol);
+    }
+
+    @Override
+    public void connectFailed(
+            Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+        record(timers.connect, connectStart, nanoTime.getAsLong());
+        connectListener.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        record(timers.connectionAcquire, acquireStart, nanoTime.getAsLong());
+        (connected ? timers.newConnections : timers.reusedConnections).mark();
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        // OkHttp may acquire another connection for a follow-up or retry within the same call
+        acquireStart = nanoTime.getAsLong();
+        connected = false;
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = nanoTime.getAsLong();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        if (request.body() == null) {
+            requestWritten();
+        }
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestWritten();
+    }
+
+    private void requestWritten() {
+        requestEnd = nanoTime.getAsLong();
+        record(timers.write, requestStart, requestEnd);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        record(timers.timeToFirstByte, requestEnd, nanoTime.getAsLong());
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStart = nanoTime.getAsLong();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        record(timers.bodyRead, responseBodyStart, nanoTime.getAsLong());
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        clearTag(call);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        clearTag(call);
+    }
+
+    private void clearTag(Call call) {
+        ListenerTag tag = call.request().tag(ListenerTag.class);
+        if (tag != null && tag.listener == this) {
+            tag.listener = null;
+        }
+    }
+
+    private static void record(Timer timer, long start, long end) {
+        if (start != NOT_STARTED) {
+            timer.update(end - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * A mutable request tag that refers to the listener of the call that currently executes the request. Calls are
+     * retried sequentially with the same request, so there is at most one such call at any point in time.
+     */
+    static final class ListenerTag {
+        private volatile InstrumentedEventListener listener;
+    }
+
+    private static final class HostTimers {
+        private final Timer queued;
+        private final Timer connectionAcquire;
+        private final Timer dns;
+        private final Timer connect;
+        private final Timer tlsHandshake;
+        private final Timer write;
+        private final Timer timeToFirstByte;
+        private final Timer bodyRead;
+        private final Meter newConnections;
+        private final Meter reusedConnections;
+
+        HostTimers(TaggedMetricRegistry registry, String serviceName, String hostname) {
+            this.queued = registry.timer(phase("queued", serviceName, hostname));
+            this.connectionAcquire = registry.timer(phase("connection-acquire", serviceName, hostname));
+            this.dns = registry.timer(phase("dns", serviceName, hostname));
+            this.connect = registry.timer(phase("connect", serviceName, hostname));
+            this.tlsHandshake = registry.timer(phase("tls-handshake", serviceName, hostname));
+            this.write = registry.timer(phase("write", serviceName, hostname));
+            this.timeToFirstByte = registry.timer(phase("time-to-first-byte", serviceName, hostname));
+            this.bodyRead = registry.timer(phase("body-read", serviceName, hostname));
+            this.newConnections = registry.meter(connection("new", serviceName, hostname));
+            this.reusedConnections = registry.meter(connection("reused", serviceName, hostname));
+        }
+
+        private static MetricName phase(String phase, String serviceName, String hostname) {
+            return MetricName.builder()
+                    .safeName(PHASE_METRIC_PREFIX + phase)
+                    .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                    .putSafeTags(HOSTNAME_TAG, hostname)
+                    .build();
+        }
+
+        private static MetricName connection(String type, String serviceName, String hostname) {
+            return MetricName.builder()
+                    .safeName(CONNECTION_METRIC_NAME)
+                    .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                    .putSafeTags(HOSTNAME_TAG, hostname)
+                    .putSafeTags("type", type)
+                    .build();
+        }
+    }
+}
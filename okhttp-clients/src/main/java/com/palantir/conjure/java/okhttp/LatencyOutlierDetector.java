@@ -0,0 +1,208 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.HostAndPort;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.UnsafeArg;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects hosts whose recent p95 latency of successful (2xx) responses is a statistical outlier compared to the p95
+ * latency of their peers. Such hosts are alive and never {@link UrlSelector#markAsFailed marked as failed}, but are
+ * slow, e.g. because of a long GC pause or a noisy neighbour.
+ * <p>
+ * Latencies are tracked in one {@link DefaultHostMetrics} per host and evaluated at most once per
+ * {@link #EVALUATION_INTERVAL}. A host is ejected if its p95 latency exceeds the median p95 latency of its peers by a
+ * factor of {@link #OUTLIER_RATIO} and by at least {@link #MIN_OUTLIER_LATENCY}. Ejection expires after
+ * {@link #EJECTION_DURATION}, at which point the latency history of the host is discarded so that it has to prove
+ * itself slow again before it can be re-ejected. At most {@link #MAX_EJECTED_FRACTION} of the known hosts are ejected
+ * at any point in time, which prevents a cascade in which a uniformly slow service ejects all of its nodes.
+ * <p>
+ * Note that with {@link com.palantir.conjure.java.client.config.NodeSelectionStrategy#PIN_UNTIL_ERROR}, only the
+ * pinned host receives traffic; it is compared against the (decaying) latency history of the hosts that were pinned
+ * before it.
+ */
+final class LatencyOutlierDetector implements HostEventsSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyOutlierDetector.class);
+
+    private static final Duration EJECTION_DURATION = Duration.ofSeconds(30);
+    private static final Duration EVALUATION_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration MIN_OUTLIER_LATENCY = Duration.ofMillis(50);
+    private static final double OUTLIER_RATIO = 3.0;
+    private static final double MAX_EJECTED_FRACTION = 0.5;
+    private static final int MIN_SAMPLES = 20;
+
+    private static final String EJECTIONS_METRIC_NAME = "client.latency-outlier.ejections";
+
+    private final ConcurrentMap<HostAndPort, DefaultHostMetrics> hostMetrics = new ConcurrentHashMap<>();
+    private final Cache<HostAndPort, Boolean> ejectedHosts;
+    private final AtomicLong nextEvaluationNanos;
+    private final Ticker ticker;
+    private final Meter ejections;
+    private final String serviceName;
+
+    @VisibleForTesting
+    LatencyOutlierDetector(TaggedMetricRegistry registry, String serviceName, Ticker ticker) {
+        this.serviceName = serviceName;
+        this.ticker = ticker;
+        this.nextEvaluationNanos = new AtomicLong(ticker.read());
+        this.ejectedHosts = Caffeine.newBuilder()
+                .expireAfterWrite(EJECTION_DURATION.toNanos(), TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .build();
+        this.ejections = registry.meter(MetricName.builder()
+                .safeName(EJECTIONS_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .build());
+    }
+
+    static LatencyOutlierDetector create(TaggedMetricRegistry registry, Class<?> serviceClass) {
+        return new LatencyOutlierDetector(registry, serviceClass.getSimpleName(), Ticker.systemTicker());
+    }
+
+    @Override
+    public void record(String unusedServiceName, String hostname, int port, int statusCode, long micros) {
+        hostMetrics.computeIfAbsent(HostAndPort.fromParts(hostname, port), this::newHostMetrics)
+                .record(statusCode, micros);
+    }
+
+    @Override
+    public void recordIoException(String unusedServiceName, String hostname, int port) {
+        hostMetrics.computeIfAbsent(HostAndPort.fromParts(hostname, port), this::newHostMetrics)
+                .recordIoException();
+    }
+
+    /** Returns true if the host of the given URL is currently ejected as a latency outlier. */
+    boolean isOutlier(HttpUrl url) {
+        maybeEvaluate();
+        return ejectedHosts.getIfPresent(HostAndPort.fromParts(url.host(), url.port())) != null;
+    }
+
+    /**
+     * Forgets the latency history and ejection of all hosts other than the hosts of the given base URLs, e.g. because
+     * they were removed from the service. Removed hosts otherwise keep skewing the peer latencies of the remaining
+     * hosts, and count towards the ejection budget.
+     */
+    void retainHosts(Collection<HttpUrl> baseUrls) {
+        Set<HostAndPort> hosts = baseUrls.stream()
+                .map(url -> HostAndPort.fromParts(url.host(), url.port()))
+                .collect(Collectors.toSet());
+        hostMetrics.keySet().retainAll(hosts);
+        ejectedHosts.asMap().keySet().retainAll(hosts);
+    }
+
+    private void maybeEvaluate() {
+        long now = ticker.read();
+        long next = nextEvaluationNanos.get();
+        if (now - next >= 0 && nextEvaluationNanos.compareAndSet(next, now + EVALUATION_INTERVAL.toNanos())) {
+            evaluate();
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void evaluate() {
+        ejectedHosts.cleanUp();
+        int ejectionBudget = (int) (hostMetrics.size() * MAX_EJECTED_FRACTION) - (int) ejectedHosts.estimatedSize();
+        if (ejectionBudget <= 0) {
+            return;
+        }
+
+        Map<HostAndPort, Double> p95ByHost = new HashMap<>();
+        hostMetrics.forEach((host, metrics) -> {
+            Snapshot snapshot = metrics.get2xx().getSnapshot();
+            if (ejectedHosts.getIfPresent(host) == null && snapshot.size() >= MIN_SAMPLES) {
+                p95ByHost.put(host, snapshot.get95thPercentile());
+            }
+        });
+        if (p95ByHost.size() < 2) {
+            return;
+        }
+
+        List<Map.Entry<HostAndPort, Double>> candidates = new ArrayList<>(p95ByHost.entrySet());
+        candidates.sort(Comparator.comparingDouble((Map.Entry<HostAndPort, Double> e) -> e.getValue()).reversed());
+        for (Map.Entry<HostAndPort, Double> candidate : candidates) {
+            if (ejectionBudget <= 0) {
+                return;
+            }
+            double p95 = candidate.getValue();
+            double peerMedian = peerMedian(p95ByHost, candidate.getKey());
+            if (p95 > OUTLIER_RATIO * peerMedian && p95 - peerMedian > MIN_OUTLIER_LATENCY.toNanos()) {
+                eject(candidate.getKey(), p95, peerMedian);
+                ejectionBudget--;
+            } else {
+                // candidates are sorted by decreasing latency, so no subsequent host can be an outlier either
+                return;
+            }
+        }
+    }
+
+    private void eject(HostAndPort host, double p95Nanos, double peerMedianNanos) {
+        log.info("Ejecting host with outlier latency",
+                SafeArg.of("serviceName", serviceName),
+                UnsafeArg.of("host", host),
+                SafeArg.of("p95Millis", TimeUnit.NANOSECONDS.toMillis((long) p95Nanos)),
+                SafeArg.of("peerMedianP95Millis", TimeUnit.NANOSECONDS.toMillis((long) peerMedianNanos)),
+                SafeArg.of("ejectionDuration", EJECTION_DURATION));
+        ejectedHosts.put(host, Boolean.TRUE);
+        // Forget the latency history so that the host is re-evaluated on fresh samples once the ejection expires
+        hostMetrics.put(host, newHostMetrics(host));
+        ejections.mark();
+    }
+
+    private static double peerMedian(Map<HostAndPort, Double> p95ByHost, HostAndPort host) {
+        List<Double> peers = new ArrayList<>(p95ByHost.size() - 1);
+        p95ByHost.forEach((peer, p95) -> {
+            if (!peer.equals(host)) {
+                peers.add(p95);
+            }
+        });
+        Collections.sort(peers);
+        int middle = peers.size() / 2;
+        return peers.size() % 2 == 1 ? peers.get(middle) : (peers.get(middle - 1) + peers.get(middle)) / 2;
+    }
+
+    private DefaultHostMetrics newHostMetrics(HostAndPort host) {
+        return new DefaultHostMetrics(serviceName, host.getHost(), host.getPort(), Clock.systemUTC());
+    }
+}
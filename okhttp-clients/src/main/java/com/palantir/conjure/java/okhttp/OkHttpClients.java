@@ -16,6 +16,8 @@
 
 package com.palantir.conjure.java.okhttp;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
@@ -27,11 +29,15 @@ import com.palantir.conjure.java.api.config.service.UserAgent.Agent;
 import com.palantir.conjure.java.api.config.service.UserAgents;
 import com.palantir.conjure.java.client.config.CipherSuites;
 import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.conjure.java.client.config.DnsResolver;
 import com.palantir.conjure.java.client.config.NodeSelectionStrategy;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.logsafe.exceptions.SafeIllegalStateException;
 import com.palantir.tracing.Tracers;
 import com.palantir.tracing.okhttp3.OkhttpTraceInterceptor;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -39,12 +45,19 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
 import okhttp3.Credentials;
 import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.TlsVersion;
 import okhttp3.internal.Util;
 import org.slf4j.Logger;
@@ -58,6 +71,9 @@ public final class OkHttpClients {
     @VisibleForTesting
     static final int NUM_SCHEDULING_THREADS = 5;
 
+    private static final int MAX_REQUESTS = 256;
+    private static final int MAX_REQUESTS_PER_HOST = 64;
+
     private static final ThreadFactory executionThreads = new ThreadFactoryBuilder()
             .setUncaughtExceptionHandler((thread, uncaughtException) ->
                     log.error("An exception was uncaught in an execution thread. "
@@ -90,13 +106,34 @@ public final class OkHttpClients {
     /** Shared connection pool. */
     private static final ConnectionPool connectionPool = new ConnectionPool(100, 10, TimeUnit.MINUTES);
 
+    /**
+     * The {@link Dns} adapters of custom {@link DnsResolver}s. OkHttp only shares pooled connections between clients
+     * with equal {@link Dns}, so every client configured with the same resolver must use the same adapter.
+     */
+    private static final LoadingCache<DnsResolver, Dns> dnsAdapters = Caffeine.newBuilder()
+            .weakKeys()
+            .weakValues()
+            .build(resolver -> resolver::lookup);
+
+    /**
+     * The caching {@link Dns} of each resolver, per metric registry, which are shared for the same reason as the
+     * {@link #dnsAdapters}, and such that clients of different services share the cached addresses.
+     */
+    private static final LoadingCache<TaggedMetricRegistry, LoadingCache<DnsResolver, CachingDns>> cachingDns =
+            Caffeine.newBuilder()
+                    .weakKeys()
+                    .build(registry -> Caffeine.newBuilder()
+                            .weakKeys()
+                            .weakValues()
+                            .build(resolver -> CachingDns.create(resolver, registry, executionExecutor)));
+
     private static DispatcherMetricSet dispatcherMetricSet;
 
     static {
         dispatcher = new Dispatcher(executionExecutor);
-        dispatcher.setMaxRequests(256);
+        dispatcher.setMaxRequests(MAX_REQUESTS);
         // Must be less than maxRequests so a single slow host does not block all requests
-        dispatcher.setMaxRequestsPerHost(64);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
 
         dispatcherMetricSet = new DispatcherMetricSet(dispatcher, connectionPool);
     }
@@ -134,6 +171,33 @@ public final class OkHttpClients {
         return createInternal(config, userAgent, hostEventsSink, serviceClass, RANDOMIZE, reshuffle);
     }
 
+    /**
+     * Returns a function that creates an OkHttp client for each given configuration of the given service, similar to
+     * {@link #create}, but that carries the state of the previously created client over to the next one: the
+     * concurrency limits of the previous client are kept, its URL selector is updated in place with the new URIs and
+     * keeps the failure state of the URIs that remain, and if only the timeouts or the retry and node selection
+     * settings change, the new client shares the interceptors, DNS cache and response cache of the previous one. State
+     * is only carried over where the configuration it depends on is unchanged, and not at all if the new configuration
+     * uses a different metric registry.
+     * <p>
+     * This is meant for clients whose configuration is refreshed: previously created clients remain usable, but share
+     * their URL selector with the clients created after them.
+     */
+    public static Function<ClientConfiguration, OkHttpClient> reconfigurable(
+            UserAgent userAgent, HostEventsSink hostEventsSink, Class<?> serviceClass) {
+        AtomicReference<ClientState> previous = new AtomicReference<>();
+        return config -> {
+            synchronized (previous) {
+                boolean reshuffle = !config.nodeSelectionStrategy()
+                        .equals(NodeSelectionStrategy.PIN_UNTIL_ERROR_WITHOUT_RESHUFFLE);
+                ClientState state = createInternal(config, userAgent, hostEventsSink, serviceClass, RANDOMIZE,
+                        reshuffle, Optional.ofNullable(previous.get()));
+                previous.set(state);
+                return state.client;
+            }
+        };
+    }
+
     @VisibleForTesting
     static RemotingOkHttpClient withStableUris(
             ClientConfiguration config, UserAgent userAgent, HostEventsSink hostEventsSink, Class<?> serviceClass) {
@@ -147,21 +211,145 @@ public final class OkHttpClients {
             Class<?> serviceClass,
             boolean randomizeUrlOrder,
             boolean reshuffle) {
+        return createInternal(config, userAgent, hostEventsSink, serviceClass, randomizeUrlOrder, reshuffle,
+                Optional.empty()).client;
+    }
+
+    private static ClientState createInternal(
+            ClientConfiguration config,
+            UserAgent userAgent,
+            HostEventsSink hostEventsSink,
+            Class<?> serviceClass,
+            boolean randomizeUrlOrder,
+            boolean reshuffle,
+            Optional<ClientState> previous) {
+        // Metrics and limiters of the previous client are registered with its registry
+        Optional<ClientState> reusable = previous
+                .filter(state -> state.config.taggedMetricRegistry() == config.taggedMetricRegistry());
+
         boolean enableClientQoS = shouldEnableQos(config.clientQoS());
-        ConcurrencyLimiters concurrencyLimiters = new ConcurrencyLimiters(
-                limitReviver.get(),
-                config.taggedMetricRegistry(),
-                serviceClass,
-                enableClientQoS);
+        // With explicit HTTP/2, permits translate into streams on a shared connection rather than into connections.
+        // The dispatcher never runs more than MAX_REQUESTS_PER_HOST calls per host, so larger limits are meaningless.
+        ConcurrencyLimiters concurrencyLimiters = reusable
+                .filter(state -> state.config.clientQoS() == config.clientQoS()
+                        && state.config.http2() == config.http2())
+                .map(state -> state.concurrencyLimiters)
+                .orElseGet(() -> new ConcurrencyLimiters(
+                        limitReviver.get(),
+                        config.taggedMetricRegistry(),
+                        serviceClass,
+                        enableClientQoS,
+                        config.http2() == ClientConfiguration.Http2.ENABLED
+                                || config.http2() == ClientConfiguration.Http2.PRIOR_KNOWLEDGE
+                                ? MAX_REQUESTS_PER_HOST
+                                : Integer.MAX_VALUE));
 
+        // Routing
+        Optional<LatencyOutlierDetector> outlierDetector = reusable
+                .filter(state -> state.config.enableLatencyOutlierDetection()
+                        == config.enableLatencyOutlierDetection())
+                .map(state -> state.outlierDetector)
+                .orElseGet(() -> config.enableLatencyOutlierDetection()
+                        ? Optional.of(LatencyOutlierDetector.create(config.taggedMetricRegistry(), serviceClass))
+                        : Optional.empty());
+        boolean preferLocalZone = config.nodeSelectionStrategy() == NodeSelectionStrategy.PREFER_LOCAL_ZONE;
+        Optional<ZoneAffinity> reusableZoneAffinity = reusable
+                .filter(state -> preferLocalZone)
+                .flatMap(state -> state.zoneAffinity);
+        Optional<ZoneAffinity> zoneAffinity = preferLocalZone
+                ? Optional.of(reusableZoneAffinity.orElseGet(() -> ZoneAffinity.create(config, serviceClass)))
+                : Optional.empty();
+        List<String> uris = randomizeUrlOrder ? UrlSelectorImpl.shuffle(config.uris()) : config.uris();
+        Optional<UrlSelectorImpl> reusableUrlSelector = reusable
+                .filter(state -> state.reshuffle == reshuffle
+                        && state.config.failedUrlCooldown().equals(config.failedUrlCooldown())
+                        && state.outlierDetector.equals(outlierDetector)
+                        && state.zoneAffinity.equals(zoneAffinity))
+                .map(state -> state.urlSelector);
+        UrlSelectorImpl urlSelector = reusableUrlSelector.orElseGet(() ->
+                UrlSelectorImpl.createWithFailedUrlCooldown(uris, reshuffle, config.failedUrlCooldown(),
+                        outlierDetector, zoneAffinity));
+
+        Optional<RequestCoalescer> requestCoalescer = reusable
+                .filter(state -> state.config.enableRequestCoalescing() == config.enableRequestCoalescing())
+                .map(state -> state.requestCoalescer)
+                .orElseGet(() -> config.enableRequestCoalescing()
+                        ? Optional.of(RequestCoalescer.create(config.taggedMetricRegistry(), serviceClass))
+                        : Optional.empty());
+
+        Optional<ClientState> sameTransport = reusable
+                .filter(state -> state.outlierDetector.equals(outlierDetector)
+                        && state.zoneAffinity.equals(zoneAffinity)
+                        && hasSameTransport(state.config, config));
+        OkHttpClient okHttpClient;
+        List<HttpUrl> newBaseUrls;
+        if (sameTransport.isPresent()) {
+            // Timeouts are the only transport settings that differ, such that interceptors and caches can be shared
+            okHttpClient = sameTransport.get().okHttpClient.newBuilder()
+                    .connectTimeout(config.connectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(config.readTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .writeTimeout(config.writeTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            okHttpClient = createOkHttpClient(
+                    config, userAgent, hostEventsSink, serviceClass, outlierDetector, zoneAffinity);
+        }
+
+        // Zones must be known before requests are routed to new URLs
+        if (reusableZoneAffinity.isPresent()) {
+            reusableZoneAffinity.get().update(config);
+        }
+
+        if (reusableUrlSelector.isPresent()) {
+            List<HttpUrl> previousBaseUrls = urlSelector.getBaseUrls();
+            urlSelector.updateBaseUrls(uris);
+            newBaseUrls = urlSelector.getBaseUrls().stream()
+                    .filter(url -> !previousBaseUrls.contains(url))
+                    .collect(Collectors.toList());
+        } else {
+            newBaseUrls = urlSelector.getBaseUrls();
+        }
+        // Limiters are keyed by host, and would otherwise accumulate for every node the service ever had
+        concurrencyLimiters.retainHosts(urlSelector.getBaseUrls());
+        if (config.warmUpConnectionsPerUri() > 0) {
+            ConnectionWarmer.create(okHttpClient, config.taggedMetricRegistry(), serviceClass)
+                    .warmUp(newBaseUrls, config.warmUpConnectionsPerUri());
+        }
+
+        RemotingOkHttpClient client = new RemotingOkHttpClient(
+                okHttpClient,
+                () -> new ExponentialBackoff(
+                        config.maxNumRetries(), config.backoffSlotSize(), ThreadLocalRandom.current()),
+                config.nodeSelectionStrategy(),
+                urlSelector,
+                schedulingExecutor.get(),
+                executionExecutor,
+                concurrencyLimiters,
+                config.serverQoS(),
+                config.retryOnTimeout(),
+                requestCoalescer);
+        return new ClientState(config, reshuffle, okHttpClient, concurrencyLimiters, outlierDetector, zoneAffinity,
+                urlSelector, requestCoalescer, client);
+    }
+
+    private static OkHttpClient createOkHttpClient(
+            ClientConfiguration config,
+            UserAgent userAgent,
+            HostEventsSink hostEventsSink,
+            Class<?> serviceClass,
+            Optional<LatencyOutlierDetector> outlierDetector,
+            Optional<ZoneAffinity> zoneAffinity) {
+        boolean enableClientQoS = shouldEnableQos(config.clientQoS());
         OkHttpClient.Builder client = new OkHttpClient.Builder();
+        client.addInterceptor(InstrumentedEventListener.DISPATCH_INTERCEPTOR);
         client.addInterceptor(new DispatcherTraceTerminatingInterceptor());
+        // Serves cache hits before they acquire a concurrency limit, are recorded as host metrics, or count towards
+        // the in-flight requests of a zone, none of which a response that is never sent over the network should do.
+        if (config.responseCacheMaxBytes() > 0) {
+            client.addInterceptor(ResponseCacheInterceptor.create(
+                    config.responseCacheMaxBytes(), config.taggedMetricRegistry(), serviceClass));
+        }
 
-        // Routing
-        UrlSelectorImpl urlSelector = UrlSelectorImpl.createWithFailedUrlCooldown(
-                randomizeUrlOrder ? UrlSelectorImpl.shuffle(config.uris()) : config.uris(),
-                reshuffle,
-                config.failedUrlCooldown());
         if (config.meshProxy().isPresent()) {
             // TODO(rfink): Should this go into the call itself?
             client.addInterceptor(new MeshProxyInterceptor(config.meshProxy().get()));
@@ -180,10 +368,18 @@ public final class OkHttpClients {
         }
         client.addInterceptor(InstrumentedInterceptor.create(
                 config.taggedMetricRegistry(),
-                hostEventsSink,
+                outlierDetector.map(detector -> CompositeHostEventsSink.of(hostEventsSink, detector))
+                        .orElse(hostEventsSink),
                 serviceClass));
+        zoneAffinity.ifPresent(client::addInterceptor);
         client.addInterceptor(OkhttpTraceInterceptor.INSTANCE);
         client.addInterceptor(UserAgentInterceptor.of(augmentUserAgent(userAgent, serviceClass)));
+        if (config.enableCborNegotiation()) {
+            client.addInterceptor(CborNegotiationInterceptor.INSTANCE);
+        }
+        if (config.enableTransferMetrics()) {
+            client.addInterceptor(TransferMetricsInterceptor.create(config.taggedMetricRegistry(), serviceClass));
+        }
 
         // timeouts
         // Note that Feign overrides OkHttp timeouts with the timeouts given in FeignBuilder#Options if given, or
@@ -192,6 +388,22 @@ public final class OkHttpClients {
         client.readTimeout(config.readTimeout().toMillis(), TimeUnit.MILLISECONDS);
         client.writeTimeout(config.writeTimeout().toMillis(), TimeUnit.MILLISECONDS);
 
+        // DNS
+        EventListener connectListener = EventListener.NONE;
+        if (config.enableDnsCaching()) {
+            CachingDns dns = cachingDns.get(config.taggedMetricRegistry()).get(config.dnsResolver());
+            client.dns(dns);
+            connectListener = dns.connectionEventListener();
+        } else {
+            client.dns(config.dnsResolver() == DnsResolver.SYSTEM
+                    ? Dns.SYSTEM
+                    : dnsAdapters.get(config.dnsResolver()));
+        }
+
+        // per-phase metrics
+        client.eventListenerFactory(
+                InstrumentedEventListener.factory(config.taggedMetricRegistry(), serviceClass, connectListener));
+
         // proxy
         client.proxySelector(config.proxy());
         if (config.proxyCredentials().isPresent()) {
@@ -203,7 +415,10 @@ public final class OkHttpClients {
         }
 
         // cipher setup
-        client.connectionSpecs(createConnectionSpecs(config.enableGcmCipherSuites()));
+        client.connectionSpecs(createConnectionSpecs(config));
+
+        // protocols
+        client.protocols(createProtocols(config.http2()));
 
         // increase default connection pool from 5 @ 5 minutes to 100 @ 10 minutes
         client.connectionPool(connectionPool);
@@ -214,17 +429,65 @@ public final class OkHttpClients {
         config.taggedMetricRegistry().addMetrics(
                 "from", DispatcherMetricSet.class.getSimpleName(), dispatcherMetricSet);
 
-        return new RemotingOkHttpClient(
-                client.build(),
-                () -> new ExponentialBackoff(
-                        config.maxNumRetries(), config.backoffSlotSize(), ThreadLocalRandom.current()),
-                config.nodeSelectionStrategy(),
-                urlSelector,
-                schedulingExecutor.get(),
-                executionExecutor,
-                concurrencyLimiters,
-                config.serverQoS(),
-                config.retryOnTimeout());
+        return client.build();
+    }
+
+    /**
+     * Returns true if the OkHttp clients for the given configurations differ in their timeouts at most, i.e. if all
+     * settings that {@link #createOkHttpClient} reads besides the timeouts are equal.
+     */
+    private static boolean hasSameTransport(ClientConfiguration previous, ClientConfiguration config) {
+        return previous.sslSocketFactory().equals(config.sslSocketFactory())
+                && previous.trustManager().equals(config.trustManager())
+                && previous.fallbackToCommonNameVerification() == config.fallbackToCommonNameVerification()
+                && previous.enableGcmCipherSuites() == config.enableGcmCipherSuites()
+                && previous.tlsProtocols() == config.tlsProtocols()
+                && previous.cipherSuites().equals(config.cipherSuites())
+                && previous.http2() == config.http2()
+                && previous.proxy().equals(config.proxy())
+                && previous.proxyCredentials().equals(config.proxyCredentials())
+                && previous.meshProxy().equals(config.meshProxy())
+                && previous.clientQoS() == config.clientQoS()
+                && previous.enableCborNegotiation() == config.enableCborNegotiation()
+                && previous.responseCacheMaxBytes() == config.responseCacheMaxBytes()
+                && previous.enableTransferMetrics() == config.enableTransferMetrics()
+                && previous.enableDnsCaching() == config.enableDnsCaching()
+                && previous.dnsResolver().equals(config.dnsResolver())
+                && previous.taggedMetricRegistry() == config.taggedMetricRegistry();
+    }
+
+    /** The parts of a client that {@link #reconfigurable} carries over to the client for the next configuration. */
+    private static final class ClientState {
+        private final ClientConfiguration config;
+        private final boolean reshuffle;
+        private final OkHttpClient okHttpClient;
+        private final ConcurrencyLimiters concurrencyLimiters;
+        private final Optional<LatencyOutlierDetector> outlierDetector;
+        private final Optional<ZoneAffinity> zoneAffinity;
+        private final UrlSelectorImpl urlSelector;
+        private final Optional<RequestCoalescer> requestCoalescer;
+        private final RemotingOkHttpClient client;
+
+        ClientState(
+                ClientConfiguration config,
+                boolean reshuffle,
+                OkHttpClient okHttpClient,
+                ConcurrencyLimiters concurrencyLimiters,
+                Optional<LatencyOutlierDetector> outlierDetector,
+                Optional<ZoneAffinity> zoneAffinity,
+                UrlSelectorImpl urlSelector,
+                Optional<RequestCoalescer> requestCoalescer,
+                RemotingOkHttpClient client) {
+            this.config = config;
+            this.reshuffle = reshuffle;
+            this.okHttpClient = okHttpClient;
+            this.concurrencyLimiters = concurrencyLimiters;
+            this.outlierDetector = outlierDetector;
+            this.zoneAffinity = zoneAffinity;
+            this.urlSelector = urlSelector;
+            this.requestCoalescer = requestCoalescer;
+            this.client = client;
+        }
     }
 
     private static boolean shouldEnableQos(ClientConfiguration.ClientQoS clientQoS) {
@@ -239,6 +502,23 @@ public final class OkHttpClients {
                 SafeArg.of("ClientQoS", clientQoS));
     }
 
+    private static ImmutableList<Protocol> createProtocols(ClientConfiguration.Http2 http2) {
+        switch (http2) {
+            case DEFAULT:
+                // The default protocols of OkHttp, such that connections are shared with clients that do not set them
+                return ImmutableList.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+            case DISABLED:
+                return ImmutableList.of(Protocol.HTTP_1_1);
+            case ENABLED:
+                return ImmutableList.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+            case PRIOR_KNOWLEDGE:
+                return ImmutableList.of(Protocol.H2_PRIOR_KNOWLEDGE);
+        }
+
+        throw new SafeIllegalStateException("Encountered unknown HTTP/2 configuration",
+                SafeArg.of("http2", http2));
+    }
+
     /**
      * Adds informational {@link Agent}s to the given {@link UserAgent}, one for the conjure-java-runtime library and
      * one for the given service class. Version strings are extracted from the packages'
@@ -259,15 +539,50 @@ public final class OkHttpClients {
         return augmentedAgent;
     }
 
-    private static ImmutableList<ConnectionSpec> createConnectionSpecs(boolean enableGcmCipherSuites) {
+    @VisibleForTesting
+    static ImmutableList<ConnectionSpec> createConnectionSpecs(ClientConfiguration config) {
+        // OkHttp intersects these with the protocols and cipher suites enabled on the socket, so TLS 1.3 is silently
+        // dropped on JVMs that do not support it
         return ImmutableList.of(
                 new ConnectionSpec.Builder(ConnectionSpec.MODERN_TLS)
-                        .tlsVersions(TlsVersion.TLS_1_2)
-                        .cipherSuites(enableGcmCipherSuites
-                                ? CipherSuites.allCipherSuites()
-                                : CipherSuites.fastCipherSuites())
+                        .tlsVersions(createTlsVersions(config.tlsProtocols()))
+                        .cipherSuites(createCipherSuites(config))
                         .build(),
                 ConnectionSpec.CLEARTEXT);
     }
 
+    private static TlsVersion[] createTlsVersions(ClientConfiguration.TlsProtocols tlsProtocols) {
+        switch (tlsProtocols) {
+            case TLS_1_2:
+                return new TlsVersion[] {TlsVersion.TLS_1_2};
+            case TLS_1_2_AND_1_3:
+                return new TlsVersion[] {TlsVersion.TLS_1_3, TlsVersion.TLS_1_2};
+            case TLS_1_3:
+                return new TlsVersion[] {TlsVersion.TLS_1_3};
+        }
+
+        throw new SafeIllegalStateException("Encountered unknown TLS protocols configuration",
+                SafeArg.of("tlsProtocols", tlsProtocols));
+    }
+
+    private static String[] createCipherSuites(ClientConfiguration config) {
+        if (!config.cipherSuites().isEmpty()) {
+            return config.cipherSuites().toArray(new String[0]);
+        }
+
+        ImmutableList.Builder<String> cipherSuites = ImmutableList.builder();
+        if (config.tlsProtocols() != ClientConfiguration.TlsProtocols.TLS_1_2) {
+            cipherSuites.add(CipherSuites.tls13CipherSuites());
+        }
+        if (config.tlsProtocols() != ClientConfiguration.TlsProtocols.TLS_1_3) {
+            // HTTP/2 forbids the CBC cipher suites, see RFC 7540 Appendix A
+            boolean enableGcmCipherSuites =
+                    config.enableGcmCipherSuites() || config.http2() == ClientConfiguration.Http2.ENABLED;
+            cipherSuites.add(enableGcmCipherSuites
+                    ? CipherSuites.allCipherSuites()
+                    : CipherSuites.fastCipherSuites());
+        }
+        return cipherSuites.build().toArray(new String[0]);
+    }
+
 }
@@ -267,6 +267,9 @@ final class RemotingOkHttpCall extends ForwardingCall {
     }
 
     private boolean shouldRetry(IOException exception, Optional<Duration> backoff) {
+        if (!StreamingRequestBody.isReplayable(request().body())) {
+            return false;
+        }
         switch (retryOnTimeout) {
             case DISABLED:
                 if (exception instanceof SocketTimeoutException) {
@@ -302,6 +305,9 @@ final class RemotingOkHttpCall extends ForwardingCall {
                     propagateResponse(callback, call, response);
                     return null;
                 }
+                if (!isReplayable(callback, call, exception)) {
+                    return null;
+                }
 
                 Optional<Duration> nonAdvertizedBackoff = backoffStrategy.nextBackoff();
                 if (!nonAdvertizedBackoff.isPresent()) {
@@ -331,6 +337,9 @@ final class RemotingOkHttpCall extends ForwardingCall {
                             UnsafeArg.of("requestUrl", call.request().url().toString())));
                     return null;
                 }
+                if (!isReplayable(callback, call, exception)) {
+                    return null;
+                }
 
                 // Redirect to the URL specified by the exception.
                 Optional<HttpUrl> redirectTo = urls.redirectTo(request().url(), exception.getRedirectTo().toString());
@@ -362,6 +371,9 @@ final class RemotingOkHttpCall extends ForwardingCall {
                     propagateResponse(callback, call, response);
                     return null;
                 }
+                if (!isReplayable(callback, call, exception)) {
+                    return null;
+                }
 
                 Optional<Duration> backoff = backoffStrategy.nextBackoff();
                 if (!backoff.isPresent()) {
@@ -398,6 +410,18 @@ final class RemotingOkHttpCall extends ForwardingCall {
         };
     }
 
+    /** Fails the call if its body was streamed beyond its replay buffer and thus cannot be sent again. */
+    private boolean isReplayable(Callback callback, Call call, QosException exception) {
+        if (StreamingRequestBody.isReplayable(request().body())) {
+            return true;
+        }
+        callback.onFailure(call, new SafeIoException(
+                "Failed to complete the request since its streamed body is too large to be sent again",
+                exception,
+                UnsafeArg.of("requestUrl", call.request().url().toString())));
+        return false;
+    }
+
     private static boolean shouldPropagateQos(ClientConfiguration.ServerQoS serverQoS) {
         switch (serverQoS) {
             case PROPAGATE_429_and_503_TO_CALLER:
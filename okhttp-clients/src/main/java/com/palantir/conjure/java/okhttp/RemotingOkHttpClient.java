@@ -26,6 +26,7 @@ import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Supplier;
+import okhttp3.Call;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -49,6 +50,7 @@ final class RemotingOkHttpClient extends ForwardingOkHttpClient {
     private final ConcurrencyLimiters concurrencyLimiters;
     private final ClientConfiguration.ServerQoS serverQoS;
     private final ClientConfiguration.RetryOnTimeout retryOnTimeout;
+    private final Optional<RequestCoalescer> requestCoalescer;
 
     RemotingOkHttpClient(
             OkHttpClient delegate,
@@ -59,7 +61,8 @@ final class RemotingOkHttpClient extends ForwardingOkHttpClient {
             ExecutorService executionExecutor,
             ConcurrencyLimiters concurrencyLimiters,
             ClientConfiguration.ServerQoS serverQoS,
-            ClientConfiguration.RetryOnTimeout retryOnTimeout) {
+            ClientConfiguration.RetryOnTimeout retryOnTimeout,
+            Optional<RequestCoalescer> requestCoalescer) {
         super(delegate);
         this.backoffStrategyFactory = backoffStrategy;
         this.nodeSelectionStrategy = nodeSelectionStrategy;
@@ -69,11 +72,17 @@ final class RemotingOkHttpClient extends ForwardingOkHttpClient {
         this.concurrencyLimiters = concurrencyLimiters;
         this.serverQoS = serverQoS;
         this.retryOnTimeout = retryOnTimeout;
+        this.requestCoalescer = requestCoalescer;
     }
 
     @Override
-    public RemotingOkHttpCall newCall(Request request) {
-        return newCallWithMutableState(createNewRequest(request), backoffStrategyFactory.get(), MAX_NUM_RELOCATIONS);
+    public Call newCall(Request request) {
+        RemotingOkHttpCall call =
+                newCallWithMutableState(createNewRequest(request), backoffStrategyFactory.get(), MAX_NUM_RELOCATIONS);
+        if (requestCoalescer.isPresent()) {
+            return new CoalescingCall(call, request, requestCoalescer.get(), schedulingExecutor);
+        }
+        return call;
     }
 
     @Override
@@ -103,6 +112,7 @@ final class RemotingOkHttpClient extends ForwardingOkHttpClient {
                 .url(getNewRequestUrl(request.url()))
                 .tag(ConcurrencyLimiterListener.class, ConcurrencyLimiterListener.create())
                 .tag(AsyncTracer.class, new AsyncTracer("OkHttp: execute"))
+                .tag(InstrumentedEventListener.ListenerTag.class, new InstrumentedEventListener.ListenerTag())
                 .build();
     }
 
@@ -113,6 +123,7 @@ final class RemotingOkHttpClient extends ForwardingOkHttpClient {
     private Optional<HttpUrl> redirectToNewRequest(HttpUrl current) {
         switch (nodeSelectionStrategy) {
             case ROUND_ROBIN:
+            case PREFER_LOCAL_ZONE:
                 return urls.redirectToNextRoundRobin(current);
             case PIN_UNTIL_ERROR:
             case PIN_UNTIL_ERROR_WITHOUT_RESHUFFLE:
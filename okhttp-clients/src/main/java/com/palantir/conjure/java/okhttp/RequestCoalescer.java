@@ -0,0 +1,280 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.palantir.conjure.java.api.errors.RemoteException;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Coalesces identical idempotent requests: while a {@code GET} or {@code HEAD} request is in flight, identical
+ * requests (same method, URL and headers, including the {@code Authorization} header) do not hit the network but wait
+ * for the in-flight request, whose response is buffered once and replayed to each waiter. Failures of the in-flight
+ * request are propagated to all waiters, unless the in-flight request was cancelled or ran out of time, in which case
+ * waiters issue their own requests. Each waiter waits at most its own call timeout, and stops waiting when it is
+ * cancelled.
+ * <p>
+ * Responses whose body exceeds {@link #maxBufferedBytes} are not buffered; the in-flight request receives its response
+ * unmodified, and waiters issue their own requests instead.
+ *
+ * @see CoalescingCall
+ */
+final class RequestCoalescer {
+
+    static final String COALESCED_METRIC_NAME = "client.request.coalesced";
+
+    private static final long DEFAULT_MAX_BUFFERED_BYTES = 1024 * 1024;
+
+    private final ConcurrentMap<Key, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Meter coalesced;
+    private final long maxBufferedBytes;
+
+    @VisibleForTesting
+    RequestCoalescer(Meter coalesced, long maxBufferedBytes) {
+        this.coalesced = coalesced;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    static RequestCoalescer create(TaggedMetricRegistry registry, Class<?> serviceClass) {
+        Meter coalesced = registry.meter(MetricName.builder()
+                .safeName(COALESCED_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceClass.getSimpleName())
+                .build());
+        return new RequestCoalescer(coalesced, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    static boolean isCoalescable(Request request) {
+        return request.body() == null && (request.method().equals("GET") || request.method().equals("HEAD"));
+    }
+
+    /**
+     * Returns the in-flight request that is identical to the given one, if any. Otherwise, the given request becomes
+     * the in-flight request, and the returned {@link Flight} must be {@link Flight#complete completed} or
+     * {@link Flight#fail failed} by the caller once its response is available.
+     */
+    Flight join(Request request) {
+        Key key = new Key(request);
+        Flight flight = new Flight(key);
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.mark();
+            return existing.follower();
+        }
+        return flight;
+    }
+
+    final class Flight {
+        private final Key key;
+        private final SettableFuture<Optional<BufferedResponse>> leaderResult;
+        private final ListenableFuture<Optional<BufferedResponse>> result;
+        private final boolean leader;
+
+        private Flight(Key key) {
+            this.key = key;
+            this.leaderResult = SettableFuture.create();
+            this.result = leaderResult;
+            this.leader = true;
+        }
+
+        private Flight(Flight leaderFlight) {
+            this.key = leaderFlight.key;
+            this.leaderResult = leaderFlight.leaderResult;
+            // each waiter can stop waiting without affecting the leader or other waiters
+            this.result = Futures.nonCancellationPropagating(leaderResult);
+            this.leader = false;
+        }
+
+        private Flight follower() {
+            return new Flight(this);
+        }
+
+        /** True if this request is the in-flight request, false if it waits for an identical in-flight request. */
+        boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Buffers the body of the given response (unless it is too large) for all waiters, and returns the response
+         * to hand to the leader.
+         */
+        Response complete(Response response) throws IOException {
+            inFlight.remove(key, this);
+            ResponseBody body = response.body();
+            if (body == null) {
+                leaderResult.set(Optional.of(new BufferedResponse(response, null, new byte[0])));
+                return response;
+            }
+
+            BufferedResponse buffered;
+            try {
+                BufferedSource source = body.source();
+                if (source.request(maxBufferedBytes + 1)) {
+                    // Waiters issue their own requests rather than waiting for the large body to be read
+                    leaderResult.set(Optional.empty());
+                    return response;
+                }
+                buffered = new BufferedResponse(response, body.contentType(), body.bytes());
+            } catch (IOException e) {
+                leaderResult.setException(e);
+                throw e;
+            }
+            leaderResult.set(Optional.of(buffered));
+            return buffered.toResponse();
+        }
+
+        /** Propagates the given failure of the leader to all waiters. */
+        void fail(IOException exception) {
+            inFlight.remove(key, this);
+            leaderResult.setException(exception);
+        }
+
+        /**
+         * Lets all waiters issue their own requests, e.g. since the leader was cancelled or ran out of time, which says
+         * nothing about the outcome of their requests.
+         */
+        void abandon() {
+            inFlight.remove(key, this);
+            leaderResult.set(Optional.empty());
+        }
+
+        /** Stops waiting for the leader, such that the waiter fails as canceled. Has no effect on the leader. */
+        void cancel() {
+            result.cancel(false);
+        }
+
+        /**
+         * Returns a future of a copy of the leader's response, or of {@link Optional#empty} if the waiter should issue
+         * its own request. Fails with an {@link IOException} if the leader failed, and is cancelled if the waiter was.
+         */
+        ListenableFuture<Optional<BufferedResponse>> result() {
+            return result;
+        }
+
+        /**
+         * Blocking version of {@link #result}, which waits at most the given timeout, or indefinitely if it is zero.
+         * Throws like a {@link okhttp3.Call} that is cancelled, times out, or fails with a {@link RemoteException}.
+         */
+        Optional<Response> await(long timeoutNanos) throws IOException {
+            try {
+                Optional<BufferedResponse> response = timeoutNanos > 0
+                        ? result.get(timeoutNanos, TimeUnit.NANOSECONDS)
+                        : result.get();
+                return response.map(BufferedResponse::toResponse);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for coalesced call");
+            } catch (TimeoutException | CancellationException e) {
+                cancel();
+                throw toIoException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IoRemoteException) {
+                    RemoteException wrappedException = ((IoRemoteException) e.getCause()).getWrappedException();
+                    RemoteException correctStackTrace = new RemoteException(
+                            wrappedException.getError(), wrappedException.getStatus());
+                    correctStackTrace.initCause(e);
+                    throw correctStackTrace;
+                }
+                throw toIoException(e.getCause());
+            }
+        }
+    }
+
+    /** Converts a failure of a waiter into the exception that a cancelled, timed out or failed call throws. */
+    static IOException toIoException(Throwable throwable) {
+        if (throwable instanceof IOException) {
+            return (IOException) throwable;
+        } else if (throwable instanceof CancellationException) {
+            return new IOException("Canceled");
+        } else if (throwable instanceof TimeoutException) {
+            InterruptedIOException exception = new InterruptedIOException("timeout");
+            exception.initCause(throwable);
+            return exception;
+        }
+        return new IOException("Failed to execute coalesced call", throwable);
+    }
+
+    static final class BufferedResponse {
+        private final Response response;
+        private final MediaType contentType;
+        private final byte[] body;
+
+        private BufferedResponse(Response response, MediaType contentType, byte[] body) {
+            this.response = response;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        /** Returns a copy of the buffered response whose body can be consumed independently of all other copies. */
+        Response toResponse() {
+            return response.newBuilder()
+                    .body(ResponseBody.create(contentType, body))
+                    .build();
+        }
+    }
+
+    private static final class Key {
+        private final String method;
+        private final HttpUrl url;
+        private final Headers headers;
+
+        Key(Request request) {
+            this.method = request.method();
+            this.url = request.url();
+            this.headers = request.headers();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            Key key = (Key) other;
+            return method.equals(key.method) && url.equals(key.url) && headers.equals(key.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, url, headers);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.HttpHeaders;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.concurrency.limits.Limiter;
+import com.palantir.logsafe.Preconditions;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * A size-bounded in-memory cache of {@code GET} responses that honours {@code Cache-Control} and revalidates stale
+ * responses with {@code ETag}/{@code If-None-Match} and {@code Last-Modified}/{@code If-Modified-Since}.
+ * <p>
+ * The cache is private to the client: responses are keyed by the path and query of the URL and by the
+ * {@code Authorization}, {@code Cookie} and {@code Accept} request headers, such that responses are never served to
+ * callers with different credentials, and {@code Cache-Control: private} responses are cached. The host is not part of
+ * the key since all nodes of a service serve the same resources, so a response of one node is served regardless of the
+ * node that a request is routed to. Responses with a {@code Vary} header are only served to requests
+ * with equal values of the listed headers.
+ * <p>
+ * A response is cached if it is a {@code 200} without {@code no-store} that is either fresh for some time
+ * ({@code max-age}) or can be revalidated. Requests that carry their own conditional headers bypass the cache.
+ */
+final class ResponseCacheInterceptor implements Interceptor {
+
+    static final String CACHE_METRIC_NAME = "client.response.cache";
+
+    // a single response may occupy at most this fraction of the cache
+    private static final int MAX_ENTRY_FRACTION = 8;
+    private static final ImmutableList<String> KEY_HEADERS =
+            ImmutableList.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE, HttpHeaders.ACCEPT);
+    private static final ImmutableList<String> CONDITIONAL_HEADERS = ImmutableList.of(
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_MATCH,
+            HttpHeaders.IF_UNMODIFIED_SINCE, HttpHeaders.IF_RANGE);
+    // headers of a 304 that must not replace the headers of the cached response, see RFC 7232 section 4.1
+    private static final ImmutableSet<String> CONTENT_HEADERS = ImmutableSet.of(
+            HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.CONTENT_ENCODING.toLowerCase(),
+            HttpHeaders.CONTENT_TYPE.toLowerCase());
+
+    private final Cache<Key, Entry> cache;
+    private final long maxEntryBytes;
+    private final Ticker ticker;
+    private final Meter hits;
+    private final Meter revalidations;
+    private final Meter misses;
+
+    @VisibleForTesting
+    ResponseCacheInterceptor(long maxBytes, TaggedMetricRegistry registry, String serviceName, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> entry.body.length)
+                .build();
+        this.maxEntryBytes = maxBytes / MAX_ENTRY_FRACTION;
+        this.ticker = ticker;
+        this.hits = registry.meter(metricName(serviceName, "hit"));
+        this.revalidations = registry.meter(metricName(serviceName, "revalidated"));
+        this.misses = registry.meter(metricName(serviceName, "miss"));
+    }
+
+    static ResponseCacheInterceptor create(long maxBytes, TaggedMetricRegistry registry, Class<?> serviceClass) {
+        return new ResponseCacheInterceptor(maxBytes, registry, serviceClass.getSimpleName(), Ticker.systemTicker());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isCacheable(request)) {
+            return chain.proceed(request);
+        }
+
+        Key key = new Key(request);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && !entry.matchesVary(request)) {
+            entry = null;
+        }
+
+        if (entry != null && !request.cacheControl().noCache() && entry.isFresh(ticker.read())) {
+            hits.mark();
+            releaseLimiterPermit(request);
+            return entry.toResponse(request);
+        }
+
+        if (entry == null || !entry.hasValidators()) {
+            misses.mark();
+            return store(key, request, chain.proceed(request));
+        }
+
+        Response response = chain.proceed(entry.conditionalRequest(request));
+        if (response.code() != 304) {
+            misses.mark();
+            return store(key, request, response);
+        }
+
+        response.close();
+        revalidations.mark();
+        Entry revalidated = entry.revalidate(response, ticker.read());
+        cache.put(key, revalidated);
+        return revalidated.toResponse(request);
+    }
+
+    /**
+     * Releases the concurrency limiter permit that the call acquired before it was dispatched, which the
+     * {@link ConcurrencyLimitingInterceptor} would release otherwise, but which cache hits never reach. Hits are
+     * ignored by the limiter, since they say nothing about the latency of the server.
+     */
+    private static void releaseLimiterPermit(Request request) {
+        ConcurrencyLimiterListener limiterListenerTag = request.tag(ConcurrencyLimiterListener.class);
+        if (limiterListenerTag != null) {
+            ListenableFuture<Limiter.Listener> limiterFuture = limiterListenerTag.limiterListener();
+            Preconditions.checkState(limiterFuture.isDone(), "Limit listener future should have been fulfilled.");
+            Futures.getUnchecked(limiterFuture).onIgnore();
+        }
+    }
+
+    /** Caches the response to the given request, whose headers may differ from those of the network request. */
+    private Response store(Key key, Request request, Response response) throws IOException {
+        if (!isCacheable(response)) {
+            cache.invalidate(key);
+            return response;
+        }
+
+        ResponseBody body = response.body();
+        BufferedSource source = body.source();
+        if (source.request(maxEntryBytes + 1)) {
+            return response;
+        }
+        Entry entry = new Entry(response, body.contentType(), body.bytes(), ticker.read(),
+                varyHeaders(request, response.headers()));
+        cache.put(key, entry);
+        return entry.toResponse(request);
+    }
+
+    private static boolean isCacheable(Request request) {
+        if (!request.method().equals("GET") || request.body() != null || request.cacheControl().noStore()) {
+            return false;
+        }
+        for (String header : CONDITIONAL_HEADERS) {
+            if (request.header(header) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCacheable(Response response) {
+        CacheControl cacheControl = response.cacheControl();
+        return response.code() == 200
+                && response.body() != null
+                && !cacheControl.noStore()
+                && !"*".equals(response.header(HttpHeaders.VARY))
+                && (cacheControl.maxAgeSeconds() > 0
+                        || response.header(HttpHeaders.ETAG) != null
+                        || response.header(HttpHeaders.LAST_MODIFIED) != null);
+    }
+
+    private static Headers varyHeaders(Request request, Headers responseHeaders) {
+        Headers.Builder values = new Headers.Builder();
+        for (String vary : responseHeaders.values(HttpHeaders.VARY)) {
+            for (String name : vary.split(",")) {
+                String trimmed = name.trim();
+                if (!trimmed.isEmpty()) {
+                    for (String value : request.headers(trimmed)) {
+                        values.add(trimmed.toLowerCase(), value);
+                    }
+                }
+            }
+        }
+        return values.build();
+    }
+
+    private static MetricName metricName(String serviceName, String result) {
+        return MetricName.builder()
+                .safeName(CACHE_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .putSafeTags("result", result)
+                .build();
+    }
+
+    private static final class Entry {
+        private final Response response;
+        private final MediaType contentType;
+        private final byte[] body;
+        private final long storedAtNanos;
+        private final long maxAgeNanos;
+        private final Headers varyHeaders;
+
+        Entry(Response response, MediaType contentType, byte[] body, long nowNanos, Headers varyHeaders) {
+            this.response = response;
+            this.contentType = contentType;
+            this.body = body;
+            this.storedAtNanos = nowNanos;
+            this.maxAgeNanos = maxAgeNanos(response);
+            this.varyHeaders = varyHeaders;
+        }
+
+        boolean isFresh(long nowNanos) {
+            return nowNanos - storedAtNanos < maxAgeNanos;
+        }
+
+        boolean hasValidators() {
+            return response.header(HttpHeaders.ETAG) != null || response.header(HttpHeaders.LAST_MODIFIED) != null;
+        }
+
+        boolean matchesVary(Request request) {
+            return varyHeaders.equals(varyHeaders(request, response.headers()));
+        }
+
+        Request conditionalRequest(Request request) {
+            Request.Builder conditional = request.newBuilder();
+            String etag = response.header(HttpHeaders.ETAG);
+            if (etag != null) {
+                conditional.header(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+            String lastModified = response.header(HttpHeaders.LAST_MODIFIED);
+            if (lastModified != null) {
+                conditional.header(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            return conditional.build();
+        }
+
+        /** Returns an entry with the headers of the given {@code 304 Not Modified} response merged in. */
+        Entry revalidate(Response notModified, long nowNanos) {
+            Headers.Builder headers = response.headers().newBuilder();
+            for (String name : notModified.headers().names()) {
+                if (!CONTENT_HEADERS.contains(name.toLowerCase())) {
+                    headers.removeAll(name);
+                    for (String value : notModified.headers(name)) {
+                        headers.add(name, value);
+                    }
+                }
+            }
+            Response merged = response.newBuilder().headers(headers.build()).build();
+            return new Entry(merged, contentType, body, nowNanos, varyHeaders);
+        }
+
+        Response toResponse(Request request) {
+            return response.newBuilder()
+                    .request(request)
+                    .body(ResponseBody.create(contentType, body))
+                    .build();
+        }
+
+        private static long maxAgeNanos(Response response) {
+            CacheControl cacheControl = response.cacheControl();
+            if (cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) {
+                return 0;
+            }
+            String ageHeader = response.header(HttpHeaders.AGE);
+            Integer age = ageHeader == null ? null : Ints.tryParse(ageHeader.trim());
+            long remainingSeconds = cacheControl.maxAgeSeconds() - (age == null ? 0 : age);
+            return TimeUnit.SECONDS.toNanos(Math.max(remainingSeconds, 0));
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final String query;
+        private final List<List<String>> headerValues;
+
+        Key(Request request) {
+            HttpUrl url = request.url();
+            this.path = url.encodedPath();
+            this.query = url.encodedQuery();
+            ImmutableList.Builder<List<String>> values = ImmutableList.builder();
+            for (String header : KEY_HEADERS) {
+                values.add(request.headers(header));
+            }
+            this.headerValues = values.build();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            Key key = (Key) other;
+            return path.equals(key.path) && Objects.equals(query, key.query) && headerValues.equals(key.headerValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, query, headerValues);
+        }
+    }
+}
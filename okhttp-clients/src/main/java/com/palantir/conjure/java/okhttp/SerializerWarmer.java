@@ -0,0 +1,157 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.UnsafeArg;
+import com.palantir.tracing.Tracers;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the Jackson serializers of request body types and the deserializers of response types of a service ahead
+ * of its first calls, see {@link com.palantir.conjure.java.client.config.ClientConfiguration#warmUpSerializers}.
+ * Types are resolved with the functions that the client itself uses to look up the writer or reader of a type, such
+ * that the client finds them cached, along with the serializers and deserializers that the mapper caches.
+ * <p>
+ * Types are resolved in parallel on a small shared pool of daemon threads and never block the caller. Types that are
+ * not read or written by Jackson, e.g. streams and files, are skipped.
+ */
+public final class SerializerWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(SerializerWarmer.class);
+
+    static final String WARM_UP_METRIC_NAME = "client.serializer.warm-up";
+
+    private static final ImmutableSet<Type> SKIPPED_TYPES = ImmutableSet.of(
+            void.class, Void.class, InputStream.class, Path.class, RequestBody.class, ResponseBody.class);
+    private static final int NUM_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService executor = Tracers.wrap("conjure-java-runtime: serializer warm-up",
+            newExecutor());
+
+    private SerializerWarmer() {}
+
+    /**
+     * Asynchronously resolves the serializers of the given request body types and the deserializers of the given
+     * response types with the given mapper, for clients that create the writers and readers of a type with
+     * {@link ObjectMapper#writerFor} and {@link ObjectMapper#readerFor}.
+     */
+    public static CompletableFuture<Void> warmUp(
+            ObjectMapper mapper,
+            Collection<Type> requestBodyTypes,
+            Collection<Type> responseTypes,
+            TaggedMetricRegistry registry,
+            Class<?> serviceClass) {
+        return warmUp(
+                type -> mapper.writerFor(mapper.constructType(type)),
+                type -> mapper.readerFor(mapper.constructType(type)),
+                requestBodyTypes,
+                responseTypes,
+                registry,
+                serviceClass);
+    }
+
+    /**
+     * Asynchronously resolves the writers of the given request body types and the readers of the given response types
+     * with the given functions. The returned future completes once all of them are resolved, and the time this took is
+     * recorded in the {@code client.serializer.warm-up} timer of the service.
+     */
+    public static CompletableFuture<Void> warmUp(
+            Function<Type, ?> writers,
+            Function<Type, ?> readers,
+            Collection<Type> requestBodyTypes,
+            Collection<Type> responseTypes,
+            TaggedMetricRegistry registry,
+            Class<?> serviceClass) {
+        String serviceName = serviceClass.getSimpleName();
+        Timer timer = registry.timer(MetricName.builder()
+                .safeName(WARM_UP_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .build());
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        List<CompletableFuture<Void>> resolutions = new ArrayList<>();
+        for (Type type : ImmutableSet.copyOf(requestBodyTypes)) {
+            if (!SKIPPED_TYPES.contains(type)) {
+                resolutions.add(CompletableFuture.runAsync(
+                        () -> resolve(() -> writers.apply(type), type, serviceName),
+                        executor));
+            }
+        }
+        for (Type type : ImmutableSet.copyOf(responseTypes)) {
+            if (!SKIPPED_TYPES.contains(type)) {
+                resolutions.add(CompletableFuture.runAsync(
+                        () -> resolve(() -> readers.apply(type), type, serviceName),
+                        executor));
+            }
+        }
+
+        return CompletableFuture.allOf(resolutions.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            long elapsedMicros = stopwatch.elapsed(TimeUnit.MICROSECONDS);
+            timer.update(elapsedMicros, TimeUnit.MICROSECONDS);
+            log.debug("Warmed up serializers",
+                    SafeArg.of("serviceName", serviceName),
+                    SafeArg.of("numTypes", resolutions.size()),
+                    SafeArg.of("durationMicros", elapsedMicros));
+        });
+    }
+
+    /** Writers and readers resolve their root serializer when they are created, and cache it in the mapper. */
+    private static void resolve(Runnable resolution, Type type, String serviceName) {
+        try {
+            resolution.run();
+        } catch (RuntimeException e) {
+            log.info("Failed to warm up serializer",
+                    SafeArg.of("serviceName", serviceName),
+                    UnsafeArg.of("type", type),
+                    e);
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                NUM_THREADS, NUM_THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("conjure-serializer-warm-up-%d")
+                        .setDaemon(true)
+                        .build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
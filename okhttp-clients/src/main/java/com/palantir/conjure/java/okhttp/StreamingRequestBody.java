@@ -0,0 +1,170 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.palantir.logsafe.Preconditions;
+import com.palantir.logsafe.SafeArg;
+import com.palantir.logsafe.exceptions.SafeIoException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * A request body that is streamed from an {@link InputStream} with chunked transfer encoding, rather than read into
+ * memory before the request is sent.
+ * <p>
+ * A stream can be read once only, so the body records the bytes it has written in a replay buffer of at most
+ * {@code maxReplayBytes} bytes, which allows clients to retry a request whose body fits the buffer. The first 64 KiB
+ * are kept in memory; larger bodies spill to a temporary file. Requests with larger bodies are not retried. The body
+ * must be {@link #close closed} once its call completed, which closes the stream and deletes the temporary file.
+ */
+public final class StreamingRequestBody extends RequestBody implements Closeable {
+
+    @VisibleForTesting
+    static final int IN_MEMORY_REPLAY_BYTES = 64 * 1024;
+
+    private final MediaType contentType;
+    private final InputStream stream;
+    private final long maxReplayBytes;
+
+    private final Buffer memory = new Buffer();
+    private Path spillFile;
+    private BufferedSink spillSink;
+    private long recordedBytes = 0;
+    private boolean overflowed = false;
+    private boolean written = false;
+
+    private StreamingRequestBody(MediaType contentType, InputStream stream, long maxReplayBytes) {
+        this.contentType = contentType;
+        this.stream = stream;
+        this.maxReplayBytes = maxReplayBytes;
+    }
+
+    /**
+     * Creates a body that streams the given stream, and that can be replayed for retries if the stream has no more
+     * than {@code maxReplayBytes} bytes. Replays are disabled if {@code maxReplayBytes} is 0.
+     */
+    public static StreamingRequestBody of(MediaType contentType, InputStream stream, long maxReplayBytes) {
+        Preconditions.checkArgument(maxReplayBytes >= 0, "maxReplayBytes must be non-negative",
+                SafeArg.of("maxReplayBytes", maxReplayBytes));
+        return new StreamingRequestBody(contentType, stream, maxReplayBytes);
+    }
+
+    /** True unless the given body is a {@link StreamingRequestBody} that cannot be written again. */
+    static boolean isReplayable(RequestBody body) {
+        return !(body instanceof StreamingRequestBody) || ((StreamingRequestBody) body).isReplayable();
+    }
+
+    private synchronized boolean isReplayable() {
+        return !written || !overflowed;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        // Unknown, which makes OkHttp use chunked transfer encoding
+        return -1;
+    }
+
+    @Override
+    public synchronized void writeTo(BufferedSink sink) throws IOException {
+        if (!isReplayable()) {
+            throw new SafeIoException("Streamed request body is too large to be replayed",
+                    SafeArg.of("maxReplayBytes", maxReplayBytes));
+        }
+        written = true;
+        replayTo(sink);
+
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            // Record before writing, such that the bytes are replayed if the write fails
+            record(buffer, read);
+            sink.write(buffer, 0, read);
+        }
+    }
+
+    private void replayTo(BufferedSink sink) throws IOException {
+        if (spillSink != null) {
+            spillSink.flush();
+            try (Source source = Okio.source(spillFile)) {
+                sink.writeAll(source);
+            }
+        } else {
+            memory.copyTo(sink.buffer(), 0, memory.size());
+            sink.emitCompleteSegments();
+        }
+    }
+
+    private void record(byte[] bytes, int byteCount) throws IOException {
+        if (overflowed) {
+            return;
+        }
+        if (recordedBytes + byteCount > maxReplayBytes) {
+            overflowed = true;
+            releaseReplayBuffer();
+            return;
+        }
+        recordedBytes += byteCount;
+        if (spillSink == null && memory.size() + byteCount <= IN_MEMORY_REPLAY_BYTES) {
+            memory.write(bytes, 0, byteCount);
+            return;
+        }
+        if (spillSink == null) {
+            spillFile = Files.createTempFile("conjure-request-body", ".tmp");
+            spillSink = Okio.buffer(Okio.sink(spillFile, StandardOpenOption.WRITE));
+            spillSink.writeAll(memory);
+        }
+        spillSink.write(bytes, 0, byteCount);
+    }
+
+    private void releaseReplayBuffer() throws IOException {
+        memory.clear();
+        if (spillSink != null) {
+            try {
+                spillSink.close();
+            } finally {
+                Files.deleteIfExists(spillFile);
+                spillSink = null;
+                spillFile = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            stream.close();
+        } finally {
+            releaseReplayBuffer();
+        }
+    }
+}
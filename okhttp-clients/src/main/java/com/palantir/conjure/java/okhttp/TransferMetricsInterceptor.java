@@ -0,0 +1,135 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Records the bytes sent and received in {@code application/octet-stream} bodies, i.e., the bodies of Conjure binary
+ * endpoints, as meters per service and direction. The count of a meter tracks the progress of transfers, and its rates
+ * are the throughput in bytes per second.
+ */
+final class TransferMetricsInterceptor implements Interceptor {
+
+    static final String BYTES_METRIC_NAME = "client.binary.bytes";
+
+    private final Meter uploaded;
+    private final Meter downloaded;
+
+    private TransferMetricsInterceptor(Meter uploaded, Meter downloaded) {
+        this.uploaded = uploaded;
+        this.downloaded = downloaded;
+    }
+
+    static TransferMetricsInterceptor create(TaggedMetricRegistry registry, Class<?> serviceClass) {
+        return new TransferMetricsInterceptor(
+                registry.meter(metricName(serviceClass.getSimpleName(), "upload")),
+                registry.meter(metricName(serviceClass.getSimpleName(), "download")));
+    }
+
+    static MetricName metricName(String serviceName, String direction) {
+        return MetricName.builder()
+                .safeName(BYTES_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .putSafeTags("direction", direction)
+                .build();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody requestBody = request.body();
+        if (requestBody != null && isBinary(requestBody.contentType())) {
+            request = request.newBuilder()
+                    .method(request.method(), new MeteredRequestBody(requestBody, uploaded))
+                    .build();
+        }
+
+        Response response = chain.proceed(request);
+        ResponseBody responseBody = response.body();
+        if (responseBody == null || !isBinary(responseBody.contentType())) {
+            return response;
+        }
+        ForwardingSource meteredSource = new ForwardingSource(responseBody.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    downloaded.mark(read);
+                }
+                return read;
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(
+                        responseBody.contentType(), responseBody.contentLength(), Okio.buffer(meteredSource)))
+                .build();
+    }
+
+    private static boolean isBinary(MediaType contentType) {
+        return contentType != null
+                && contentType.type().equals(FileBodies.OCTET_STREAM.type())
+                && contentType.subtype().equals(FileBodies.OCTET_STREAM.subtype());
+    }
+
+    private static final class MeteredRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final Meter meter;
+
+        MeteredRequestBody(RequestBody delegate, Meter meter) {
+            this.delegate = delegate;
+            this.meter = meter;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink meteredSink = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    meter.mark(byteCount);
+                }
+            });
+            delegate.writeTo(meteredSink);
+            meteredSink.emit();
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.palantir.logsafe.SafeArg;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -32,30 +33,39 @@ import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 final class UrlSelectorImpl implements UrlSelector {
 
+    private static final Logger log = LoggerFactory.getLogger(UrlSelectorImpl.class);
+
     private static final Duration RANDOMIZE = Duration.ofMinutes(10);
 
-    private final Supplier<List<HttpUrl>> baseUrls;
+    private final boolean reshuffle;
+    private final long reshuffleIntervalMillis;
+    private volatile Supplier<List<HttpUrl>> baseUrls;
     private final AtomicInteger currentUrl;
     private final Cache<HttpUrl, UrlAvailability> failedUrls;
     private final boolean useFailedUrlCache;
-
-    private UrlSelectorImpl(ImmutableList<HttpUrl> baseUrls, boolean reshuffle, Duration failedUrlCooldown) {
-        if (reshuffle) {
-            // Add jitter to avoid mass node reassignment when multiple nodes of a client are restarted
-            Duration jitter = Duration.ofSeconds(ThreadLocalRandom.current().nextLong(-30, 30));
-            this.baseUrls = Suppliers.memoizeWithExpiration(
-                    () -> shuffle(baseUrls),
-                    RANDOMIZE.plus(jitter).toMillis(),
-                    TimeUnit.MILLISECONDS);
-        } else {
-            // deterministic for testing only
-            this.baseUrls = () -> baseUrls;
-        }
+    private final Optional<LatencyOutlierDetector> outlierDetector;
+    private final Optional<ZoneAffinity> zoneAffinity;
+
+    private UrlSelectorImpl(
+            ImmutableList<HttpUrl> baseUrls,
+            boolean reshuffle,
+            Duration failedUrlCooldown,
+            Optional<LatencyOutlierDetector> outlierDetector,
+            Optional<ZoneAffinity> zoneAffinity) {
+        this.reshuffle = reshuffle;
+        // Add jitter to avoid mass node reassignment when multiple nodes of a client are restarted
+        Duration jitter = Duration.ofSeconds(ThreadLocalRandom.current().nextLong(-30, 30));
+        this.reshuffleIntervalMillis = RANDOMIZE.plus(jitter).toMillis();
+        this.baseUrls = supplierFor(baseUrls);
 
         this.currentUrl = new AtomicInteger(0);
 
@@ -65,6 +75,8 @@ final class UrlSelectorImpl implements UrlSelector {
                 .expireAfterWrite(coolDownMillis, TimeUnit.MILLISECONDS)
                 .build();
         this.useFailedUrlCache = !failedUrlCooldown.isNegative() && !failedUrlCooldown.isZero();
+        this.outlierDetector = outlierDetector;
+        this.zoneAffinity = zoneAffinity;
 
         Preconditions.checkArgument(!baseUrls.isEmpty(), "Must specify at least one URL");
         Preconditions.checkArgument(!failedUrlCooldown.isNegative(), "Cache expiration must be non-negative");
@@ -79,6 +91,38 @@ final class UrlSelectorImpl implements UrlSelector {
      */
     static UrlSelectorImpl createWithFailedUrlCooldown(
             Collection<String> baseUrls, boolean reshuffle, Duration failedUrlCooldown) {
+        return createWithFailedUrlCooldown(baseUrls, reshuffle, failedUrlCooldown, Optional.empty());
+    }
+
+    /**
+     * Similar to {@link #createWithFailedUrlCooldown(Collection, boolean, Duration)}, but additionally de-prioritizes
+     * URLs whose host is currently considered a latency outlier by the given {@link LatencyOutlierDetector}.
+     * Outliers are only selected if all other URLs are marked as failed.
+     */
+    static UrlSelectorImpl createWithFailedUrlCooldown(
+            Collection<String> baseUrls,
+            boolean reshuffle,
+            Duration failedUrlCooldown,
+            Optional<LatencyOutlierDetector> outlierDetector) {
+        return createWithFailedUrlCooldown(baseUrls, reshuffle, failedUrlCooldown, outlierDetector, Optional.empty());
+    }
+
+    /**
+     * Similar to {@link #createWithFailedUrlCooldown(Collection, boolean, Duration, Optional)}, but additionally
+     * prefers available URLs in the local zone of the given {@link ZoneAffinity} when selecting the next URL, and only
+     * selects URLs in other zones if no local URL is available.
+     */
+    static UrlSelectorImpl createWithFailedUrlCooldown(
+            Collection<String> baseUrls,
+            boolean reshuffle,
+            Duration failedUrlCooldown,
+            Optional<LatencyOutlierDetector> outlierDetector,
+            Optional<ZoneAffinity> zoneAffinity) {
+        return new UrlSelectorImpl(
+                canonicalUrls(baseUrls), reshuffle, failedUrlCooldown, outlierDetector, zoneAffinity);
+    }
+
+    private static ImmutableList<HttpUrl> canonicalUrls(Collection<String> baseUrls) {
         ImmutableSet.Builder<HttpUrl> canonicalUrls = ImmutableSet.builder();  // ImmutableSet maintains insert order
         baseUrls.forEach(url -> {
             HttpUrl httpUrl = HttpUrl.parse(switchWsToHttp(url));
@@ -88,7 +132,52 @@ final class UrlSelectorImpl implements UrlSelector {
                     "Base URLs must be 'canonical' and consist of schema, host, port, and path only: %s", url);
             canonicalUrls.add(canonicalUrl);
         });
-        return new UrlSelectorImpl(ImmutableList.copyOf(canonicalUrls.build()), reshuffle, failedUrlCooldown);
+        return ImmutableList.copyOf(canonicalUrls.build());
+    }
+
+    /**
+     * Replaces the base URLs of this selector with the given URLs, which must be canonical as for
+     * {@link #createWithFailedUrlCooldown}, e.g. when nodes of the service are added or removed. The base URLs are
+     * copied on write: selections that are in progress complete against the previous URLs, and all subsequent
+     * selections see the new URLs.
+     * <p>
+     * URLs that remain keep their failure state and latency history, and the current URL remains the current URL if it
+     * remains. The state of removed URLs is discarded. Calls that are in flight against removed URLs are not
+     * interrupted, but their retries and all new calls go to the remaining URLs, such that connections to removed
+     * nodes drain and are evicted from the connection pool once they have been idle for its keep-alive duration.
+     */
+    synchronized void updateBaseUrls(Collection<String> newBaseUrls) {
+        ImmutableList<HttpUrl> urls = canonicalUrls(newBaseUrls);
+        Preconditions.checkArgument(!urls.isEmpty(), "Must specify at least one URL");
+
+        List<HttpUrl> previousUrls = baseUrls.get();
+        HttpUrl currentBaseUrl = previousUrls.get(currentIndex(previousUrls));
+        Supplier<List<HttpUrl>> newSupplier = supplierFor(urls);
+        int newIndex = newSupplier.get().indexOf(currentBaseUrl);
+
+        failedUrls.policy().eviction().ifPresent(eviction -> eviction.setMaximum(urls.size()));
+        baseUrls = newSupplier;
+        currentUrl.set(Math.max(newIndex, 0));
+
+        List<HttpUrl> removedUrls = previousUrls.stream()
+                .filter(url -> !urls.contains(url))
+                .collect(Collectors.toList());
+        failedUrls.invalidateAll(removedUrls);
+        outlierDetector.ifPresent(detector -> detector.retainHosts(urls));
+        log.debug("Updated base URLs",
+                SafeArg.of("numBaseUrls", urls.size()),
+                SafeArg.of("numRemoved", removedUrls.size()),
+                SafeArg.of("numAdded", urls.size() - (previousUrls.size() - removedUrls.size())));
+    }
+
+    private Supplier<List<HttpUrl>> supplierFor(ImmutableList<HttpUrl> urls) {
+        if (reshuffle) {
+            return Suppliers.memoizeWithExpiration(
+                    () -> shuffle(urls), reshuffleIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            // deterministic for testing only
+            return () -> urls;
+        }
     }
 
     @VisibleForTesting
@@ -102,7 +191,7 @@ final class UrlSelectorImpl implements UrlSelector {
         return Collections.unmodifiableList(shuffledList);
     }
 
-    private static String switchWsToHttp(String url) {
+    static String switchWsToHttp(String url) {
         // Silently replace web socket URLs with HTTP URLs. See https://github.com/square/okhttp/issues/1652.
         if (url.regionMatches(true, 0, "ws:", 0, 3)) {
             return "http:" + url.substring(3);
@@ -115,15 +204,19 @@ final class UrlSelectorImpl implements UrlSelector {
 
     @Override
     public Optional<HttpUrl> redirectTo(HttpUrl current, String redirectBaseUrl) {
-        return redirectTo(current, HttpUrl.parse(redirectBaseUrl));
+        return redirectTo(baseUrls.get(), current, HttpUrl.parse(redirectBaseUrl));
     }
 
-    private Optional<HttpUrl> redirectTo(HttpUrl current, HttpUrl redirectBaseUrl) {
-        Optional<Integer> baseUrlIndex = indexFor(redirectBaseUrl);
-        baseUrlIndex.ifPresent(currentUrl::set);
+    /**
+     * Each selection reads the base URLs once and passes them on, such that it is consistent even if the base URLs are
+     * {@link #updateBaseUrls updated} or reshuffled concurrently.
+     */
+    private Optional<HttpUrl> redirectTo(List<HttpUrl> httpUrls, HttpUrl current, HttpUrl redirectBaseUrl) {
+        Optional<Integer> baseUrlIndex = indexFor(httpUrls, redirectBaseUrl);
+        baseUrlIndex.ifPresent(index -> setCurrent(httpUrls, index));
 
         return baseUrlIndex
-                .map(baseUrls.get()::get)
+                .map(httpUrls::get)
                 .flatMap(baseUrl -> {
                     if (!isPathPrefixFor(baseUrl, current)) {
                         // The requested redirectBaseUrl has a path that is not compatible with
@@ -144,59 +237,99 @@ final class UrlSelectorImpl implements UrlSelector {
 
     @Override
     public Optional<HttpUrl> redirectToNext(HttpUrl existingUrl) {
+        List<HttpUrl> httpUrls = baseUrls.get();
         // if possible, determine the index of the passed in url (so we can be sure to return a url which is different)
-        Optional<Integer> existingUrlIndex = indexFor(existingUrl);
+        Optional<Integer> existingUrlIndex = indexFor(httpUrls, existingUrl);
 
-        int potentialNextIndex = existingUrlIndex.orElse(currentUrl.get());
+        int potentialNextIndex = existingUrlIndex.orElseGet(() -> currentIndex(httpUrls));
 
-        Optional<HttpUrl> nextUrl = getNext(potentialNextIndex);
+        Optional<HttpUrl> nextUrl = getNext(httpUrls, potentialNextIndex);
         if (nextUrl.isPresent()) {
-            return redirectTo(existingUrl, nextUrl.get());
+            return redirectTo(httpUrls, existingUrl, nextUrl.get());
         }
 
         // No healthy URLs remain; re-balance across any specified nodes
-        List<HttpUrl> httpUrls = baseUrls.get();
-        return redirectTo(existingUrl,
-                httpUrls.get((existingUrlIndex.orElse(currentUrl.get()) + 1) % httpUrls.size()));
+        return redirectTo(httpUrls, existingUrl, httpUrls.get((potentialNextIndex + 1) % httpUrls.size()));
     }
 
     @Override
     public Optional<HttpUrl> redirectToCurrent(HttpUrl current) {
-        return redirectTo(current, baseUrls.get().get(currentUrl.get()));
+        List<HttpUrl> httpUrls = baseUrls.get();
+        int currentIndex = currentIndex(httpUrls);
+        HttpUrl currentBaseUrl = httpUrls.get(currentIndex);
+        if (isOutlier(currentBaseUrl)) {
+            // Move away from a slow node if there is a healthy alternative
+            Optional<HttpUrl> nextUrl = getNext(httpUrls, currentIndex, this::isHealthy);
+            if (nextUrl.isPresent()) {
+                return redirectTo(httpUrls, current, nextUrl.get());
+            }
+        }
+        return redirectTo(httpUrls, current, currentBaseUrl);
     }
 
     @Override
     public Optional<HttpUrl> redirectToNextRoundRobin(HttpUrl current) {
-        Optional<HttpUrl> nextUrl = getNext(currentUrl.get());
+        List<HttpUrl> httpUrls = baseUrls.get();
+        Optional<HttpUrl> nextUrl = getNext(httpUrls, currentIndex(httpUrls));
         if (nextUrl.isPresent()) {
-            return redirectTo(current, nextUrl.get());
+            return redirectTo(httpUrls, current, nextUrl.get());
         }
 
-        List<HttpUrl> httpUrls = baseUrls.get();
-        return redirectTo(current, httpUrls.get((currentUrl.get() + 1) % httpUrls.size()));
+        return redirectTo(httpUrls, current, httpUrls.get((currentIndex(httpUrls) + 1) % httpUrls.size()));
     }
 
     @Override
     public void markAsFailed(HttpUrl failedUrl) {
         if (useFailedUrlCache) {
-            Optional<Integer> indexForFailedUrl = indexFor(failedUrl);
+            List<HttpUrl> httpUrls = baseUrls.get();
+            Optional<Integer> indexForFailedUrl = indexFor(httpUrls, failedUrl);
             indexForFailedUrl.ifPresent(index ->
-                    failedUrls.put(baseUrls.get().get(index), UrlAvailability.FAILED)
+                    failedUrls.put(httpUrls.get(index), UrlAvailability.FAILED)
             );
         }
     }
 
-    /** Get the next URL in {@code baseUrls}, after the supplied index, that has not been marked as failed. */
-    private Optional<HttpUrl> getNext(int startIndex) {
+    /**
+     * Get the next URL in {@code baseUrls}, after the supplied index, that has not been marked as failed. URLs that are
+     * latency outliers are only returned if no other URL is available.
+     */
+    private Optional<HttpUrl> getNext(List<HttpUrl> httpUrls, int startIndex) {
+        if (zoneAffinity.isPresent()) {
+            Optional<HttpUrl> zoneUrl = getNextByZone(httpUrls, startIndex, zoneAffinity.get());
+            if (zoneUrl.isPresent()) {
+                return zoneUrl;
+            }
+        }
+        Optional<HttpUrl> healthyUrl = getNext(httpUrls, startIndex, this::isHealthy);
+        if (healthyUrl.isPresent()) {
+            return healthyUrl;
+        }
+        return getNext(httpUrls, startIndex, url -> !isFailed(url));
+    }
+
+    /**
+     * Get the next healthy URL in the local zone that is not overloaded or, if there is none, the next healthy URL in
+     * another zone.
+     */
+    private Optional<HttpUrl> getNextByZone(List<HttpUrl> httpUrls, int startIndex, ZoneAffinity zones) {
+        Optional<HttpUrl> localUrl = getNext(httpUrls, startIndex,
+                url -> zones.isLocal(url) && !zones.isOverloaded(url) && isHealthy(url));
+        if (localUrl.isPresent()) {
+            return localUrl;
+        }
+        Optional<HttpUrl> remoteUrl = getNext(httpUrls, startIndex, url -> !zones.isLocal(url) && isHealthy(url));
+        remoteUrl.ifPresent(unused -> zones.markSpillover());
+        return remoteUrl;
+    }
+
+    /** Get the next URL in {@code baseUrls}, after the supplied index, that matches the given predicate. */
+    private static Optional<HttpUrl> getNext(List<HttpUrl> httpUrls, int startIndex, Predicate<HttpUrl> predicate) {
         int numAttempts = 0;
         int index = startIndex;
-        List<HttpUrl> httpUrls = baseUrls.get();
 
-        // Find the next URL that is not marked as failed
         while (numAttempts < httpUrls.size()) {
             index = (index + 1) % httpUrls.size();
-            UrlAvailability isFailed = failedUrls.getIfPresent(httpUrls.get(index));
-            if (isFailed == null) {
+            if (predicate.test(httpUrls.get(index))) {
                 return Optional.of(httpUrls.get(index));
             }
             numAttempts++;
@@ -205,9 +338,44 @@ final class UrlSelectorImpl implements UrlSelector {
         return Optional.empty();
     }
 
-    private Optional<Integer> indexFor(HttpUrl url) {
+    private boolean isHealthy(HttpUrl baseUrl) {
+        return !isFailed(baseUrl) && !isOutlier(baseUrl);
+    }
+
+    private boolean isFailed(HttpUrl baseUrl) {
+        return failedUrls.getIfPresent(baseUrl) != null;
+    }
+
+    private boolean isOutlier(HttpUrl baseUrl) {
+        return outlierDetector.isPresent() && outlierDetector.get().isOutlier(baseUrl);
+    }
+
+    /**
+     * Makes the URL at the given index of the given base URLs the current URL. If the base URLs were updated since
+     * they were read, the index is translated to the updated base URLs, and ignored if they no longer contain the URL.
+     */
+    private void setCurrent(List<HttpUrl> httpUrls, int index) {
+        List<HttpUrl> latestUrls = baseUrls.get();
+        if (latestUrls == httpUrls) {
+            currentUrl.set(index);
+        } else {
+            int latestIndex = latestUrls.indexOf(httpUrls.get(index));
+            if (latestIndex >= 0) {
+                currentUrl.set(latestIndex);
+            }
+        }
+    }
+
+    /**
+     * The index of the current URL in the given base URLs. The modulo guards against the current URL being set
+     * against larger base URLs than the given ones, which are about to be replaced.
+     */
+    private int currentIndex(List<HttpUrl> httpUrls) {
+        return currentUrl.get() % httpUrls.size();
+    }
+
+    private static Optional<Integer> indexFor(List<HttpUrl> httpUrls, HttpUrl url) {
         HttpUrl canonicalUrl = canonicalize(url);
-        List<HttpUrl> httpUrls = baseUrls.get();
         for (int i = 0; i < httpUrls.size(); ++i) {
             if (isBaseUrlFor(httpUrls.get(i), canonicalUrl)) {
                 return Optional.of(i);
@@ -0,0 +1,179 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import com.codahale.metrics.Meter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * The zone information that {@link UrlSelectorImpl} uses to prefer nodes in the local zone for
+ * {@link com.palantir.conjure.java.client.config.NodeSelectionStrategy#PREFER_LOCAL_ZONE}. As an interceptor, it
+ * counts the requests that await a response per node, which marks local nodes as overloaded once they reach
+ * {@link ClientConfiguration#zoneSpilloverInFlightRequests}, and records the requests per zone in the
+ * {@code client.zone.requests} meter of the service. Selections of nodes in other zones are recorded in the
+ * {@code client.zone.spillover} meter.
+ */
+final class ZoneAffinity implements Interceptor {
+
+    static final String REQUESTS_METRIC_NAME = "client.zone.requests";
+    static final String SPILLOVER_METRIC_NAME = "client.zone.spillover";
+
+    private static final String ZONE_TAG = "zone";
+    private static final String UNKNOWN_ZONE = "unknown";
+
+    private final ConcurrentMap<HostAndPort, AtomicInteger> inFlightRequests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Meter> requestsByZone = new ConcurrentHashMap<>();
+    private final TaggedMetricRegistry registry;
+    private final String serviceName;
+    private final Meter spillover;
+    private volatile Zones zones;
+
+    private ZoneAffinity(TaggedMetricRegistry registry, String serviceName, Zones zones) {
+        this.registry = registry;
+        this.serviceName = serviceName;
+        this.spillover = registry.meter(MetricName.builder()
+                .safeName(SPILLOVER_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .build());
+        this.zones = zones;
+    }
+
+    static ZoneAffinity create(ClientConfiguration config, Class<?> serviceClass) {
+        return new ZoneAffinity(config.taggedMetricRegistry(), serviceClass.getSimpleName(), Zones.of(config));
+    }
+
+    /**
+     * Replaces the zones of the nodes, the local zone and the spillover threshold with the given configuration, and
+     * drops the request counts of nodes and the meters of zones that are no longer configured.
+     */
+    void update(ClientConfiguration config) {
+        Zones newZones = Zones.of(config);
+        zones = newZones;
+
+        Set<HostAndPort> hosts = new HashSet<>();
+        for (String uri : config.uris()) {
+            HttpUrl url = HttpUrl.parse(UrlSelectorImpl.switchWsToHttp(uri));
+            if (url != null) {
+                hosts.add(hostOf(url));
+            }
+        }
+        // counts of removed nodes that still await responses are dropped once the last response arrived
+        inFlightRequests.entrySet().removeIf(entry -> !hosts.contains(entry.getKey()) && entry.getValue().get() == 0);
+
+        Set<String> zoneNames = new HashSet<>(newZones.zoneByHost.values());
+        if (!newZones.zoneByHost.keySet().containsAll(hosts)) {
+            zoneNames.add(UNKNOWN_ZONE);
+        }
+        requestsByZone.keySet().removeIf(zone -> {
+            if (zoneNames.contains(zone)) {
+                return false;
+            }
+            registry.remove(requestsMetricName(zone));
+            return true;
+        });
+    }
+
+    boolean isLocal(HttpUrl url) {
+        Zones current = zones;
+        return current.localZone.equals(current.zoneByHost.get(hostOf(url)));
+    }
+
+    boolean isOverloaded(HttpUrl url) {
+        int threshold = zones.spilloverInFlightRequests;
+        if (threshold <= 0) {
+            return false;
+        }
+        AtomicInteger inFlight = inFlightRequests.get(hostOf(url));
+        return inFlight != null && inFlight.get() >= threshold;
+    }
+
+    void markSpillover() {
+        spillover.mark();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HostAndPort host = hostOf(chain.request().url());
+        requestsByZone.computeIfAbsent(zones.zoneByHost.getOrDefault(host, UNKNOWN_ZONE), this::newRequestsMeter)
+                .mark();
+
+        AtomicInteger inFlight = inFlightRequests.computeIfAbsent(host, unused -> new AtomicInteger());
+        inFlight.incrementAndGet();
+        try {
+            return chain.proceed(chain.request());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private Meter newRequestsMeter(String zone) {
+        return registry.meter(requestsMetricName(zone));
+    }
+
+    private MetricName requestsMetricName(String zone) {
+        return MetricName.builder()
+                .safeName(REQUESTS_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, serviceName)
+                .putSafeTags(ZONE_TAG, zone)
+                .build();
+    }
+
+    private static HostAndPort hostOf(HttpUrl url) {
+        return HostAndPort.fromParts(url.host(), url.port());
+    }
+
+    private static final class Zones {
+        private final Map<HostAndPort, String> zoneByHost;
+        private final String localZone;
+        private final int spilloverInFlightRequests;
+
+        private Zones(Map<HostAndPort, String> zoneByHost, String localZone, int spilloverInFlightRequests) {
+            this.zoneByHost = zoneByHost;
+            this.localZone = localZone;
+            this.spilloverInFlightRequests = spilloverInFlightRequests;
+        }
+
+        static Zones of(ClientConfiguration config) {
+            Map<HostAndPort, String> zoneByHost = new HashMap<>();
+            config.uriZones().forEach((uri, zone) -> {
+                HttpUrl url = HttpUrl.parse(UrlSelectorImpl.switchWsToHttp(uri));
+                if (url != null) {
+                    zoneByHost.put(hostOf(url), zone);
+                }
+            });
+            return new Zones(
+                    ImmutableMap.copyOf(zoneByHost),
+                    config.localZone().orElse(""),
+                    config.zoneSpilloverInFlightRequests());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import java.io.IOException;
+import java.util.Map;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.Test;
+
+public final class BufferedRequestBodyTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final ObjectMapper MAPPER = ObjectMappers.newClientObjectMapper();
+
+    @Test
+    public void testWritesSerializedValueRepeatedly() throws IOException {
+        Map<String, String> value = ImmutableMap.of("key", Strings.repeat("value", 10_000));
+        byte[] expected = MAPPER.writeValueAsBytes(value);
+
+        BufferedRequestBody.Writer writer = BufferedRequestBody.writer(MAPPER.writer());
+        for (int i = 0; i < 2; i++) {
+            BufferedRequestBody body = writer.write(JSON, value);
+            assertThat(body.contentType()).isEqualTo(JSON);
+            assertThat(body.contentLength()).isEqualTo(expected.length);
+            for (int j = 0; j < 3; j++) {
+                Buffer sink = new Buffer();
+                body.writeTo(sink);
+                assertThat(sink.readByteArray()).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void testHoldsBodiesInArraysUnlessRecentBodiesOfTheTypeWereLarge() throws IOException {
+        BufferedRequestBody.Writer writer = BufferedRequestBody.writer(MAPPER.writer());
+        String small = "value";
+        String large = Strings.repeat("value", 2 * BufferedRequestBody.MAX_ARRAY_BYTES / 5);
+
+        assertThat(writer.write(JSON, small).byteArray()).hasValue(MAPPER.writeValueAsBytes(small));
+        assertThat(writer.write(JSON, large).byteArray()).isPresent();
+        assertThat(writer.write(JSON, small).byteArray()).isEmpty();
+
+        int bodies = 0;
+        while (!writer.write(JSON, small).byteArray().isPresent()) {
+            bodies++;
+        }
+        assertThat(bodies).isBetween(1, 10);
+    }
+
+    @Test
+    public void testSharesContentAcrossContentTypes() throws IOException {
+        BufferedRequestBody body = BufferedRequestBody.writer(MAPPER.writer()).write(null, "value");
+        BufferedRequestBody json = body.withContentType(JSON);
+
+        Buffer sink = new Buffer();
+        json.writeTo(sink);
+        assertThat(body.contentType()).isNull();
+        assertThat(json.contentType()).isEqualTo(JSON);
+        assertThat(sink.readUtf8()).isEqualTo("\"value\"");
+    }
+}
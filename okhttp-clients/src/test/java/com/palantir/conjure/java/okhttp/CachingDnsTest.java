@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public final class CachingDnsTest {
+
+    private static final InetAddress ADDRESS_1 = address(1);
+    private static final InetAddress ADDRESS_2 = address(2);
+    private static final InetAddress ADDRESS_3 = address(3);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicReference<List<InetAddress>> resolved = new AtomicReference<>(ImmutableList.of(ADDRESS_1));
+    private final Timer timer = new Timer();
+    private final CachingDns dns = new CachingDns(hostname -> {
+        lookups.incrementAndGet();
+        if (resolved.get() == null) {
+            throw new UnknownHostException(hostname);
+        }
+        return resolved.get();
+    }, timer, Runnable::run, nanos::get);
+
+    @Test
+    public void testCachesLookups() throws UnknownHostException {
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1);
+
+        assertThat(lookups).hasValue(1);
+        assertThat(timer.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testServesStaleAddressesWhileRefreshing() throws UnknownHostException {
+        dns.lookup("host");
+        resolved.set(ImmutableList.of(ADDRESS_2));
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_2);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    public void testServesStaleAddressesIfRefreshFails() throws UnknownHostException {
+        dns.lookup("host");
+        resolved.set(null);
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1);
+    }
+
+    @Test
+    public void testPropagatesUnknownHost() {
+        resolved.set(null);
+
+        assertThatThrownBy(() -> dns.lookup("host")).isInstanceOf(UnknownHostException.class);
+        resolved.set(ImmutableList.of());
+        assertThatThrownBy(() -> dns.lookup("host")).isInstanceOf(UnknownHostException.class);
+    }
+
+    @Test
+    public void testSpreadsLookupsAcrossAddresses() throws UnknownHostException {
+        resolved.set(ImmutableList.of(ADDRESS_1, ADDRESS_2, ADDRESS_3));
+
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1, ADDRESS_2, ADDRESS_3);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_2, ADDRESS_3, ADDRESS_1);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_3, ADDRESS_1, ADDRESS_2);
+    }
+
+    @Test
+    public void testDemotesAddressesThatFailedToConnect() throws UnknownHostException {
+        resolved.set(ImmutableList.of(ADDRESS_1, ADDRESS_2, ADDRESS_3));
+        InetSocketAddress socketAddress = new InetSocketAddress(ADDRESS_1, 443);
+        dns.connectionEventListener().connectFailed(null, socketAddress, Proxy.NO_PROXY, null, new IOException());
+
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_2, ADDRESS_3, ADDRESS_1);
+
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_2, ADDRESS_3, ADDRESS_1);
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_3, ADDRESS_1, ADDRESS_2);
+    }
+
+    @Test
+    public void testSuccessfulConnectRestoresAddress() throws UnknownHostException {
+        resolved.set(ImmutableList.of(ADDRESS_1, ADDRESS_2));
+        InetSocketAddress socketAddress = new InetSocketAddress(ADDRESS_1, 443);
+        dns.connectionEventListener().connectFailed(null, socketAddress, Proxy.NO_PROXY, null, new IOException());
+        dns.connectionEventListener().connectEnd(null, socketAddress, Proxy.NO_PROXY, null);
+
+        assertThat(dns.lookup("host")).containsExactly(ADDRESS_1, ADDRESS_2);
+    }
+
+    private static InetAddress address(int lastByte) {
+        try {
+            return InetAddress.getByAddress(new byte[] {10, 0, 0, (byte) lastByte});
+        } catch (UnknownHostException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
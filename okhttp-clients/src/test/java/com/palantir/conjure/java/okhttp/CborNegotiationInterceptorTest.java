@@ -0,0 +1,61 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+public final class CborNegotiationInterceptorTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(CborNegotiationInterceptor.INSTANCE)
+            .build();
+
+    @Test
+    public void testPrefersCborForJsonRequests() throws Exception {
+        assertThat(sentAccept("application/json")).isEqualTo("application/cbor, application/json;q=0.9");
+    }
+
+    @Test
+    public void testLeavesOtherRequestsUnchanged() throws Exception {
+        assertThat(sentAccept("application/octet-stream")).isEqualTo("application/octet-stream");
+        assertThat(sentAccept("text/plain, application/json")).isEqualTo("text/plain, application/json");
+        assertThat(sentAccept(null)).isNull();
+    }
+
+    private String sentAccept(String accept) throws IOException, InterruptedException {
+        server.enqueue(new MockResponse());
+        Request.Builder request = new Request.Builder().url(server.url("/"));
+        if (accept != null) {
+            request.header("Accept", accept);
+        }
+        try (Response response = client.newCall(request.build()).execute()) {
+            assertThat(response.code()).isEqualTo(200);
+        }
+        return server.takeRequest().getHeader("Accept");
+    }
+}
@@ -18,6 +18,7 @@ package com.palantir.conjure.java.okhttp;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.concurrency.limits.Limit;
@@ -28,6 +29,7 @@ import java.time.Instant;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
 import org.junit.Test;
 
 public final class DefaultConcurrencyLimitersTest {
@@ -75,6 +77,23 @@ public final class DefaultConcurrencyLimitersTest {
         }
     }
 
+    @Test
+    public void testRetainHostsDiscardsLimitersOfRemovedHosts() {
+        ConcurrencyLimiters.Key retained = ImmutableKey.builder().hostname("retained").build();
+        ConcurrencyLimiters.Key removed = ImmutableKey.builder()
+                .hostname("removed")
+                .method("GET")
+                .pathTemplate("/foo")
+                .build();
+        ConcurrencyLimiters.ConcurrencyLimiter retainedLimiter = limiters.acquireLimiterInternal(retained);
+        ConcurrencyLimiters.ConcurrencyLimiter removedLimiter = limiters.acquireLimiterInternal(removed);
+
+        limiters.retainHosts(ImmutableList.of(HttpUrl.get("https://retained:8443/api")));
+
+        assertThat(limiters.acquireLimiterInternal(retained)).isSameAs(retainedLimiter);
+        assertThat(limiters.acquireLimiterInternal(removed)).isNotSameAs(removedLimiter);
+    }
+
     private Thread exhaust() {
         Thread thread = new Thread(() -> {
             while (true) {
@@ -0,0 +1,117 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class FileBodiesTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(TransferMetricsInterceptor.create(registry, FileBodiesTest.class))
+            .build();
+    private final byte[] bytes = randomBytes(3 * 1024 * 1024 + 17);
+
+    @Test
+    public void testUploadsFile() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, bytes);
+        server.enqueue(new MockResponse());
+
+        Request request = new Request.Builder().url(server.url("/")).post(FileBodies.requestBody(file)).build();
+        client.newCall(request).execute().close();
+
+        RecordedRequest recorded = server.takeRequest();
+        assertThat(recorded.getHeader("Content-Type")).isEqualTo("application/octet-stream");
+        assertThat(recorded.getHeader("Content-Length")).isEqualTo(Integer.toString(bytes.length));
+        assertThat(recorded.getBody().readByteArray()).isEqualTo(bytes);
+        assertThat(meteredBytes("upload")).isEqualTo(bytes.length);
+    }
+
+    @Test
+    public void testDownloadsFile() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, new byte[] {1, 2, 3});
+        try (Buffer body = new Buffer()) {
+            body.write(bytes);
+            server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream").setBody(body));
+        }
+
+        Response response = client.newCall(new Request.Builder().url(server.url("/")).build()).execute();
+
+        assertThat(FileBodies.writeTo(response.body(), file)).isEqualTo(bytes.length);
+        assertThat(Files.readAllBytes(file)).isEqualTo(bytes);
+        assertThat(meteredBytes("download")).isEqualTo(bytes.length);
+    }
+
+    @Test
+    public void testDownloadsEmptyBodyToTempFile() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream"));
+
+        Response response = client.newCall(new Request.Builder().url(server.url("/")).build()).execute();
+        Path file = FileBodies.writeToTempFile(response.body());
+
+        try {
+            assertThat(Files.size(file)).isEqualTo(0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDoesNotMeterNonBinaryBodies() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{}"));
+
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/")).build()).execute()) {
+            assertThat(response.body().string()).isEqualTo("{}");
+        }
+        assertThat(meteredBytes("download")).isEqualTo(0);
+    }
+
+    private long meteredBytes(String direction) {
+        return registry.meter(TransferMetricsInterceptor.metricName(FileBodiesTest.class.getSimpleName(), direction))
+                .getCount();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] result = new byte[size];
+        new Random(0).nextBytes(result);
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import org.junit.Test;
+
+public final class InstrumentedEventListenerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+    private final EventListener connectListener = mock(EventListener.class);
+    private final EventListener.Factory factory =
+            InstrumentedEventListener.factory(registry, "service", connectListener, nanos::get);
+    private final Request request = new Request.Builder()
+            .url("http://host:1234/api")
+            .tag(InstrumentedEventListener.ListenerTag.class, new InstrumentedEventListener.ListenerTag())
+            .build();
+    private final Call call = new OkHttpClient().newCall(request);
+    private final EventListener listener = factory.create(call);
+    private final InetSocketAddress address = InetSocketAddress.createUnresolved("host", 1234);
+    private final Connection connection = mock(Connection.class);
+
+    @Test
+    public void testRecordsPhasesOfCallOnNewConnection() throws IOException {
+        listener.callStart(call);
+        advanceMillis(1);
+        dispatch();
+        listener.dnsStart(call, "host");
+        advanceMillis(2);
+        listener.dnsEnd(call, "host", null);
+        listener.connectStart(call, address, Proxy.NO_PROXY);
+        advanceMillis(3);
+        listener.connectEnd(call, address, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+        listener.connectionAcquired(call, connection);
+        listener.requestHeadersStart(call);
+        advanceMillis(4);
+        listener.requestHeadersEnd(call, request);
+        advanceMillis(5);
+        listener.responseHeadersStart(call);
+        listener.responseBodyStart(call);
+        advanceMillis(6);
+        listener.responseBodyEnd(call, 10);
+        listener.callEnd(call);
+
+        assertRecorded("queued", 1);
+        assertRecorded("dns", 2);
+        assertRecorded("connect", 3);
+        assertRecorded("connection-acquire", 5);
+        assertRecorded("write", 4);
+        assertRecorded("time-to-first-byte", 5);
+        assertRecorded("body-read", 6);
+        assertThat(connections("new").getCount()).isEqualTo(1);
+        assertThat(connections("reused").getCount()).isEqualTo(0);
+        verify(connectListener).connectEnd(call, address, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+    }
+
+    @Test
+    public void testRecordsReusedConnection() throws IOException {
+        listener.callStart(call);
+        dispatch();
+        advanceMillis(1);
+        listener.connectionAcquired(call, connection);
+
+        assertRecorded("connection-acquire", 1);
+        assertThat(connections("new").getCount()).isEqualTo(0);
+        assertThat(connections("reused").getCount()).isEqualTo(1);
+        assertThat(phase("dns").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDoesNotRecordQueuedTimeWithoutTag() throws IOException {
+        Request untagged = new Request.Builder().url("http://host:1234/api").build();
+        Call untaggedCall = new OkHttpClient().newCall(untagged);
+        factory.create(untaggedCall).callStart(untaggedCall);
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(untagged);
+        InstrumentedEventListener.DISPATCH_INTERCEPTOR.intercept(chain);
+
+        assertThat(phase("queued").getCount()).isEqualTo(0);
+    }
+
+    private void dispatch() throws IOException {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        InstrumentedEventListener.DISPATCH_INTERCEPTOR.intercept(chain);
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private void assertRecorded(String phase, long millis) {
+        Timer timer = phase(phase);
+        assertThat(timer.getCount()).describedAs(phase).isEqualTo(1);
+        assertThat(timer.getSnapshot().getMax()).describedAs(phase).isEqualTo(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private Timer phase(String phase) {
+        return registry.timer(MetricName.builder()
+                .safeName(InstrumentedEventListener.PHASE_METRIC_PREFIX + phase)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "service")
+                .putSafeTags(InstrumentedEventListener.HOSTNAME_TAG, "host")
+                .build());
+    }
+
+    private Meter connections(String type) {
+        return registry.meter(MetricName.builder()
+                .safeName(InstrumentedEventListener.CONNECTION_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "service")
+                .putSafeTags(InstrumentedEventListener.HOSTNAME_TAG, "host")
+                .putSafeTags("type", type)
+                .build());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+public final class LatencyOutlierDetectorTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final LatencyOutlierDetector detector =
+            new LatencyOutlierDetector(new DefaultTaggedMetricRegistry(), "service", nanos::get);
+
+    @Test
+    public void testEjectsSlowHost() {
+        recordSamples("fast1", 10);
+        recordSamples("fast2", 12);
+        recordSamples("slow", 500);
+
+        detector.evaluate();
+
+        assertThat(detector.isOutlier(url("slow"))).isTrue();
+        assertThat(detector.isOutlier(url("fast1"))).isFalse();
+        assertThat(detector.isOutlier(url("fast2"))).isFalse();
+    }
+
+    @Test
+    public void testDoesNotEjectWithoutEnoughSamples() {
+        recordSamples("fast", 10);
+        detector.record("service", "slow", 80, 200, TimeUnit.MILLISECONDS.toMicros(500));
+
+        detector.evaluate();
+
+        assertThat(detector.isOutlier(url("slow"))).isFalse();
+    }
+
+    @Test
+    public void testDoesNotEjectUniformlySlowHosts() {
+        recordSamples("slow1", 500);
+        recordSamples("slow2", 510);
+        recordSamples("slow3", 520);
+
+        detector.evaluate();
+
+        assertThat(detector.isOutlier(url("slow1"))).isFalse();
+        assertThat(detector.isOutlier(url("slow2"))).isFalse();
+        assertThat(detector.isOutlier(url("slow3"))).isFalse();
+    }
+
+    @Test
+    public void testEjectionExpiresAndLatencyHistoryIsReset() {
+        recordSamples("fast1", 10);
+        recordSamples("fast2", 10);
+        recordSamples("slow", 500);
+        detector.evaluate();
+        assertThat(detector.isOutlier(url("slow"))).isTrue();
+
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        detector.evaluate();
+
+        assertThat(detector.isOutlier(url("slow"))).isFalse();
+    }
+
+    @Test
+    public void testEjectsAtMostHalfOfTheHosts() {
+        recordSamples("fast", 10);
+        recordSamples("slow1", 500);
+        detector.evaluate();
+        assertThat(detector.isOutlier(url("slow1"))).isTrue();
+
+        // A third host does not raise the budget of floor(3 * 0.5) = 1 ejected hosts
+        recordSamples("slow2", 500);
+        detector.evaluate();
+        assertThat(detector.isOutlier(url("slow2"))).isFalse();
+    }
+
+    @Test
+    public void testForgetsRemovedHosts() {
+        recordSamples("fast1", 10);
+        recordSamples("fast2", 12);
+        recordSamples("slow", 500);
+        detector.evaluate();
+        assertThat(detector.isOutlier(url("slow"))).isTrue();
+
+        detector.retainHosts(ImmutableList.of(url("fast1"), url("fast2")));
+
+        assertThat(detector.isOutlier(url("slow"))).isFalse();
+    }
+
+    private void recordSamples(String host, long latencyMillis) {
+        for (int i = 0; i < 100; i++) {
+            detector.record("service", host, 80, 200, TimeUnit.MILLISECONDS.toMicros(latencyMillis));
+        }
+    }
+
+    private static HttpUrl url(String host) {
+        return HttpUrl.parse("http://" + host + ":80/api");
+    }
+}
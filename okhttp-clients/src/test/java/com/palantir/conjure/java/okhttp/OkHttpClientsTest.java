@@ -23,16 +23,19 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.net.HostAndPort;
 import com.google.common.net.HttpHeaders;
 import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.conjure.java.api.config.service.ProxyConfiguration;
 import com.palantir.conjure.java.api.config.service.ServiceConfiguration;
 import com.palantir.conjure.java.api.config.ssl.SslConfiguration;
 import com.palantir.conjure.java.api.errors.RemoteException;
 import com.palantir.conjure.java.api.errors.SerializableError;
 import com.palantir.conjure.java.client.config.ClientConfiguration;
 import com.palantir.conjure.java.client.config.ClientConfigurations;
+import com.palantir.conjure.java.client.config.DnsResolver;
 import com.palantir.conjure.java.client.config.NodeSelectionStrategy;
 import com.palantir.logsafe.SafeArg;
 import com.palantir.logsafe.UnsafeArg;
@@ -40,8 +43,11 @@ import com.palantir.logsafe.exceptions.SafeIoException;
 import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
 import com.palantir.tritium.metrics.registry.MetricName;
 import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.List;
@@ -49,15 +55,24 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.CipherSuite;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dns;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.TlsVersion;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -288,6 +303,48 @@ public final class OkHttpClientsTest extends TestBase {
         assertThat(server.getRequestCount()).isEqualTo(3 /* original plus two retries */);
     }
 
+    @Test
+    public void retriesStreamedRequestBodiesThatFitTheReplayBuffer() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("pong"));
+
+        StreamingRequestBody body = StreamingRequestBody.of(
+                null, new ByteArrayInputStream("body".getBytes(StandardCharsets.UTF_8)), 10);
+        Call call = createRetryingClient(1).newCall(new Request.Builder().url(url).post(body).build());
+        assertThat(call.execute().body().string()).isEqualTo("pong");
+
+        server.takeRequest();
+        RecordedRequest retry = server.takeRequest();
+        assertThat(retry.getBody().readUtf8()).isEqualTo("body");
+        assertThat(retry.getHeader(HttpHeaders.TRANSFER_ENCODING)).isEqualTo("chunked");
+    }
+
+    @Test
+    public void doesNotRetryStreamedRequestBodiesThatExceedTheReplayBuffer() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("pong"));
+
+        StreamingRequestBody body = StreamingRequestBody.of(
+                null, new ByteArrayInputStream("body".getBytes(StandardCharsets.UTF_8)), 2);
+        Call call = createRetryingClient(1).newCall(new Request.Builder().url(url).post(body).build());
+        assertThatThrownBy(call::execute).isInstanceOf(IOException.class);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotResendStreamedRequestBodiesThatExceedTheReplayBufferAfterQosResponses() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("pong"));
+
+        StreamingRequestBody body = StreamingRequestBody.of(
+                null, new ByteArrayInputStream("body".getBytes(StandardCharsets.UTF_8)), 2);
+        Call call = createRetryingClient(1).newCall(new Request.Builder().url(url).post(body).build());
+        assertThatThrownBy(call::execute)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("its streamed body is too large to be sent again");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
     @Test
     public void handlesThrottle_obeysMaxNumRetriesAndEventuallyPropagatesQosException() throws Exception {
         Call call;
@@ -769,6 +826,387 @@ public final class OkHttpClientsTest extends TestBase {
         assertThat(server.takeRequest().getHeader(HttpHeaders.HOST)).isEqualTo("foo.com");
     }
 
+    @Test
+    public void warmsUpConnectionsInTheBackground() throws Exception {
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .taggedMetricRegistry(registry)
+                .warmUpConnectionsPerUri(2)
+                .build();
+
+        OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        assertThat(server.takeRequest(5, TimeUnit.SECONDS).getMethod()).isEqualTo("HEAD");
+        assertThat(server.takeRequest(5, TimeUnit.SECONDS).getMethod()).isEqualTo("HEAD");
+        assertThat(hostEventsSink.getMetrics()).isEmpty();
+        // Connections are established before the requests are sent, such that phase metrics would exist by now
+        assertThat(Collections2.transform(registry.getMetrics().keySet(), MetricName::safeName))
+                .noneMatch(name -> name.startsWith(InstrumentedEventListener.PHASE_METRIC_PREFIX));
+    }
+
+    @Test
+    public void supportsHttp2WithPriorKnowledge() throws Exception {
+        server.setProtocols(ImmutableList.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        server.enqueue(new MockResponse().setBody("foo"));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .http2(ClientConfiguration.Http2.PRIOR_KNOWLEDGE)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            assertThat(response.protocol()).isEqualTo(Protocol.H2_PRIOR_KNOWLEDGE);
+            assertThat(response.body().string()).isEqualTo("foo");
+        }
+    }
+
+    @Test
+    public void negotiatesHttp2ViaAlpn() throws Exception {
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(serveHttps())
+                .http2(ClientConfiguration.Http2.ENABLED)
+                .build();
+
+        assertThat(protocolOfResponse(config)).isEqualTo(Protocol.HTTP_2);
+    }
+
+    @Test
+    public void negotiatesHttp2ViaAlpnByDefault() throws Exception {
+        assertThat(protocolOfResponse(serveHttps())).isEqualTo(Protocol.HTTP_2);
+    }
+
+    @Test
+    public void usesHttp1IfHttp2IsDisabled() throws Exception {
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(serveHttps())
+                .http2(ClientConfiguration.Http2.DISABLED)
+                .build();
+
+        assertThat(protocolOfResponse(config)).isEqualTo(Protocol.HTTP_1_1);
+    }
+
+    @Test
+    public void http2PriorKnowledgeRequiresPlaintextUris() {
+        assertThatThrownBy(() -> ClientConfiguration.builder()
+                .from(createTestConfig("https://foo"))
+                .http2(ClientConfiguration.Http2.PRIOR_KNOWLEDGE)
+                .build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("If http2 is PRIOR_KNOWLEDGE then all uris must use the http scheme");
+    }
+
+    @Test
+    public void offersTls13AndTls12ByDefault() {
+        ConnectionSpec spec = OkHttpClients.createConnectionSpecs(createTestConfig(url)).get(0);
+
+        assertThat(spec.tlsVersions()).containsExactly(TlsVersion.TLS_1_3, TlsVersion.TLS_1_2);
+        assertThat(spec.cipherSuites()).contains(
+                CipherSuite.forJavaName("TLS_AES_128_GCM_SHA256"),
+                CipherSuite.forJavaName("TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256"));
+    }
+
+    @Test
+    public void offersOnlyTls12IfConfigured() {
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .tlsProtocols(ClientConfiguration.TlsProtocols.TLS_1_2)
+                .build();
+        ConnectionSpec spec = OkHttpClients.createConnectionSpecs(config).get(0);
+
+        assertThat(spec.tlsVersions()).containsExactly(TlsVersion.TLS_1_2);
+        assertThat(spec.cipherSuites()).doesNotContain(CipherSuite.forJavaName("TLS_AES_128_GCM_SHA256"));
+    }
+
+    @Test
+    public void offersExplicitlyConfiguredCipherSuites() {
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .addCipherSuites("TLS_AES_256_GCM_SHA384", "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384")
+                .build();
+        ConnectionSpec spec = OkHttpClients.createConnectionSpecs(config).get(0);
+
+        assertThat(spec.cipherSuites()).containsExactly(
+                CipherSuite.forJavaName("TLS_AES_256_GCM_SHA384"),
+                CipherSuite.forJavaName("TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"));
+    }
+
+    @Test
+    public void clientsWithTheSameDnsResolverShareDns() {
+        DnsResolver resolver = DnsResolver.SYSTEM::lookup;
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .dnsResolver(resolver)
+                .build();
+
+        Dns dns = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class).dns();
+
+        assertThat(OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class).dns()).isSameAs(dns);
+        assertThat(OkHttpClients.create(createTestConfig(url), AGENT, hostEventsSink, OkHttpClientsTest.class).dns())
+                .isSameAs(Dns.SYSTEM);
+    }
+
+    @Test
+    public void clientsWithDnsCachingShareDnsAcrossServices() {
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .enableDnsCaching(true)
+                .build();
+
+        Dns dns = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class).dns();
+
+        assertThat(dns).isInstanceOf(CachingDns.class);
+        assertThat(OkHttpClients.create(config, AGENT, hostEventsSink, CachingDnsTest.class).dns()).isSameAs(dns);
+        ClientConfiguration otherRegistry = ClientConfiguration.builder()
+                .from(config)
+                .taggedMetricRegistry(new DefaultTaggedMetricRegistry())
+                .build();
+        assertThat(OkHttpClients.create(otherRegistry, AGENT, hostEventsSink, OkHttpClientsTest.class).dns())
+                .isNotSameAs(dns);
+    }
+
+    @Test
+    public void doesNotRecordHostMetricsForCachedResponses() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("foo"));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .responseCacheMaxBytes(1024)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.newCall(new Request.Builder().url(url).build()).execute().body().string())
+                    .isEqualTo("foo");
+        }
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        HostMetrics metrics = Iterables.getOnlyElement(hostEventsSink.getMetrics());
+        assertThat(metrics.get2xx().getCount()).isEqualTo(1);
+    }
+
+    @Test(timeout = 10_000)
+    public void releasesConcurrencyLimitsOfCachedResponses() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("foo"));
+        server.enqueue(new MockResponse().setBody("bar"));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .responseCacheMaxBytes(1024)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        // more hits than the initial concurrency limit, each of which must release its permit
+        for (int i = 0; i < 25; i++) {
+            assertThat(client.newCall(new Request.Builder().url(url).build()).execute().body().string())
+                    .isEqualTo("foo");
+        }
+        assertThat(client.newCall(new Request.Builder().url(url + "/other").build()).execute().body().string())
+                .isEqualTo("bar");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void recordsTransferMetricsOnlyIfEnabled() throws Exception {
+        TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+        for (boolean enabled : new boolean[] {false, true}) {
+            server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream").setBody("bytes"));
+            ClientConfiguration config = ClientConfiguration.builder()
+                    .from(createTestConfig(url))
+                    .taggedMetricRegistry(registry)
+                    .enableTransferMetrics(enabled)
+                    .build();
+            OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+            assertThat(client.newCall(new Request.Builder().url(url).build()).execute().body().string())
+                    .isEqualTo("bytes");
+
+            assertThat(Collections2.transform(registry.getMetrics().keySet(), MetricName::safeName)
+                    .contains(TransferMetricsInterceptor.BYTES_METRIC_NAME)).isEqualTo(enabled);
+        }
+    }
+
+    @Test
+    public void coalescesIdenticalConcurrentRequests() throws Exception {
+        server.enqueue(new MockResponse().setBody("foo").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .enableRequestCoalescing(true)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        CompletableFuture<String> firstBody = new CompletableFuture<>();
+        client.newCall(new Request.Builder().url(url).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exception) {
+                firstBody.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                firstBody.complete(response.body().string());
+            }
+        });
+        server.takeRequest();  // the first request is in flight
+
+        Response second = client.newCall(new Request.Builder().url(url).build()).execute();
+
+        assertThat(second.body().string()).isEqualTo("foo");
+        assertThat(firstBody.get()).isEqualTo("foo");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void coalescedRequestsIssueOwnRequestIfInFlightRequestIsCancelled() throws Exception {
+        server.enqueue(new MockResponse().setBody("foo").setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("bar"));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .enableRequestCoalescing(true)
+                .maxNumRetries(0)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        Call first = client.newCall(new Request.Builder().url(url).build());
+        CompletableFuture<String> firstBody = enqueue(first);
+        server.takeRequest();  // the first request is in flight
+        CompletableFuture<String> secondBody = enqueue(client.newCall(new Request.Builder().url(url).build()));
+
+        first.cancel();
+
+        assertThat(secondBody.get(5, TimeUnit.SECONDS)).isEqualTo("bar");
+        assertThatThrownBy(firstBody::get).hasCauseInstanceOf(IOException.class);
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void coalescedRequestsHonourTheirOwnTimeout() throws Exception {
+        server.enqueue(new MockResponse().setBody("foo").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig(url))
+                .enableRequestCoalescing(true)
+                .build();
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        CompletableFuture<String> firstBody = enqueue(client.newCall(new Request.Builder().url(url).build()));
+        server.takeRequest();  // the first request is in flight
+        Call second = client.newCall(new Request.Builder().url(url).build());
+        second.timeout().timeout(10, TimeUnit.MILLISECONDS);
+
+        assertThatThrownBy(second::execute).isInstanceOf(InterruptedIOException.class);
+        assertThat(firstBody.get()).isEqualTo("foo");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    private static CompletableFuture<String> enqueue(Call call) {
+        CompletableFuture<String> body = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failedCall, IOException exception) {
+                body.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onResponse(Call succeededCall, Response response) throws IOException {
+                body.complete(response.body().string());
+            }
+        });
+        return body;
+    }
+
+    @Test
+    public void reconfigurableClientsShareInterceptorsWhenOnlyTimeoutsChange() {
+        ClientConfiguration config = createTestConfig(url);
+        Function<ClientConfiguration, OkHttpClient> clients =
+                OkHttpClients.reconfigurable(AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        OkHttpClient first = clients.apply(config);
+        OkHttpClient second = clients.apply(ClientConfiguration.builder()
+                .from(config)
+                .readTimeout(Duration.ofSeconds(7))
+                .build());
+        OkHttpClient third = clients.apply(ClientConfiguration.builder()
+                .from(config)
+                .enableCborNegotiation(true)
+                .build());
+
+        assertThat(second.readTimeoutMillis()).isEqualTo(7000);
+        assertThat(second.interceptors()).isEqualTo(first.interceptors());
+        assertThat(third.interceptors()).isNotEqualTo(first.interceptors());
+    }
+
+    @Test
+    public void reconfigurableClientsShareInterceptorsWhenOnlyTimeoutsOfServiceConfigurationsChange() {
+        ServiceConfiguration serviceConfig = ServiceConfiguration.builder()
+                .addUris(url)
+                .security(SslConfiguration.of(Paths.get("src/test/resources/trustStore.jks")))
+                .proxy(ProxyConfiguration.DIRECT)
+                .build();
+        Function<ClientConfiguration, OkHttpClient> clients =
+                OkHttpClients.reconfigurable(AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        OkHttpClient first = clients.apply(ClientConfigurations.of(serviceConfig));
+        OkHttpClient second = clients.apply(ClientConfigurations.of(ServiceConfiguration.builder()
+                .from(serviceConfig)
+                .readTimeout(Duration.ofSeconds(7))
+                .build()));
+
+        assertThat(second.readTimeoutMillis()).isEqualTo(7000);
+        assertThat(second.interceptors()).isEqualTo(first.interceptors());
+        assertThat(second.sslSocketFactory()).isSameAs(first.sslSocketFactory());
+    }
+
+    @Test
+    public void reconfigurableClientsUpdateUrisInPlace() throws Exception {
+        ClientConfiguration config = createTestConfig(url);
+        Function<ClientConfiguration, OkHttpClient> clients =
+                OkHttpClients.reconfigurable(AGENT, hostEventsSink, OkHttpClientsTest.class);
+
+        OkHttpClient first = clients.apply(config);
+        OkHttpClient second = clients.apply(ClientConfiguration.builder()
+                .from(config)
+                .uris(ImmutableList.of(url2))
+                .build());
+
+        server2.enqueue(new MockResponse().setBody("foo"));
+        server2.enqueue(new MockResponse().setBody("bar"));
+        Call secondCall = second.newCall(new Request.Builder().url(url + "/foo").build());
+        assertThat(secondCall.execute().body().string()).isEqualTo("foo");
+        // The previous client shares the URL selector and follows the new URIs, too
+        Call firstCall = first.newCall(new Request.Builder().url(url + "/bar").build());
+        assertThat(firstCall.execute().body().string()).isEqualTo("bar");
+        assertThat(server.getRequestCount()).isEqualTo(0);
+    }
+
+    /** Serves HTTP/2 and HTTP/1.1 over TLS and returns a configuration for a client that trusts the server. */
+    private ClientConfiguration serveHttps() {
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName("localhost")
+                .rsa2048()
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+        server.useHttps(serverCertificates.sslSocketFactory(), false);
+        server.setProtocols(ImmutableList.of(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        return ClientConfiguration.builder()
+                .from(createTestConfig("https://localhost:" + server.getPort()))
+                .sslSocketFactory(clientCertificates.sslSocketFactory())
+                .trustManager(clientCertificates.trustManager())
+                .build();
+    }
+
+    private Protocol protocolOfResponse(ClientConfiguration config) throws IOException {
+        server.enqueue(new MockResponse().setBody("foo"));
+        OkHttpClient client = OkHttpClients.create(config, AGENT, hostEventsSink, OkHttpClientsTest.class);
+        try (Response response = client.newCall(new Request.Builder().url(config.uris().get(0)).build()).execute()) {
+            assertThat(response.body().string()).isEqualTo("foo");
+            return response.protocol();
+        }
+    }
+
     private OkHttpClient createRetryingClient(int maxNumRetries) {
         return createRetryingClient(maxNumRetries, Duration.ofMillis(500));
     }
@@ -0,0 +1,145 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codahale.metrics.Meter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+public final class RequestCoalescerTest {
+
+    private static final Request GET = new Request.Builder().url("http://host/api").header("Authorization", "a").build();
+
+    private final Meter coalesced = new Meter();
+    private final RequestCoalescer coalescer = new RequestCoalescer(coalesced, 10);
+
+    @Test
+    public void testOnlyCoalescesIdempotentRequestsWithoutBody() {
+        assertThat(RequestCoalescer.isCoalescable(GET)).isTrue();
+        assertThat(RequestCoalescer.isCoalescable(GET.newBuilder().head().build())).isTrue();
+        assertThat(RequestCoalescer.isCoalescable(
+                GET.newBuilder().post(RequestBody.create(MediaType.parse("text/plain"), "body")).build())).isFalse();
+        assertThat(RequestCoalescer.isCoalescable(GET.newBuilder().delete().build())).isFalse();
+    }
+
+    @Test
+    public void testIdenticalRequestsFollowLeader() throws IOException {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(follower.isLeader()).isFalse();
+        assertThat(coalesced.getCount()).isEqualTo(1);
+
+        Response leaderResponse = leader.complete(response("foo"));
+
+        assertThat(leaderResponse.body().string()).isEqualTo("foo");
+        assertThat(follower.await(0).get().body().string()).isEqualTo("foo");
+        assertThat(coalescer.join(GET).isLeader()).isTrue();
+    }
+
+    @Test
+    public void testDifferentRequestsAreNotCoalesced() {
+        assertThat(coalescer.join(GET).isLeader()).isTrue();
+        assertThat(coalescer.join(GET.newBuilder().header("Authorization", "b").build()).isLeader()).isTrue();
+        assertThat(coalescer.join(GET.newBuilder().url("http://host/other").build()).isLeader()).isTrue();
+        assertThat(coalesced.getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFollowersIssueOwnRequestIfBodyIsTooLarge() throws IOException {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+
+        Response leaderResponse = leader.complete(response("more than ten bytes"));
+
+        assertThat(leaderResponse.body().string()).isEqualTo("more than ten bytes");
+        assertThat(follower.await(0)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void testFailuresArePropagatedToFollowers() {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+        SocketTimeoutException exception = new SocketTimeoutException();
+
+        leader.fail(exception);
+
+        assertThatThrownBy(() -> follower.await(0)).isSameAs(exception);
+        assertThat(coalescer.join(GET).isLeader()).isTrue();
+    }
+
+    @Test
+    public void testFollowersIssueOwnRequestIfLeaderIsAbandoned() throws IOException {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+
+        leader.abandon();
+
+        assertThat(follower.await(0)).isEqualTo(Optional.empty());
+        assertThat(coalescer.join(GET).isLeader()).isTrue();
+    }
+
+    @Test
+    public void testCancelledFollowerStopsWaitingWithoutAffectingOthers() throws IOException {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight cancelled = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+
+        cancelled.cancel();
+
+        assertThatThrownBy(() -> cancelled.await(0)).isInstanceOf(IOException.class).hasMessage("Canceled");
+        assertThat(leader.result().isDone()).isFalse();
+        leader.complete(response("foo"));
+        assertThat(follower.await(0).get().body().string()).isEqualTo("foo");
+    }
+
+    @Test
+    public void testFollowersWaitAtMostTheirTimeout() throws IOException {
+        RequestCoalescer.Flight leader = coalescer.join(GET);
+        RequestCoalescer.Flight follower = coalescer.join(GET);
+        RequestCoalescer.Flight other = coalescer.join(GET);
+
+        assertThatThrownBy(() -> follower.await(TimeUnit.MILLISECONDS.toNanos(10)))
+                .isInstanceOf(InterruptedIOException.class)
+                .hasMessage("timeout");
+        leader.complete(response("foo"));
+        assertThat(other.await(0).get().body().string()).isEqualTo("foo");
+    }
+
+    private static Response response(String body) {
+        return new Response.Builder()
+                .request(GET)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(MediaType.parse("text/plain"), body))
+                .build();
+    }
+}
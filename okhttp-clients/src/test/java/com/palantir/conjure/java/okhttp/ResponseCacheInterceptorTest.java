@@ -0,0 +1,184 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.base.Strings;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+public final class ResponseCacheInterceptorTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(new ResponseCacheInterceptor(1000, registry, "service", nanos::get))
+            .build();
+
+    @Test
+    public void testServesFreshResponsesFromCache() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=10").setBody("foo"));
+
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertThat(get("/api", "a")).isEqualTo("foo");
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(1);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRevalidatesStaleResponses() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=10")
+                .setHeader("ETag", "\"v1\"")
+                .setBody("foo"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("Cache-Control", "max-age=10"));
+
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        assertThat(get("/api", "a")).isEqualTo("foo");
+
+        server.takeRequest();
+        RecordedRequest conditional = server.takeRequest();
+        assertThat(conditional.getHeader("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(count("revalidated")).isEqualTo(1);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void testReplacesModifiedResponses() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\"")
+                .setBody("foo"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v2\"")
+                .setBody("bar"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        assertThat(get("/api", "a")).isEqualTo("bar");
+        assertThat(get("/api", "a")).isEqualTo("bar");
+
+        server.takeRequest();
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v2\"");
+    }
+
+    @Test
+    public void testCachesResponsesPerAuthorization() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=10").setBody("foo"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=10").setBody("bar"));
+
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        assertThat(get("/api", "b")).isEqualTo("bar");
+        assertThat(get("/api", "a")).isEqualTo("foo");
+
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDoesNotCacheUncacheableResponses() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store, max-age=10").setBody("foo"));
+        server.enqueue(new MockResponse().setBody("bar"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=10").setBody(Strings.repeat("x", 200)));
+        server.enqueue(new MockResponse().setBody("baz"));
+
+        assertThat(get("/api", "a")).isEqualTo("foo");
+        assertThat(get("/api", "a")).isEqualTo("bar");
+        assertThat(get("/api", "a")).hasSize(200);
+        assertThat(get("/api", "a")).isEqualTo("baz");
+
+        assertThat(server.getRequestCount()).isEqualTo(4);
+        assertThat(count("hit")).isEqualTo(0);
+    }
+
+    @Test
+    public void testServesResponsesOfOtherNodes() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=10").setBody("foo"));
+
+        assertThat(get(server.url("/api?q=1"), "a")).isEqualTo("foo");
+        assertThat(get(server.url("/api?q=1").newBuilder().host("127.0.0.1").build(), "a")).isEqualTo("foo");
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void testMatchesVaryAgainstRequestsBeforeLaterInterceptors() throws Exception {
+        OkHttpClient negotiatingClient = client.newBuilder()
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Accept", "application/cbor")
+                        .build()))
+                .build();
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=10")
+                .setHeader("Vary", "Accept")
+                .setBody("foo"));
+
+        for (int i = 0; i < 2; i++) {
+            try (Response response = negotiatingClient.newCall(new Request.Builder().url(server.url("/api")).build())
+                    .execute()) {
+                assertThat(response.body().string()).isEqualTo("foo");
+            }
+        }
+
+        assertThat(server.takeRequest().getHeader("Accept")).isEqualTo("application/cbor");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    private String get(String path, String authorization) throws IOException {
+        return get(server.url(path), authorization);
+    }
+
+    private String get(HttpUrl url, String authorization) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Authorization", authorization)
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertThat(response.code()).isEqualTo(200);
+            return response.body().string();
+        }
+    }
+
+    private long count(String result) {
+        return registry.meter(MetricName.builder()
+                .safeName(ResponseCacheInterceptor.CACHE_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "service")
+                .putSafeTags("result", result)
+                .build()).getCount();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.palantir.conjure.java.serialization.ObjectMappers;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public final class SerializerWarmerTest {
+
+    private final ObjectMapper mapper = ObjectMappers.newClientObjectMapper();
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+
+    @Test
+    public void testResolvesTypesAndRecordsWarmUpTime() throws Exception {
+        SerializerWarmer.warmUp(
+                mapper,
+                ImmutableList.of(Pojo.class, InputStream.class),
+                ImmutableList.of(Pojo.class, Map.class, void.class),
+                registry,
+                SerializerWarmerTest.class)
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(mapper.writeValueAsString(new Pojo())).isEqualTo("{\"value\":\"value\"}");
+        assertThat(registry.timer(MetricName.builder()
+                .safeName(SerializerWarmer.WARM_UP_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "SerializerWarmerTest")
+                .build()).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testResolvesTypesWithGivenLookups() throws Exception {
+        Set<Type> written = ConcurrentHashMap.newKeySet();
+        Set<Type> read = ConcurrentHashMap.newKeySet();
+        SerializerWarmer.warmUp(
+                written::add,
+                read::add,
+                ImmutableList.of(Pojo.class, InputStream.class),
+                ImmutableList.of(Pojo.class, Map.class, void.class),
+                registry,
+                SerializerWarmerTest.class)
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(written).containsExactly(Pojo.class);
+        assertThat(read).containsExactlyInAnyOrder(Pojo.class, Map.class);
+    }
+
+    public static final class Pojo {
+        public String getValue() {
+            return "value";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import okio.Buffer;
+import org.junit.Test;
+
+public final class StreamingRequestBodyTest {
+
+    @Test
+    public void testReplaysSmallBodiesFromMemory() throws IOException {
+        assertReplays(randomBytes(100), 1000);
+    }
+
+    @Test
+    public void testReplaysLargeBodiesFromDisk() throws IOException {
+        assertReplays(randomBytes(3 * StreamingRequestBody.IN_MEMORY_REPLAY_BYTES), 1024 * 1024);
+    }
+
+    @Test
+    public void testDoesNotReplayBodiesLargerThanReplayBuffer() throws IOException {
+        byte[] bytes = randomBytes(100);
+        StreamingRequestBody body = StreamingRequestBody.of(null, new ByteArrayInputStream(bytes), 99);
+        assertThat(StreamingRequestBody.isReplayable(body)).isTrue();
+
+        Buffer first = new Buffer();
+        body.writeTo(first);
+
+        assertThat(first.readByteArray()).isEqualTo(bytes);
+        assertThat(StreamingRequestBody.isReplayable(body)).isFalse();
+        assertThatThrownBy(() -> body.writeTo(new Buffer())).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testUsesChunkedTransferEncoding() {
+        StreamingRequestBody body = StreamingRequestBody.of(null, new ByteArrayInputStream(new byte[0]), 0);
+        assertThat(body.contentLength()).isEqualTo(-1);
+    }
+
+    private static void assertReplays(byte[] bytes, long maxReplayBytes) throws IOException {
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        try (StreamingRequestBody body = StreamingRequestBody.of(null, stream, maxReplayBytes)) {
+            Buffer first = new Buffer();
+            body.writeTo(first);
+            Buffer second = new Buffer();
+            body.writeTo(second);
+
+            assertThat(first.readByteArray()).isEqualTo(bytes);
+            assertThat(second.readByteArray()).isEqualTo(bytes);
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(0).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -20,8 +20,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.google.common.collect.ImmutableList;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.conjure.java.client.config.NodeSelectionStrategy;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 import org.junit.Test;
@@ -182,6 +189,129 @@ public final class UrlSelectorTest extends TestBase {
         assertThat(selector.redirectToNextRoundRobin(current)).contains(HttpUrl.parse("http://bar/a/b/path"));
     }
 
+    @Test
+    public void testRedirectToNextRoundRobin_skipsLatencyOutliers() {
+        LatencyOutlierDetector detector =
+                new LatencyOutlierDetector(new DefaultTaggedMetricRegistry(), "service", () -> 0L);
+        for (int i = 0; i < 100; i++) {
+            detector.record("service", "foo", 80, 200, TimeUnit.MILLISECONDS.toMicros(10));
+            detector.record("service", "bar", 80, 200, TimeUnit.MILLISECONDS.toMicros(10));
+            detector.record("service", "baz", 80, 200, TimeUnit.SECONDS.toMicros(1));
+        }
+        detector.evaluate();
+        UrlSelectorImpl selector = UrlSelectorImpl.createWithFailedUrlCooldown(
+                list("http://foo/a", "http://bar/a", "http://baz/a"), false, Duration.ZERO, Optional.of(detector));
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(HttpUrl.parse("http://bar/a/b/path"));
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(HttpUrl.parse("http://foo/a/b/path"));
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(HttpUrl.parse("http://bar/a/b/path"));
+    }
+
+    @Test
+    public void testRedirectToCurrent_movesAwayFromLatencyOutlier() {
+        LatencyOutlierDetector detector =
+                new LatencyOutlierDetector(new DefaultTaggedMetricRegistry(), "service", () -> 0L);
+        for (int i = 0; i < 100; i++) {
+            detector.record("service", "foo", 80, 200, TimeUnit.SECONDS.toMicros(1));
+            detector.record("service", "bar", 80, 200, TimeUnit.MILLISECONDS.toMicros(10));
+        }
+        detector.evaluate();
+        UrlSelectorImpl selector = UrlSelectorImpl.createWithFailedUrlCooldown(
+                list("http://foo/a", "http://bar/a"), false, Duration.ZERO, Optional.of(detector));
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+
+        assertThat(selector.redirectToCurrent(current)).contains(HttpUrl.parse("http://bar/a/b/path"));
+        assertThat(selector.redirectToCurrent(current)).contains(HttpUrl.parse("http://bar/a/b/path"));
+    }
+
+    @Test
+    public void testUpdateBaseUrls_keepsCurrentUrlAndFailureState() {
+        UrlSelectorImpl selector = UrlSelectorImpl.createWithFailedUrlCooldown(
+                list("http://foo/a", "http://bar/a", "http://baz/a"), false, Duration.ofMinutes(1));
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+        selector.markAsFailed(parse("http://foo/a"));
+        assertThat(selector.redirectTo(current, "http://baz/a")).contains(parse("http://baz/a/b/path"));
+
+        selector.updateBaseUrls(list("http://baz/a", "http://qux/a", "http://foo/a"));
+
+        assertThat(selector.getBaseUrls())
+                .containsExactly(parse("http://baz/a"), parse("http://qux/a"), parse("http://foo/a"));
+        assertThat(selector.redirectToCurrent(current)).contains(parse("http://baz/a/b/path"));
+        // foo remains failed, so the next URL after qux is baz
+        assertThat(selector.redirectToNext(parse("http://qux/a/b/path"))).contains(parse("http://baz/a/b/path"));
+    }
+
+    @Test
+    public void testUpdateBaseUrls_movesToFirstUrlWhenCurrentUrlIsRemoved() {
+        UrlSelectorImpl selector = UrlSelectorImpl.create(list("http://foo/a", "http://bar/a", "http://baz/a"), false);
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+        assertThat(selector.redirectTo(current, "http://baz/a")).contains(parse("http://baz/a/b/path"));
+
+        selector.updateBaseUrls(list("http://qux/a"));
+
+        assertThat(selector.redirectToCurrent(current)).contains(parse("http://qux/a/b/path"));
+        assertThatThrownBy(() -> selector.updateBaseUrls(list()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Must specify at least one URL");
+    }
+
+    @Test
+    public void testUpdateBaseUrls_forgetsStateOfRemovedUrls() {
+        UrlSelectorImpl selector = UrlSelectorImpl.createWithFailedUrlCooldown(
+                list("http://foo/a", "http://bar/a"), false, Duration.ofMinutes(1));
+        selector.markAsFailed(parse("http://foo/a"));
+
+        selector.updateBaseUrls(list("http://bar/a"));
+        selector.updateBaseUrls(list("http://bar/a", "http://foo/a"));
+
+        // foo was removed in the meantime, so it is no longer considered failed when it comes back
+        assertThat(selector.redirectToNext(parse("http://bar/a/b/path"))).contains(parse("http://foo/a/b/path"));
+    }
+
+    @Test
+    public void testUpdateBaseUrls_redirectToRemovedUrlKeepsCurrentUrl() {
+        UrlSelectorImpl selector = UrlSelectorImpl.create(list("http://foo/a", "http://bar/a"), false);
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+
+        selector.updateBaseUrls(list("http://baz/a", "http://foo/a"));
+        // bar is no longer a base URL, so a redirect to it does not change the current URL
+        assertThat(selector.redirectTo(current, "http://bar/a")).isEmpty();
+        assertThat(selector.redirectToCurrent(current)).contains(parse("http://foo/a/b/path"));
+    }
+
+    @Test
+    public void testRedirectToNextRoundRobin_prefersLocalZone() {
+        TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+        ClientConfiguration config = ClientConfiguration.builder()
+                .from(createTestConfig("http://foo/a", "http://bar/a", "http://baz/a"))
+                .taggedMetricRegistry(registry)
+                .nodeSelectionStrategy(NodeSelectionStrategy.PREFER_LOCAL_ZONE)
+                .failedUrlCooldown(Duration.ofMinutes(1))
+                .putUriZones("http://foo/a", "zone-a")
+                .putUriZones("http://bar/a", "zone-b")
+                .putUriZones("http://baz/a", "zone-a")
+                .localZone("zone-a")
+                .build();
+        UrlSelectorImpl selector = UrlSelectorImpl.createWithFailedUrlCooldown(config.uris(), false,
+                config.failedUrlCooldown(), Optional.empty(),
+                Optional.of(ZoneAffinity.create(config, UrlSelectorTest.class)));
+        HttpUrl current = HttpUrl.parse("http://foo/a/b/path");
+
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(parse("http://baz/a/b/path"));
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(parse("http://foo/a/b/path"));
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(parse("http://baz/a/b/path"));
+
+        // Spills over to the other zone once no local node is available
+        selector.markAsFailed(parse("http://foo/a"));
+        selector.markAsFailed(parse("http://baz/a"));
+        assertThat(selector.redirectToNextRoundRobin(current)).contains(parse("http://bar/a/b/path"));
+        assertThat(registry.meter(MetricName.builder()
+                .safeName(ZoneAffinity.SPILLOVER_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "UrlSelectorTest")
+                .build()).getCount()).isEqualTo(1);
+    }
+
     @Test
     public void testWorksWithWebSockets() throws Exception {
         Request wsRequest = new Request.Builder()
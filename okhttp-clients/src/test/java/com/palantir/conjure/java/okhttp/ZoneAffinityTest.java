@@ -0,0 +1,142 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.conjure.java.okhttp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.conjure.java.client.config.ClientConfiguration;
+import com.palantir.conjure.java.client.config.NodeSelectionStrategy;
+import com.palantir.tritium.metrics.registry.DefaultTaggedMetricRegistry;
+import com.palantir.tritium.metrics.registry.MetricName;
+import com.palantir.tritium.metrics.registry.TaggedMetricRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class ZoneAffinityTest extends TestBase {
+
+    private static final HttpUrl LOCAL = HttpUrl.parse("https://foo:8080/a");
+    private static final HttpUrl REMOTE = HttpUrl.parse("https://bar:8080/a");
+    private static final HttpUrl UNLABELLED = HttpUrl.parse("https://baz:8080/a");
+
+    @Mock private Interceptor.Chain chain;
+
+    private final TaggedMetricRegistry registry = new DefaultTaggedMetricRegistry();
+
+    @Test
+    public void testLocalityOfNodes() {
+        ZoneAffinity zones = ZoneAffinity.create(config(0), ZoneAffinityTest.class);
+
+        assertThat(zones.isLocal(LOCAL)).isTrue();
+        assertThat(zones.isLocal(REMOTE)).isFalse();
+        assertThat(zones.isLocal(UNLABELLED)).isFalse();
+
+        zones.update(ClientConfiguration.builder().from(config(0)).localZone("zone-b").build());
+        assertThat(zones.isLocal(LOCAL)).isFalse();
+        assertThat(zones.isLocal(REMOTE)).isTrue();
+    }
+
+    @Test
+    public void testNodeIsOverloadedWhileRequestsAwaitResponses() throws IOException {
+        ZoneAffinity zones = ZoneAffinity.create(config(1), ZoneAffinityTest.class);
+        Request request = new Request.Builder().url(LOCAL.resolve("/a/b/path")).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(request)).thenAnswer(invocation -> {
+            assertThat(zones.isOverloaded(LOCAL)).isTrue();
+            assertThat(zones.isOverloaded(REMOTE)).isFalse();
+            return responseWithCode(request, 200);
+        });
+
+        assertThat(zones.isOverloaded(LOCAL)).isFalse();
+        zones.intercept(chain);
+        assertThat(zones.isOverloaded(LOCAL)).isFalse();
+        assertThat(requests("zone-a")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRecordsRequestsOfUnlabelledNodesAsUnknownZone() throws IOException {
+        ZoneAffinity zones = ZoneAffinity.create(config(0), ZoneAffinityTest.class);
+        Request request = new Request.Builder().url(UNLABELLED.resolve("/a/b/path")).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(request)).thenReturn(responseWithCode(request, 200));
+
+        zones.intercept(chain);
+
+        assertThat(zones.isOverloaded(UNLABELLED)).isFalse();
+        assertThat(requests("unknown")).isEqualTo(1);
+        assertThat(requests("zone-a")).isZero();
+    }
+
+    @Test
+    public void testDropsMetersOfZonesThatAreNoLongerConfigured() throws IOException {
+        ZoneAffinity zones = ZoneAffinity.create(config(0), ZoneAffinityTest.class);
+        for (HttpUrl url : new HttpUrl[] {LOCAL, REMOTE, UNLABELLED}) {
+            Request request = new Request.Builder().url(url.resolve("/a/b/path")).build();
+            when(chain.request()).thenReturn(request);
+            when(chain.proceed(request)).thenReturn(responseWithCode(request, 200));
+            zones.intercept(chain);
+        }
+        assertThat(registry.getMetrics()).containsKeys(
+                requestsMetricName("zone-a"), requestsMetricName("zone-b"), requestsMetricName("unknown"));
+
+        zones.update(ClientConfiguration.builder()
+                .from(config(0))
+                .uris(ImmutableList.of(LOCAL.toString()))
+                .uriZones(ImmutableMap.of(LOCAL.toString(), "zone-a"))
+                .build());
+
+        assertThat(registry.getMetrics())
+                .containsKey(requestsMetricName("zone-a"))
+                .doesNotContainKeys(requestsMetricName("zone-b"), requestsMetricName("unknown"));
+        assertThat(requests("zone-a")).isEqualTo(1);
+    }
+
+    private long requests(String zone) {
+        return registry.meter(requestsMetricName(zone)).getCount();
+    }
+
+    private static MetricName requestsMetricName(String zone) {
+        return MetricName.builder()
+                .safeName(ZoneAffinity.REQUESTS_METRIC_NAME)
+                .putSafeTags(InstrumentedInterceptor.SERVICE_NAME_TAG, "ZoneAffinityTest")
+                .putSafeTags("zone", zone)
+                .build();
+    }
+
+    private ClientConfiguration config(int spilloverInFlightRequests) {
+        return ClientConfiguration.builder()
+                .from(createTestConfig(LOCAL.toString(), REMOTE.toString(), UNLABELLED.toString()))
+                .taggedMetricRegistry(registry)
+                .nodeSelectionStrategy(NodeSelectionStrategy.PREFER_LOCAL_ZONE)
+                .failedUrlCooldown(Duration.ofMinutes(1))
+                .putUriZones(LOCAL.toString(), "zone-a")
+                .putUriZones(REMOTE.toString(), "zone-b")
+                .localZone("zone-a")
+                .zoneSpilloverInFlightRequests(spilloverInFlightRequests)
+                .build();
+    }
+}